@@ -89,6 +89,12 @@ public class Main {
         } catch (NumberFormatException nfe) {
             throw new IllegalArgumentException("CPU argument must be an integer.",nfe);
         }
+        int producers = 0;
+        try {
+            producers = Integer.parseInt(cmd.getOptionValue("p", "0"));
+        } catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("Producer argument must be an integer.",nfe);
+        }
 
         //validate and parse protocol
         ProtocolParser parser = new ProtocolParser();
@@ -101,7 +107,7 @@ public class Main {
         OutputController.getInstance().prepareOutput(tag, protocolFile);
 
         //execute protocol
-        ConcurrentWorkflow workflow = new ConcurrentWorkflow(cpus);
+        ConcurrentWorkflow workflow = new ConcurrentWorkflow(cpus, producers);
         System.out.println("Executing protocol \""+tag+"\"...");
         workflow.run(protocol);
         
@@ -119,6 +125,8 @@ public class Main {
         options.addOption("t", "tag", true, 
                             "A tag for this session.");
         options.addOption("c", "cpus", true, "Specify the number of CPUs to use.");
+        options.addOption("p", "producers", true,
+                            "Number of threads pre-generating template graphs (default 0).");
 
 
         CommandLineParser cp = new PosixParser();
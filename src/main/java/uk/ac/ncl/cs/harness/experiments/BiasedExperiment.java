@@ -139,7 +139,9 @@ public final class BiasedExperiment implements Experiment {
         List<Node> nodes = new ArrayList<Node>();
 
         for (Node node : trueGraph.getNodes()) {
-            nodes.add(outputGraph.createNode(node.getId()));
+            nodes.add(node.getNumericId() >= 0
+                    ? outputGraph.createNode(node.getNumericId())
+                    : outputGraph.createNode(node.getId()));
         }
 
         for (int i = 0; i < nodes.size(); i++) {
@@ -18,6 +18,7 @@
 package uk.ac.ncl.cs.harness.experiments;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
 import cern.jet.random.Poisson;
@@ -27,6 +28,7 @@ import uk.ac.ncl.cs.harness.extsupport.ExtensionProperty;
 import uk.ac.ncl.cs.harness.graph.Edge;
 import uk.ac.ncl.cs.harness.graph.Graph;
 import uk.ac.ncl.cs.harness.graph.Node;
+import uk.ac.ncl.cs.harness.graph.NodeDictionary;
 import uk.ac.ncl.cs.harness.stats.RandomEngineRegistry;
 import uk.ac.ncl.cs.harness.util.SetOfTwo;
 
@@ -119,19 +121,28 @@ public final class FastExperiment implements Experiment {
     @Override
     public void perform(Graph trueGraph, Graph outputGraph) {
 
-        List<Node> nodes = new ArrayList<Node>(trueGraph.getNumNodes());
-
         //copy nodes
+        String[] ids = new String[trueGraph.getNumNodes()];
+        int i = 0;
         for (Node node : trueGraph.getNodes()) {
-            nodes.add(outputGraph.createNode(node.getId()));
+            ids[i++] = node.getId();
         }
-
+        outputGraph.addNodes(ids);
+        List<Node> nodes = new ArrayList<Node>(outputGraph.getNodes());
+
+        //copy detected true edges in bulk
+        NodeDictionary dictionary = outputGraph.getNodeDictionary();
+        int[] edgeA = new int[trueGraph.getNumEdges()];
+        int[] edgeB = new int[trueGraph.getNumEdges()];
+        int numDetected = 0;
         for (Edge e: trueGraph.getEdges()) {
             double r = uniform.nextDouble();
             if (r < sensitivity) {
-                outputGraph.createEdge(e.getConnectedNodes());
+                edgeA[numDetected] = dictionary.ordinalOf(e.getConnectedNodes().getA());
+                edgeB[numDetected++] = dictionary.ordinalOf(e.getConnectedNodes().getB());
             }
         }
+        outputGraph.addEdges(Arrays.copyOf(edgeA, numDetected), Arrays.copyOf(edgeB, numDetected));
 
         //simulate number of false positives
         double tp = (double) outputGraph.getNumEdges();
@@ -24,8 +24,9 @@ import java.util.List;
 import uk.ac.ncl.cs.harness.extsupport.Extension;
 import uk.ac.ncl.cs.harness.extsupport.ExtensionProperty;
 import uk.ac.ncl.cs.harness.graph.Graph;
-import uk.ac.ncl.cs.harness.graph.Neighbour;
+import uk.ac.ncl.cs.harness.graph.NeighbourVisitor;
 import uk.ac.ncl.cs.harness.graph.Node;
+import uk.ac.ncl.cs.harness.graph.NodeDictionary;
 import uk.ac.ncl.cs.harness.stats.RandomEngineRegistry;
 import uk.ac.ncl.cs.harness.util.SetOfTwo;
 
@@ -108,15 +109,23 @@ public class ReductionistExperiment implements Experiment {
 
         //pick a gene
         Node favoriteNode = nodes.get(uniform.nextIntFromTo(0, nodes.size()-1));
-        Node favoriteLocal = outputGraph.createNode(favoriteNode.getId());
-
-        for (Neighbour neighbour : favoriteNode.getNeighbours()) {
-            double r = uniform.nextDouble();
-            if (r < sensitivity) {
-                Node neighbourLocal = outputGraph.createNode(neighbour.getNode().getId());
-                outputGraph.createEdge(new SetOfTwo<Node>(favoriteLocal, neighbourLocal));
+        final Node favoriteLocal = outputGraph.createNode(favoriteNode.getId());
+        final NodeDictionary trueDictionary = trueGraph.getNodeDictionary();
+        final Graph output = outputGraph;
+
+        trueGraph.forEachNeighbour(trueDictionary.ordinalOf(favoriteNode), new NeighbourVisitor() {
+            @Override
+            public void visit(int neighbour, int edge) {
+                double r = uniform.nextDouble();
+                if (r < sensitivity) {
+                    int numericId = trueDictionary.getNumericId(neighbour);
+                    Node neighbourLocal = numericId >= 0
+                            ? output.createNode(numericId)
+                            : output.createNode(trueDictionary.getId(neighbour));
+                    output.createEdge(new SetOfTwo<Node>(favoriteLocal, neighbourLocal));
+                }
             }
-        }
+        });
 
         //simulate number of false positives
         double tp = (double) outputGraph.getNumEdges();
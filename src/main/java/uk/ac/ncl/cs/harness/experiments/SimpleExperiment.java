@@ -19,13 +19,17 @@ package uk.ac.ncl.cs.harness.experiments;
 
 import cern.jet.random.Uniform;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
 import uk.ac.ncl.cs.harness.extsupport.Extension;
 import uk.ac.ncl.cs.harness.extsupport.ExtensionProperty;
 import uk.ac.ncl.cs.harness.graph.Edge;
 import uk.ac.ncl.cs.harness.graph.Graph;
 import uk.ac.ncl.cs.harness.graph.Node;
+import uk.ac.ncl.cs.harness.graph.NodeDictionary;
+import uk.ac.ncl.cs.harness.stats.GeometricSkip;
 import uk.ac.ncl.cs.harness.stats.RandomEngineRegistry;
 import uk.ac.ncl.cs.harness.util.SetOfTwo;
 
@@ -33,6 +37,14 @@ import uk.ac.ncl.cs.harness.util.SetOfTwo;
  * A basic implementation of the <code>Experiment</code> interface. The experiment
  * introduces errors according to given sensitivity and specifity values.
  *
+ * Every true edge is detected with probability <code>sensitivity</code>, and
+ * every other pair of nodes (including a node paired with itself) yields a
+ * false positive with probability <code>1 - specificity</code>. Instead of
+ * testing every pair, the experiment jumps from one false positive candidate
+ * to the next with geometrically distributed skips (Batagelj and Brandes,
+ * 2005), so its cost is proportional to the number of nodes, true edges and
+ * false positives.
+ *
  * @author Jochen Weile, M.Sc.
  */
 @Extension(id="simpleexperiment")
@@ -101,37 +113,81 @@ public final class SimpleExperiment implements Experiment {
     @Override
     public void perform(Graph trueGraph, Graph outputGraph) {
 
-        List<Node> nodes = new ArrayList<Node>();
+        List<Node> nodes = new ArrayList<Node>(trueGraph.getNumNodes());
+        NodeDictionary dictionary = outputGraph.getNodeDictionary();
+        int[] ordinals = new int[trueGraph.getNumNodes()];
 
         for (Node node : trueGraph.getNodes()) {
-            nodes.add(outputGraph.createNode(node.getId()));
+            Node copy = node.getNumericId() >= 0
+                    ? outputGraph.createNode(node.getNumericId())
+                    : outputGraph.createNode(node.getId());
+            ordinals[nodes.size()] = dictionary.ordinalOf(copy);
+            nodes.add(node);
+        }
+        int n = nodes.size();
+
+        //size the buffers for the expected number of edges plus four standard deviations
+        double fpr = 1.0 - specificity;
+        int m = trueGraph.getNumEdges();
+        double expected = Math.max(0.0, sensitivity * m + fpr * ((double) n * (n + 1) / 2 - m));
+        double capacity = expected + 4 * Math.sqrt(expected) + 16;
+        if (capacity > Integer.MAX_VALUE - 8) {
+            throw new GraphException("Too many edges expected from the experiment: "+expected);
+        }
+        int[] edgeA = new int[(int) capacity];
+        int[] edgeB = new int[(int) capacity];
+        int size = 0;
+
+        /*
+         * P(TP) = sensitivity
+         */
+        for (Edge e : trueGraph.getEdges()) {
+            if (uniform.nextDouble() < sensitivity) {
+                edgeA[size] = dictionary.ordinalOf(e.getConnectedNodes().getA());
+                edgeB[size++] = dictionary.ordinalOf(e.getConnectedNodes().getB());
+            }
         }
 
-        for (int i = 0; i < nodes.size(); i++) {
-            Node node_i = nodes.get(i);
-            for (int j = i ; j < nodes.size(); j++) {
-                Node node_j = nodes.get(j);
-
-                SetOfTwo<Node> nodePair = new SetOfTwo<Node>(node_i, node_j);
-
-                /*
-                 * P(TP) = sensitivity
-                 * P(FP) = 1- specificity
-                 */
-                double threshold = trueGraph.containsEdge(nodePair) ?
-                    sensitivity :
-                    1.0 - specificity;
-
-                if (uniform.nextDouble() < threshold) {
-                    Edge e = outputGraph.createEdge(nodePair);
-                    if (e == null) {
-                        warn("Edge creation failed: "+nodePair);
+        /*
+         * P(FP) = 1 - specificity
+         * Walk the pairs (i, j) with j <= i row by row, skipping a geometrically
+         * distributed number of pairs between candidates. Candidates that are
+         * true edges are dropped, as those have been decided above.
+         */
+        if (fpr > 0.0) {
+            GeometricSkip skip = new GeometricSkip(uniform, Math.min(fpr, 1.0));
+            int i = 0;
+            long j = -1;
+            while (true) {
+                j += skip.next();
+                while (j > i && i < n) {
+                    j -= i + 1;
+                    i++;
+                }
+                if (i >= n) {
+                    break;
+                }
+                SetOfTwo<Node> nodePair = new SetOfTwo<Node>(nodes.get(i), nodes.get((int) j));
+                if (!trueGraph.containsEdge(nodePair)) {
+                    if (size == edgeA.length) {
+                        if (size >= Integer.MAX_VALUE - 8) {
+                            throw new GraphException("Too many edges sampled by the experiment.");
+                        }
+                        int grown = (int) Math.min(Integer.MAX_VALUE - 8, 2L * size);
+                        edgeA = Arrays.copyOf(edgeA, grown);
+                        edgeB = Arrays.copyOf(edgeB, grown);
                     }
+                    edgeA[size] = ordinals[i];
+                    edgeB[size++] = ordinals[(int) j];
                 }
-
             }
         }
 
+        int skipped = outputGraph.addEdges(Arrays.copyOf(edgeA, size), Arrays.copyOf(edgeB, size));
+        if (skipped > 0) {
+            warn("Edge creation failed for "+skipped+" edges.");
+        }
+
     }
 
     /**
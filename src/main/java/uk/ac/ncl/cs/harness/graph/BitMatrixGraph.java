@@ -0,0 +1,716 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.extsupport.Extension;
+import uk.ac.ncl.cs.harness.util.LongIntHashMap;
+import uk.ac.ncl.cs.harness.util.Pairs;
+import uk.ac.ncl.cs.harness.util.SetOfTwo;
+
+/**
+ * <p>An implementation of the <code>Graph</code> interface which stores the
+ * adjacency structure as an upper-triangular bit matrix over the node dictionary
+ * ordinals. The pair <code>(i,j)</code> with <code>i &lt; j</code> is stored in bit
+ * <code>j(j-1)/2 + i</code>. This layout does not change when new nodes are added,
+ * so the matrix grows by appending words.</p>
+ *
+ * <p>Edge lookups are single bit tests, and the number of edges shared by two bit
+ * matrix graphs over the same dictionary is a population count over the ANDed
+ * words (see <code>intersectionCount</code> and <code>differenceCount</code>).
+ * The matrix needs <code>n&sup2;/16</code> bytes, so this implementation is meant
+ * for small template sizes (a few thousand nodes) with dense noise.</p>
+ *
+ * <p>Self-loops lie on the diagonal, which the triangle does not cover. They
+ * are kept in a separate bit vector indexed by ordinal.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+@Extension(id="bitmatrix")
+public final class BitMatrixGraph implements Graph {
+
+    /**
+     * initial capacity of the node and edge arrays.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The Graph's name
+     */
+    private String name;
+
+    /**
+     * Assigns ordinals to node ids
+     */
+    private NodeDictionary dictionary = new NodeDictionary();
+
+    /**
+     * nodes in order of creation
+     */
+    private Node[] members = new Node[INITIAL_CAPACITY];
+
+    /**
+     * nodes by ordinal, null where this graph lacks the node
+     */
+    private Node[] nodes = new Node[INITIAL_CAPACITY];
+
+    /**
+     * degree of each node by ordinal
+     */
+    private int[] degrees = new int[INITIAL_CAPACITY];
+
+    /**
+     * number of nodes
+     */
+    private int numNodes = 0;
+
+    /**
+     * number of matrix rows in use, i.e. the largest local node ordinal plus one
+     */
+    private int rows = 0;
+
+    /**
+     * the upper triangle of the adjacency matrix.
+     */
+    private long[] words = new long[0];
+
+    /**
+     * the diagonal of the adjacency matrix, i.e. self-loops by node ordinal.
+     */
+    private long[] loops = new long[1];
+
+    /**
+     * edges by edge ordinal
+     */
+    private Edge[] edges = new Edge[INITIAL_CAPACITY];
+
+    /**
+     * number of edges
+     */
+    private int numEdges = 0;
+
+    /**
+     * Packed key (pair of node ordinals) linked to the edge ordinal
+     */
+    private LongIntHashMap edgeIndex = new LongIntHashMap();
+
+    /**
+     * Probabilities of all edges, indexed by edge ordinal
+     */
+    private EdgeAttributes attributes = new EdgeAttributes();
+
+    /**
+     * gets the graph name
+     * @return
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * sets the graph name
+     * @param name
+     */
+    @Override
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Creates a new node
+     * @param id
+     * @return
+     */
+    @Override
+    public Node createNode(String id) {
+        return createNodeAt(dictionary.add(id));
+    }
+
+    /**
+     * Creates a new node with a numeric id
+     * @param id
+     * @return
+     */
+    @Override
+    public Node createNode(int id) {
+        return createNodeAt(dictionary.add(id));
+    }
+
+    /**
+     * creates the node with the given dictionary ordinal, or warns and returns
+     * the existing one.
+     * @param ordinal the node's dictionary ordinal
+     * @return the node
+     */
+    private Node createNodeAt(int ordinal) {
+        if (ordinal < rows && nodes[ordinal] != null) {
+            warn("Tried to create duplicate node \""+dictionary.getId(ordinal)+"\" in graph \""+getName()+"\".");
+            return nodes[ordinal];
+        }
+        return insertNode(ordinal);
+    }
+
+    /**
+     * Creates nodes for all given ids, skipping existing ones without warnings.
+     * @param ids the node ids
+     * @return the ordinals of the nodes
+     */
+    @Override
+    public int[] addNodes(String[] ids) {
+        if (numNodes + ids.length > members.length) {
+            members = Arrays.copyOf(members, numNodes + ids.length);
+        }
+        int[] ordinals = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            int ordinal = dictionary.add(ids[i]);
+            if (ordinal >= rows || nodes[ordinal] == null) {
+                insertNode(ordinal);
+            }
+            ordinals[i] = ordinal;
+        }
+        return ordinals;
+    }
+
+    /**
+     * stores a new node under the given ordinal, growing the matrix if needed.
+     * @param ordinal its dictionary ordinal
+     * @return the new node
+     */
+    private Node insertNode(int ordinal) {
+        if (ordinal >= nodes.length) {
+            int capacity = Math.max(ordinal + 1, nodes.length * 2);
+            nodes = Arrays.copyOf(nodes, capacity);
+            degrees = Arrays.copyOf(degrees, capacity);
+            loops = Arrays.copyOf(loops, (capacity + 63) >>> 6);
+        }
+        if (numNodes == members.length) {
+            members = Arrays.copyOf(members, numNodes * 2);
+        }
+        if (ordinal >= rows) {
+            long bits = triangle(ordinal + 1);
+            int numWords = (int) ((bits + 63) >>> 6);
+            if (bits > (long) Integer.MAX_VALUE << 6) {
+                throw new GraphException("Bit matrix graph \""+getName()+"\" cannot hold "+(ordinal+1)+" nodes.");
+            }
+            if (numWords > words.length) {
+                long capacity = Math.min((long) Integer.MAX_VALUE, Math.max((long) numWords, 2L * words.length));
+                words = Arrays.copyOf(words, (int) capacity);
+            }
+            rows = ordinal + 1;
+        }
+
+        Node node = new Node(dictionary, this, ordinal);
+        nodes[ordinal] = node;
+        members[numNodes++] = node;
+        return node;
+    }
+
+    /**
+     * Creates a new edge connecting the two nodes in the given pair.
+     *
+     * If one or both of the nodes is alien to the graph, the method tries
+     * to find equivalent nodes first. If the edge exists already, a warning
+     * is logged and the original edge is returned.
+     *
+     * @param pair the pair of nodes to connect.
+     * @return the new edge, or null if the required nodes do not exist.
+     */
+    @Override
+    public Edge createEdge(SetOfTwo<Node> pair) {
+
+        int a = ordinalOf(pair.getA());
+        int b = ordinalOf(pair.getB());
+
+        if (a < 0 || b < 0) {
+            warn("Edge "+pair+" not created: No local node equivalents present.");
+            return null;
+        }
+
+        if (testEdge(a, b)) {
+            warn("Tried to create duplicate edge "+pair+"in graph \""+getName()+"\".");
+            return edges[edgeIndex.get(Pairs.key(a, b))];
+        }
+
+        if (numEdges == edges.length) {
+            edges = Arrays.copyOf(edges, numEdges * 2);
+        }
+
+        return insertEdge(a, b);
+    }
+
+    /**
+     * Creates edges between the given pairs of node ordinals, skipping and
+     * counting duplicates.
+     * @param a the first node ordinal of each edge
+     * @param b the second node ordinal of each edge
+     * @return the number of skipped pairs
+     */
+    @Override
+    public int addEdges(int[] a, int[] b) {
+        long[] keys = Pairs.sortedUniqueKeys(a, b);
+        int duplicates = a.length - keys.length;
+        if (numEdges + keys.length > edges.length) {
+            edges = Arrays.copyOf(edges, numEdges + keys.length);
+        }
+        for (long key : keys) {
+            int ordA = Pairs.high(key), ordB = Pairs.low(key);
+            if (ordA >= rows || nodes[ordA] == null || nodes[ordB] == null) {
+                throw new GraphException("Cannot connect nodes "+ordA+" and "+ordB
+                        +": not present in graph \""+getName()+"\".");
+            }
+            if (testEdge(ordA, ordB)) {
+                duplicates++;
+            } else {
+                insertEdge(ordA, ordB);
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * stores a new edge between the given node ordinals and sets its bit.
+     * @return the new edge
+     */
+    private Edge insertEdge(int a, int b) {
+
+        int e = numEdges++;
+        Edge edge = new Edge(nodes[a], nodes[b], this, attributes, e);
+        edges[e] = edge;
+        edgeIndex.put(Pairs.key(a, b), e);
+
+        if (a == b) {
+            loops[a >>> 6] |= 1L << a;
+            degrees[a]++;
+        } else {
+            long bit = bitOf(a, b);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+            degrees[a]++;
+            degrees[b]++;
+        }
+
+        return edge;
+    }
+
+    /**
+     * Returns all the graph's nodes
+     * @return
+     */
+    @Override
+    public Collection<Node> getNodes() {
+        return Collections.unmodifiableList(Arrays.asList(members).subList(0, numNodes));
+    }
+
+    /**
+     * returns all the graph's edges
+     * @return
+     */
+    @Override
+    public Collection<Edge> getEdges() {
+        return Collections.unmodifiableList(Arrays.asList(edges).subList(0, numEdges));
+    }
+
+    @Override
+    public int getNumEdges() {
+        return numEdges;
+    }
+
+    @Override
+    public int getNumNodes() {
+        return numNodes;
+    }
+
+    /**
+     * returns whether the graph contains a node with the same id as the one given.
+     * @param node
+     * @return
+     */
+    @Override
+    public boolean contains(Node node) {
+        return ordinalOf(node) >= 0;
+    }
+
+    /*
+     * returns whether the graph contains an edge equivalent to the one given
+     *
+     */
+    @Override
+    public boolean contains(Edge edge) {
+        return containsEdge(edge.getConnectedNodes());
+    }
+
+    @Override
+    public boolean containsEdge(SetOfTwo<Node> nodePair) {
+        int a = ordinalOf(nodePair.getA());
+        int b = ordinalOf(nodePair.getB());
+        return a >= 0 && b >= 0 && testEdge(a, b);
+    }
+
+    /**
+     * returns the store holding the probabilities of all edges.
+     * @return the edge attribute store.
+     */
+    @Override
+    public EdgeAttributes getEdgeAttributes() {
+        return attributes;
+    }
+
+    /**
+     * returns the set of neighbours for the given node. The returned set is a
+     * view onto the bit matrix; its <code>size()</code> is a constant-time operation.
+     * @param node the node
+     * @return the set of neighbours for the node.
+     */
+    @Override
+    public Set<Neighbour> getNeighboursOfNode(Node node) {
+        int ordinal = ordinalOf(node);
+        if (ordinal < 0) {
+            return Collections.emptySet();
+        }
+        return new NeighbourView(ordinal);
+    }
+
+    /**
+     * returns the degree of the node with the given ordinal.
+     * @param node the node ordinal
+     * @return the degree, or 0 if the graph lacks the node.
+     */
+    @Override
+    public int degree(int node) {
+        return node >= 0 && node < rows ? degrees[node] : 0;
+    }
+
+    /**
+     * calls the visitor for every neighbour of the node with the given ordinal.
+     * @param node the node ordinal
+     * @param visitor the callback
+     */
+    @Override
+    public void forEachNeighbour(int node, NeighbourVisitor visitor) {
+        if (node < 0 || node >= rows || degrees[node] == 0) {
+            return;
+        }
+        for (int k = nextNeighbour(node, 0); k >= 0; k = nextNeighbour(node, k + 1)) {
+            visitor.visit(k, edgeIndex.get(Pairs.key(node, k)));
+        }
+    }
+
+    /**
+     * sets the dictionary assigning ordinals to node ids.
+     * @param dictionary the node dictionary
+     * @throws GraphException if the graph already contains nodes.
+     */
+    @Override
+    public void setNodeDictionary(NodeDictionary dictionary) {
+        if (numNodes > 0) {
+            throw new GraphException("Cannot replace the node dictionary of non-empty graph \""+getName()+"\".");
+        }
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * gets the dictionary assigning ordinals to node ids.
+     * @return the node dictionary
+     */
+    @Override
+    public NodeDictionary getNodeDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * returns an immutable snapshot of this graph.
+     * @return the frozen graph.
+     */
+    @Override
+    public FrozenGraph freeze() {
+        return new FrozenGraph(this);
+    }
+
+    /**
+     * counts the edges contained in both this and the other graph.
+     * @param other another graph
+     * @return the number of shared edges.
+     */
+    @Override
+    public int intersectionCount(Graph other) {
+        return compatible(this, other) ?
+            intersectionCount((BitMatrixGraph) other) :
+            GraphAlgebra.intersectionCount(this, other);
+    }
+
+    /**
+     * counts the edges contained in this graph but not in the other graph.
+     * @param other another graph
+     * @return the number of edges unique to this graph.
+     */
+    @Override
+    public int differenceCount(Graph other) {
+        return compatible(this, other) ?
+            differenceCount((BitMatrixGraph) other) :
+            getNumEdges() - GraphAlgebra.intersectionCount(this, other);
+    }
+
+    /**
+     * counts the edges of this graph between nodes of the given graph.
+     * @param nodeSubset a graph whose nodes delimit the subset
+     * @return the number of induced edges.
+     */
+    @Override
+    public int inducedEdgeCount(Graph nodeSubset) {
+        return GraphAlgebra.inducedEdgeCount(this, nodeSubset);
+    }
+
+    /**
+     * returns whether the two given graphs are bit matrix graphs over the same
+     * node dictionary, i.e. whether their edge sets can be compared word by word.
+     * @param g1 a graph
+     * @param g2 another graph
+     * @return whether <code>intersectionCount</code> and <code>differenceCount</code>
+     * can be used on the two graphs.
+     */
+    public static boolean compatible(Graph g1, Graph g2) {
+        return g1 instanceof BitMatrixGraph && g2 instanceof BitMatrixGraph
+                && g1.getNodeDictionary() == g2.getNodeDictionary();
+    }
+
+    /**
+     * counts the edges contained in both this and the other graph.
+     * @param other a bit matrix graph over the same node dictionary.
+     * @return the number of shared edges.
+     * @throws GraphException if the graphs use different node dictionaries.
+     */
+    public int intersectionCount(BitMatrixGraph other) {
+        checkCompatible(other);
+        long[] w1 = words, w2 = other.words;
+        int n = Math.min(w1.length, w2.length);
+        long count = 0;
+        for (int i = 0; i < n; i++) {
+            count += Long.bitCount(w1[i] & w2[i]);
+        }
+        long[] l1 = loops, l2 = other.loops;
+        n = Math.min(l1.length, l2.length);
+        for (int i = 0; i < n; i++) {
+            count += Long.bitCount(l1[i] & l2[i]);
+        }
+        return (int) count;
+    }
+
+    /**
+     * counts the edges contained in this graph but not in the other graph.
+     * @param other a bit matrix graph over the same node dictionary.
+     * @return the number of edges unique to this graph.
+     * @throws GraphException if the graphs use different node dictionaries.
+     */
+    public int differenceCount(BitMatrixGraph other) {
+        checkCompatible(other);
+        long[] w1 = words, w2 = other.words;
+        int n = Math.min(w1.length, w2.length);
+        long count = 0;
+        for (int i = 0; i < n; i++) {
+            count += Long.bitCount(w1[i] & ~w2[i]);
+        }
+        for (int i = n; i < w1.length; i++) {
+            count += Long.bitCount(w1[i]);
+        }
+        long[] l1 = loops, l2 = other.loops;
+        n = Math.min(l1.length, l2.length);
+        for (int i = 0; i < n; i++) {
+            count += Long.bitCount(l1[i] & ~l2[i]);
+        }
+        for (int i = n; i < l1.length; i++) {
+            count += Long.bitCount(l1[i]);
+        }
+        return (int) count;
+    }
+
+    /**
+     * makes sure the other graph's matrix has the same layout as this one.
+     */
+    private void checkCompatible(BitMatrixGraph other) {
+        if (other.dictionary != dictionary) {
+            throw new GraphException("Graphs \""+getName()+"\" and \""+other.getName()
+                    +"\" do not share a node dictionary.");
+        }
+    }
+
+    /**
+     * returns the dictionary ordinal of the given node or of its local equivalent.
+     * @param node a node of this or another graph.
+     * @return the ordinal or -1 if the graph contains no such node.
+     */
+    private int ordinalOf(Node node) {
+        int ordinal = dictionary.ordinalOf(node);
+        return ordinal >= 0 && ordinal < rows && nodes[ordinal] != null ? ordinal : -1;
+    }
+
+    /**
+     * returns the number of matrix cells above the diagonal in the first
+     * <code>j</code> columns, i.e. the bit offset of column <code>j</code>.
+     */
+    private static long triangle(int j) {
+        return (long) j * (j - 1) / 2;
+    }
+
+    /**
+     * tests whether the two given local ordinals are connected.
+     */
+    private boolean testEdge(int a, int b) {
+        if (a == b) {
+            return (loops[a >>> 6] & (1L << a)) != 0;
+        }
+        return testBit(bitOf(a, b));
+    }
+
+    /**
+     * returns the bit index of the cell for the given pair of distinct ordinals.
+     */
+    private static long bitOf(int a, int b) {
+        return a < b ? triangle(b) + a : triangle(a) + b;
+    }
+
+    /**
+     * tests the bit with the given index.
+     */
+    private boolean testBit(long bit) {
+        return (words[(int) (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    /**
+     * returns the index of the first set bit in the range <code>[from,to)</code>.
+     * @return the bit index, or -1 if no bit in the range is set.
+     */
+    private long nextSetBit(long from, long to) {
+        if (from >= to) {
+            return -1;
+        }
+        int w = (int) (from >>> 6);
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                long bit = ((long) w << 6) + Long.numberOfTrailingZeros(word);
+                return bit < to ? bit : -1;
+            }
+            if (((long) ++w << 6) >= to) {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+
+    /**
+     * finds the next neighbour of the given node.
+     * @param j the node ordinal
+     * @param from the smallest neighbour ordinal to consider
+     * @return the next neighbour's ordinal, or -1 if there are none left.
+     */
+    private int nextNeighbour(int j, int from) {
+        //neighbours below j occupy a contiguous range of column j
+        if (from < j) {
+            long base = triangle(j);
+            long bit = nextSetBit(base + from, base + j);
+            if (bit >= 0) {
+                return (int) (bit - base);
+            }
+            from = j;
+        }
+        //a self-loop makes j its own neighbour
+        if (from == j && testEdge(j, j)) {
+            return j;
+        }
+        //neighbours above j lie in row j of the later columns
+        for (int k = Math.max(from, j + 1); k < rows; k++) {
+            if (testBit(triangle(k) + j)) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * logs a warning message
+     * @param msg the message.
+     */
+    private void warn(String msg) {
+        Logger logger = Logger.getLogger(this.getClass().getCanonicalName());
+        if (logger.isLoggable(Level.WARNING)) {
+            logger.log(Level.WARNING, msg, new Throwable(){});
+        }
+    }
+
+    /**
+     * A read-only set view onto the neighbours of a node.
+     */
+    private final class NeighbourView extends AbstractSet<Neighbour> {
+
+        /**
+         * the node ordinal.
+         */
+        private final int ordinal;
+
+        /**
+         * constructor
+         * @param ordinal the node ordinal.
+         */
+        private NeighbourView(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public int size() {
+            return degrees[ordinal];
+        }
+
+        @Override
+        public Iterator<Neighbour> iterator() {
+            return new Iterator<Neighbour>() {
+
+                private int next = nextNeighbour(ordinal, 0);
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public Neighbour next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int neighbour = next;
+                    next = nextNeighbour(ordinal, neighbour + 1);
+                    Edge edge = edges[edgeIndex.get(Pairs.key(ordinal, neighbour))];
+                    return new Neighbour(nodes[neighbour], edge);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("Read-only view.");
+                }
+            };
+        }
+    }
+}
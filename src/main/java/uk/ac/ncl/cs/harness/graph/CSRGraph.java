@@ -0,0 +1,713 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.extsupport.Extension;
+import uk.ac.ncl.cs.harness.util.Pairs;
+import uk.ac.ncl.cs.harness.util.SetOfTwo;
+
+/**
+ * <p>An implementation of the <code>Graph</code> interface which stores nodes
+ * by their <code>NodeDictionary</code> ordinal and the adjacency structure in
+ * compressed-sparse-row (CSR) arrays. Each row of the CSR arrays is sorted by
+ * neighbour ordinal, so edge lookups are binary searches instead of hash lookups.
+ * Graphs sharing a dictionary are usually built over the same node set, so the
+ * rows are nearly dense.</p>
+ *
+ * <p>Edges added after the last compaction are kept in small per-node delta rows.
+ * Once the delta grows as large as the compacted part, both are merged into a new
+ * set of CSR arrays. This keeps interleaved construction and querying (as done by
+ * the populators) at amortised constant cost per edge.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+@Extension(id="csrgraph")
+public final class CSRGraph implements Graph {
+
+    /**
+     * minimal number of delta edges before a compaction is triggered.
+     */
+    private static final int MIN_DELTA = 1024;
+
+    /**
+     * initial capacity of the node and edge arrays.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The Graph's name
+     */
+    private String name;
+
+    /**
+     * Assigns ordinals to node ids
+     */
+    private NodeDictionary dictionary = new NodeDictionary();
+
+    /**
+     * nodes in order of creation
+     */
+    private Node[] members = new Node[INITIAL_CAPACITY];
+
+    /**
+     * nodes by ordinal, null where this graph lacks the node
+     */
+    private Node[] nodes = new Node[INITIAL_CAPACITY];
+
+    /**
+     * number of adjacency rows in use, i.e. the largest local node ordinal plus one
+     */
+    private int rows = 0;
+
+    /**
+     * degree of each node by ordinal
+     */
+    private int[] degrees = new int[INITIAL_CAPACITY];
+
+    /**
+     * number of nodes
+     */
+    private int numNodes = 0;
+
+    /**
+     * edges by edge ordinal
+     */
+    private Edge[] edges = new Edge[INITIAL_CAPACITY];
+
+    /**
+     * first and second node ordinal of each edge
+     */
+    private int[] edgeA = new int[INITIAL_CAPACITY], edgeB = new int[INITIAL_CAPACITY];
+
+    /**
+     * number of edges
+     */
+    private int numEdges = 0;
+
+    /**
+     * row offsets of the compacted adjacency. Row <code>i</code> spans
+     * <code>offsets[i]</code> to <code>offsets[i+1]</code>.
+     */
+    private int[] offsets = new int[1];
+
+    /**
+     * neighbour ordinals of the compacted adjacency, sorted within each row.
+     */
+    private int[] targets = new int[0];
+
+    /**
+     * edge ordinals matching the entries in <code>targets</code>.
+     */
+    private int[] targetEdges = new int[0];
+
+    /**
+     * number of rows covered by the compacted adjacency.
+     */
+    private int compactedNodes = 0;
+
+    /**
+     * number of edges covered by the compacted adjacency.
+     */
+    private int compactedEdges = 0;
+
+    /**
+     * uncompacted adjacency. Holds alternating neighbour and edge ordinals for
+     * every edge added since the last compaction.
+     */
+    private int[][] delta = new int[INITIAL_CAPACITY][];
+
+    /**
+     * number of ints used in each delta row.
+     */
+    private int[] deltaSizes = new int[INITIAL_CAPACITY];
+
+    /**
+     * Probabilities of all edges, indexed by edge ordinal
+     */
+    private EdgeAttributes attributes = new EdgeAttributes();
+
+    /**
+     * gets the graph name
+     * @return
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * sets the graph name
+     * @param name
+     */
+    @Override
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Creates a new node
+     * @param id
+     * @return
+     */
+    @Override
+    public Node createNode(String id) {
+        return createNodeAt(dictionary.add(id));
+    }
+
+    /**
+     * Creates a new node with a numeric id
+     * @param id
+     * @return
+     */
+    @Override
+    public Node createNode(int id) {
+        return createNodeAt(dictionary.add(id));
+    }
+
+    /**
+     * creates the node with the given dictionary ordinal, or warns and returns
+     * the existing one.
+     * @param ordinal the node's dictionary ordinal
+     * @return the node
+     */
+    private Node createNodeAt(int ordinal) {
+        if (ordinal < rows && nodes[ordinal] != null) {
+            warn("Tried to create duplicate node \""+dictionary.getId(ordinal)+"\" in graph \""+getName()+"\".");
+            return nodes[ordinal];
+        }
+
+        return insertNode(ordinal);
+    }
+
+    /**
+     * Creates nodes for all given ids, skipping existing ones without warnings.
+     * @param ids the node ids
+     * @return the ordinals of the nodes
+     */
+    @Override
+    public int[] addNodes(String[] ids) {
+        if (numNodes + ids.length > members.length) {
+            members = Arrays.copyOf(members, numNodes + ids.length);
+        }
+        int[] ordinals = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            int ordinal = dictionary.add(ids[i]);
+            if (ordinal >= rows || nodes[ordinal] == null) {
+                insertNode(ordinal);
+            }
+            ordinals[i] = ordinal;
+        }
+        return ordinals;
+    }
+
+    /**
+     * stores a new node under the given ordinal.
+     * @param ordinal its dictionary ordinal
+     * @return the new node
+     */
+    private Node insertNode(int ordinal) {
+        if (ordinal >= nodes.length) {
+            int capacity = Math.max(ordinal + 1, nodes.length * 2);
+            nodes = Arrays.copyOf(nodes, capacity);
+            degrees = Arrays.copyOf(degrees, capacity);
+            delta = Arrays.copyOf(delta, capacity);
+            deltaSizes = Arrays.copyOf(deltaSizes, capacity);
+        }
+        if (numNodes == members.length) {
+            members = Arrays.copyOf(members, numNodes * 2);
+        }
+
+        Node node = new Node(dictionary, this, ordinal);
+        nodes[ordinal] = node;
+        members[numNodes++] = node;
+        rows = Math.max(rows, ordinal + 1);
+        return node;
+    }
+
+    /**
+     * Creates a new edge connecting the two nodes in the given pair.
+     *
+     * If one or both of the nodes is alien to the graph, the method tries
+     * to find equivalent nodes first. If the edge exists already, a warning
+     * is logged and the original edge is returned.
+     *
+     * @param pair the pair of nodes to connect.
+     * @return the new edge, or null if the required nodes do not exist.
+     */
+    @Override
+    public Edge createEdge(SetOfTwo<Node> pair) {
+
+        int a = ordinalOf(pair.getA());
+        int b = ordinalOf(pair.getB());
+
+        if (a < 0 || b < 0) {
+            warn("Edge "+pair+" not created: No local node equivalents present.");
+            return null;
+        }
+
+        int existing = findEdge(a, b);
+        if (existing >= 0) {
+            warn("Tried to create duplicate edge "+pair+"in graph \""+getName()+"\".");
+            return edges[existing];
+        }
+
+        if (numEdges == edges.length) {
+            ensureEdgeCapacity(numEdges * 2);
+        }
+
+        Edge edge = insertEdge(a, b);
+        appendDelta(a, b, edge.getIndex());
+        if (a != b) {
+            appendDelta(b, a, edge.getIndex());
+        }
+
+        if (numEdges - compactedEdges >= Math.max(MIN_DELTA, compactedEdges)) {
+            compact();
+        }
+
+        return edge;
+    }
+
+    /**
+     * Creates edges between the given pairs of node ordinals, skipping and
+     * counting duplicates. The new edges bypass the delta rows; the adjacency
+     * is compacted once at the end.
+     * @param a the first node ordinal of each edge
+     * @param b the second node ordinal of each edge
+     * @return the number of skipped pairs
+     */
+    @Override
+    public int addEdges(int[] a, int[] b) {
+        long[] keys = Pairs.sortedUniqueKeys(a, b);
+        int duplicates = a.length - keys.length;
+        ensureEdgeCapacity(numEdges + keys.length);
+        int before = numEdges;
+        for (long key : keys) {
+            int ordA = Pairs.high(key), ordB = Pairs.low(key);
+            if (ordA >= rows || nodes[ordA] == null || nodes[ordB] == null) {
+                throw new GraphException("Cannot connect nodes "+ordA+" and "+ordB
+                        +": not present in graph \""+getName()+"\".");
+            }
+            //keys are unique, so only edges present before this call can collide
+            if (findEdge(ordA, ordB) >= 0) {
+                duplicates++;
+            } else {
+                insertEdge(ordA, ordB);
+            }
+        }
+        if (numEdges > before) {
+            compact();
+        }
+        return duplicates;
+    }
+
+    /**
+     * grows the edge arrays to hold at least the given number of edges.
+     */
+    private void ensureEdgeCapacity(int capacity) {
+        if (capacity > edges.length) {
+            edges = Arrays.copyOf(edges, capacity);
+            edgeA = Arrays.copyOf(edgeA, capacity);
+            edgeB = Arrays.copyOf(edgeB, capacity);
+        }
+    }
+
+    /**
+     * stores a new edge between the given node ordinals, without adding it
+     * to the adjacency.
+     * @return the new edge
+     */
+    private Edge insertEdge(int a, int b) {
+        int e = numEdges++;
+        Edge edge = new Edge(nodes[a], nodes[b], this, attributes, e);
+        edges[e] = edge;
+        edgeA[e] = a;
+        edgeB[e] = b;
+        degrees[a]++;
+        if (a != b) {
+            degrees[b]++;
+        }
+        return edge;
+    }
+
+    /**
+     * Returns all the graph's nodes
+     * @return
+     */
+    @Override
+    public Collection<Node> getNodes() {
+        return Collections.unmodifiableList(Arrays.asList(members).subList(0, numNodes));
+    }
+
+    /**
+     * returns all the graph's edges
+     * @return
+     */
+    @Override
+    public Collection<Edge> getEdges() {
+        return Collections.unmodifiableList(Arrays.asList(edges).subList(0, numEdges));
+    }
+
+    @Override
+    public int getNumEdges() {
+        return numEdges;
+    }
+
+    @Override
+    public int getNumNodes() {
+        return numNodes;
+    }
+
+    /**
+     * returns whether the graph contains a node with the same id as the one given.
+     * @param node
+     * @return
+     */
+    @Override
+    public boolean contains(Node node) {
+        return ordinalOf(node) >= 0;
+    }
+
+    /*
+     * returns whether the graph contains an edge equivalent to the one given
+     *
+     */
+    @Override
+    public boolean contains(Edge edge) {
+        return containsEdge(edge.getConnectedNodes());
+    }
+
+    @Override
+    public boolean containsEdge(SetOfTwo<Node> nodePair) {
+        int a = ordinalOf(nodePair.getA());
+        int b = ordinalOf(nodePair.getB());
+        return a >= 0 && b >= 0 && findEdge(a, b) >= 0;
+    }
+
+    /**
+     * returns the store holding the probabilities of all edges.
+     * @return the edge attribute store.
+     */
+    @Override
+    public EdgeAttributes getEdgeAttributes() {
+        return attributes;
+    }
+
+    /**
+     * returns the set of neighbours for the given node. The returned set is a
+     * view onto the adjacency arrays; its <code>size()</code> is a constant-time
+     * operation.
+     * @param node the node
+     * @return the set of neighbours for the node.
+     */
+    @Override
+    public Set<Neighbour> getNeighboursOfNode(Node node) {
+        int ordinal = ordinalOf(node);
+        if (ordinal < 0) {
+            return Collections.emptySet();
+        }
+        return new NeighbourView(ordinal);
+    }
+
+    /**
+     * returns the degree of the node with the given ordinal.
+     * @param node the node ordinal
+     * @return the degree, or 0 if the graph lacks the node.
+     */
+    @Override
+    public int degree(int node) {
+        return node >= 0 && node < rows ? degrees[node] : 0;
+    }
+
+    /**
+     * calls the visitor for every neighbour of the node with the given ordinal.
+     * @param node the node ordinal
+     * @param visitor the callback
+     */
+    @Override
+    public void forEachNeighbour(int node, NeighbourVisitor visitor) {
+        if (node < 0 || node >= rows) {
+            return;
+        }
+        for (int i = node < compactedNodes ? offsets[node] : 0, end = i + compactedRowLength(node); i < end; i++) {
+            visitor.visit(targets[i], targetEdges[i]);
+        }
+        int[] d = delta[node];
+        for (int i = 0; i < deltaSizes[node]; i += 2) {
+            visitor.visit(d[i], d[i+1]);
+        }
+    }
+
+    /**
+     * sets the dictionary assigning ordinals to node ids.
+     * @param dictionary the node dictionary
+     * @throws GraphException if the graph already contains nodes.
+     */
+    @Override
+    public void setNodeDictionary(NodeDictionary dictionary) {
+        if (numNodes > 0) {
+            throw new GraphException("Cannot replace the node dictionary of non-empty graph \""+getName()+"\".");
+        }
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * gets the dictionary assigning ordinals to node ids.
+     * @return the node dictionary
+     */
+    @Override
+    public NodeDictionary getNodeDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * returns an immutable snapshot of this graph.
+     * @return the frozen graph.
+     */
+    @Override
+    public FrozenGraph freeze() {
+        return new FrozenGraph(this);
+    }
+
+    /**
+     * counts the edges contained in both this and the other graph.
+     * @param other another graph
+     * @return the number of shared edges.
+     */
+    @Override
+    public int intersectionCount(Graph other) {
+        return GraphAlgebra.intersectionCount(this, other);
+    }
+
+    /**
+     * counts the edges contained in this graph but not in the other graph.
+     * @param other another graph
+     * @return the number of edges unique to this graph.
+     */
+    @Override
+    public int differenceCount(Graph other) {
+        return getNumEdges() - GraphAlgebra.intersectionCount(this, other);
+    }
+
+    /**
+     * counts the edges of this graph between nodes of the given graph.
+     * @param nodeSubset a graph whose nodes delimit the subset
+     * @return the number of induced edges.
+     */
+    @Override
+    public int inducedEdgeCount(Graph nodeSubset) {
+        return GraphAlgebra.inducedEdgeCount(this, nodeSubset);
+    }
+
+    /**
+     * returns the dictionary ordinal of the given node or of its local equivalent.
+     * @param node a node of this or another graph.
+     * @return the ordinal or -1 if the graph contains no such node.
+     */
+    private int ordinalOf(Node node) {
+        int ordinal = dictionary.ordinalOf(node);
+        return ordinal >= 0 && ordinal < rows && nodes[ordinal] != null ? ordinal : -1;
+    }
+
+    /**
+     * looks up the edge between the two given node ordinals.
+     * @param a a node ordinal
+     * @param b another node ordinal
+     * @return the edge ordinal, or -1 if the nodes are not connected.
+     */
+    private int findEdge(int a, int b) {
+
+        //search the shorter compacted row
+        int row = compactedRowLength(a) <= compactedRowLength(b) ? a : b;
+        int other = row == a ? b : a;
+        if (row < compactedNodes) {
+            int pos = Arrays.binarySearch(targets, offsets[row], offsets[row+1], other);
+            if (pos >= 0) {
+                return targetEdges[pos];
+            }
+        }
+
+        //scan the shorter delta row
+        row = deltaSizes[a] <= deltaSizes[b] ? a : b;
+        other = row == a ? b : a;
+        int[] d = delta[row];
+        for (int i = 0; i < deltaSizes[row]; i += 2) {
+            if (d[i] == other) {
+                return d[i+1];
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * returns the length of the compacted row of the given node.
+     */
+    private int compactedRowLength(int ordinal) {
+        return ordinal < compactedNodes ? offsets[ordinal+1] - offsets[ordinal] : 0;
+    }
+
+    /**
+     * appends a neighbour entry to the delta row of the given node.
+     */
+    private void appendDelta(int node, int neighbour, int edge) {
+        int[] d = delta[node];
+        int size = deltaSizes[node];
+        if (d == null) {
+            d = delta[node] = new int[4];
+        } else if (size == d.length) {
+            d = delta[node] = Arrays.copyOf(d, size * 2);
+        }
+        d[size] = neighbour;
+        d[size+1] = edge;
+        deltaSizes[node] = size + 2;
+    }
+
+    /**
+     * merges the delta rows into a new set of sorted CSR arrays. The rows are
+     * first filled in edge order and then transposed, which leaves every row
+     * sorted without any comparison sort (the adjacency matrix is symmetric).
+     */
+    private void compact() {
+
+        int[] off = new int[rows + 1];
+        for (int i = 0; i < rows; i++) {
+            off[i+1] = off[i] + degrees[i];
+        }
+
+        //fill unsorted rows in edge order
+        int total = off[rows];
+        int[] fill = Arrays.copyOf(off, rows);
+        int[] unsorted = new int[total];
+        int[] unsortedEdges = new int[total];
+        for (int e = 0; e < numEdges; e++) {
+            int i = fill[edgeA[e]]++;
+            unsorted[i] = edgeB[e];
+            unsortedEdges[i] = e;
+            if (edgeA[e] != edgeB[e]) {
+                int j = fill[edgeB[e]]++;
+                unsorted[j] = edgeA[e];
+                unsortedEdges[j] = e;
+            }
+        }
+
+        //transpose: visiting rows in ascending order appends ascending entries
+        System.arraycopy(off, 0, fill, 0, rows);
+        int[] sorted = new int[total];
+        int[] sortedEdges = new int[total];
+        for (int row = 0; row < rows; row++) {
+            for (int i = off[row]; i < off[row+1]; i++) {
+                int j = fill[unsorted[i]]++;
+                sorted[j] = row;
+                sortedEdges[j] = unsortedEdges[i];
+            }
+        }
+
+        offsets = off;
+        targets = sorted;
+        targetEdges = sortedEdges;
+        compactedNodes = rows;
+        compactedEdges = numEdges;
+
+        Arrays.fill(delta, 0, rows, null);
+        Arrays.fill(deltaSizes, 0, rows, 0);
+    }
+
+    /**
+     * logs a warning message
+     * @param msg the message.
+     */
+    private void warn(String msg) {
+        Logger logger = Logger.getLogger(this.getClass().getCanonicalName());
+        if (logger.isLoggable(Level.WARNING)) {
+            logger.log(Level.WARNING, msg, new Throwable(){});
+        }
+    }
+
+    /**
+     * A read-only set view onto the neighbours of a node.
+     */
+    private final class NeighbourView extends AbstractSet<Neighbour> {
+
+        /**
+         * the node ordinal.
+         */
+        private final int ordinal;
+
+        /**
+         * constructor
+         * @param ordinal the node ordinal.
+         */
+        private NeighbourView(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public int size() {
+            return degrees[ordinal];
+        }
+
+        @Override
+        public Iterator<Neighbour> iterator() {
+            return new Iterator<Neighbour>() {
+
+                private int pos = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return pos < degrees[ordinal];
+                }
+
+                @Override
+                public Neighbour next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int compactedLength = compactedRowLength(ordinal);
+                    int neighbour, edge;
+                    if (pos < compactedLength) {
+                        int i = offsets[ordinal] + pos;
+                        neighbour = targets[i];
+                        edge = targetEdges[i];
+                    } else {
+                        int i = 2 * (pos - compactedLength);
+                        neighbour = delta[ordinal][i];
+                        edge = delta[ordinal][i+1];
+                    }
+                    pos++;
+                    return new Neighbour(nodes[neighbour], edges[edge]);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("Read-only view.");
+                }
+            };
+        }
+    }
+}
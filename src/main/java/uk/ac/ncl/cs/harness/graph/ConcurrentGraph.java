@@ -0,0 +1,691 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph;
+
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.extsupport.Extension;
+import uk.ac.ncl.cs.harness.util.LongIntHashMap;
+import uk.ac.ncl.cs.harness.util.Pairs;
+import uk.ac.ncl.cs.harness.util.SetOfTwo;
+
+/**
+ * <p>An implementation of the <code>Graph</code> interface that several threads
+ * can populate in parallel. Nodes and edges live in lock-free chunked tables
+ * indexed by node ordinal and edge ordinal, whose slots are claimed by
+ * compare-and-set. Each node has its own append-only adjacency row, guarded by
+ * the row's own monitor, and the index that detects duplicate edges is split into
+ * lock stripes by pair key. No lock is ever held while acquiring another.</p>
+ *
+ * <p>An edge becomes visible in the adjacency of both its nodes before
+ * <code>createEdge</code> returns. Reads may run concurrently with writes and
+ * then see a consistent prefix of each adjacency row. Edge probabilities
+ * (see <code>EdgeAttributes</code>) are not thread-safe and should only be
+ * set once population has finished.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+@Extension(id="concurrentgraph")
+public final class ConcurrentGraph implements Graph {
+
+    /**
+     * number of lock stripes of the edge index; a power of two.
+     */
+    private static final int STRIPES = 64;
+
+    /**
+     * The Graph's name
+     */
+    private volatile String name;
+
+    /**
+     * Assigns ordinals to node ids
+     */
+    private volatile NodeDictionary dictionary = new NodeDictionary();
+
+    /**
+     * nodes by ordinal
+     */
+    private final Slots<Node> nodes = new Slots<Node>();
+
+    /**
+     * adjacency rows by node ordinal
+     */
+    private final Slots<Row> rows = new Slots<Row>();
+
+    /**
+     * nodes in order of creation
+     */
+    private final Slots<Node> members = new Slots<Node>();
+
+    /**
+     * number of nodes
+     */
+    private final AtomicInteger numNodes = new AtomicInteger();
+
+    /**
+     * edges by edge ordinal
+     */
+    private final Slots<Edge> edges = new Slots<Edge>();
+
+    /**
+     * number of edges
+     */
+    private final AtomicInteger numEdges = new AtomicInteger();
+
+    /**
+     * Packed key (pair of node ordinals) linked to the edge ordinal, split
+     * into stripes which are guarded by their own monitors
+     */
+    private final LongIntHashMap[] edgeIndex = new LongIntHashMap[STRIPES];
+
+    /**
+     * Probabilities of all edges, indexed by edge ordinal
+     */
+    private final EdgeAttributes attributes = new EdgeAttributes();
+
+    /**
+     * constructor.
+     */
+    public ConcurrentGraph() {
+        for (int i = 0; i < STRIPES; i++) {
+            edgeIndex[i] = new LongIntHashMap();
+        }
+    }
+
+    /**
+     * gets the graph name
+     * @return
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * sets the graph name
+     * @param name
+     */
+    @Override
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Creates a new node
+     * @param id
+     * @return
+     */
+    @Override
+    public Node createNode(String id) {
+        return createNodeAt(dictionary.add(id));
+    }
+
+    /**
+     * Creates a new node with a numeric id
+     * @param id
+     * @return
+     */
+    @Override
+    public Node createNode(int id) {
+        return createNodeAt(dictionary.add(id));
+    }
+
+    /**
+     * creates the node with the given dictionary ordinal, or warns and returns
+     * the existing one.
+     * @param ordinal the node's dictionary ordinal
+     * @return the node
+     */
+    private Node createNodeAt(int ordinal) {
+        Node existing = nodes.get(ordinal);
+        if (existing == null) {
+            Node node = insertNode(ordinal);
+            if (node != null) {
+                return node;
+            }
+            existing = nodes.get(ordinal);
+        }
+        warn("Tried to create duplicate node \""+dictionary.getId(ordinal)+"\" in graph \""+getName()+"\".");
+        return existing;
+    }
+
+    /**
+     * Creates nodes for all given ids, skipping existing ones without warnings.
+     * @param ids the node ids
+     * @return the ordinals of the nodes
+     */
+    @Override
+    public int[] addNodes(String[] ids) {
+        int[] ordinals = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            int ordinal = dictionary.add(ids[i]);
+            if (nodes.get(ordinal) == null) {
+                insertNode(ordinal);
+            }
+            ordinals[i] = ordinal;
+        }
+        return ordinals;
+    }
+
+    /**
+     * claims the slot of the given ordinal for a new node.
+     * @return the new node, or null if another thread created it first.
+     */
+    private Node insertNode(int ordinal) {
+        Node node = new Node(dictionary, this, ordinal);
+        //the row has to exist before the node is visible to other threads
+        rows.compareAndSet(ordinal, null, new Row());
+        if (!nodes.compareAndSet(ordinal, null, node)) {
+            return null;
+        }
+        members.set(numNodes.getAndIncrement(), node);
+        return node;
+    }
+
+    /**
+     * Creates a new edge connecting the two nodes in the given pair.
+     *
+     * If one or both of the nodes is alien to the graph, the method tries
+     * to find equivalent nodes first. If the edge exists already, a warning
+     * is logged and the original edge is returned.
+     *
+     * @param pair the pair of nodes to connect.
+     * @return the new edge, or null if the required nodes do not exist.
+     */
+    @Override
+    public Edge createEdge(SetOfTwo<Node> pair) {
+
+        int a = ordinalOf(pair.getA());
+        int b = ordinalOf(pair.getB());
+
+        if (a < 0 || b < 0) {
+            warn("Edge "+pair+" not created: No local node equivalents present.");
+            return null;
+        }
+
+        int e = insertEdge(a, b);
+        if (e < 0) {
+            warn("Tried to create duplicate edge "+pair+"in graph \""+getName()+"\".");
+            return edges.await(-e - 1);
+        }
+        return edges.get(e);
+    }
+
+    /**
+     * Creates edges between the given pairs of node ordinals, skipping and
+     * counting duplicates. Several threads may call this concurrently.
+     * @param a the first node ordinal of each edge
+     * @param b the second node ordinal of each edge
+     * @return the number of skipped pairs
+     */
+    @Override
+    public int addEdges(int[] a, int[] b) {
+        long[] keys = Pairs.sortedUniqueKeys(a, b);
+        int duplicates = a.length - keys.length;
+        for (long key : keys) {
+            int ordA = Pairs.high(key), ordB = Pairs.low(key);
+            if (nodes.get(ordA) == null || nodes.get(ordB) == null) {
+                throw new GraphException("Cannot connect nodes "+ordA+" and "+ordB
+                        +": not present in graph \""+getName()+"\".");
+            }
+            if (insertEdge(ordA, ordB) < 0) {
+                duplicates++;
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * creates an edge between the given node ordinals unless it exists already.
+     * @return the new edge ordinal, or <code>-(existing ordinal) - 1</code>.
+     */
+    private int insertEdge(int a, int b) {
+
+        long key = Pairs.key(a, b);
+        LongIntHashMap stripe = edgeIndex[stripeOf(key)];
+        int e;
+        synchronized (stripe) {
+            int existing = stripe.get(key);
+            if (existing != LongIntHashMap.NO_VALUE) {
+                return -existing - 1;
+            }
+            e = numEdges.getAndIncrement();
+            stripe.put(key, e);
+        }
+
+        Node nodeA = nodes.get(a), nodeB = nodes.get(b);
+        Edge edge = new Edge(nodeA, nodeB, this, attributes, e);
+        edges.set(e, edge);
+        rows.get(a).append(b, e);
+        if (a != b) {
+            rows.get(b).append(a, e);
+        }
+        return e;
+    }
+
+    /**
+     * Returns all the graph's nodes
+     * @return
+     */
+    @Override
+    public Collection<Node> getNodes() {
+        return new AbstractList<Node>() {
+
+            @Override
+            public Node get(int index) {
+                if (index < 0 || index >= numNodes.get()) {
+                    throw new IndexOutOfBoundsException("No node at position "+index);
+                }
+                return members.await(index);
+            }
+
+            @Override
+            public int size() {
+                return numNodes.get();
+            }
+        };
+    }
+
+    /**
+     * returns all the graph's edges
+     * @return
+     */
+    @Override
+    public Collection<Edge> getEdges() {
+        return new AbstractList<Edge>() {
+
+            @Override
+            public Edge get(int index) {
+                if (index < 0 || index >= numEdges.get()) {
+                    throw new IndexOutOfBoundsException("No edge with ordinal "+index);
+                }
+                return edges.await(index);
+            }
+
+            @Override
+            public int size() {
+                return numEdges.get();
+            }
+        };
+    }
+
+    @Override
+    public int getNumEdges() {
+        return numEdges.get();
+    }
+
+    @Override
+    public int getNumNodes() {
+        return numNodes.get();
+    }
+
+    /**
+     * returns whether the graph contains a node with the same id as the one given.
+     * @param node
+     * @return
+     */
+    @Override
+    public boolean contains(Node node) {
+        return ordinalOf(node) >= 0;
+    }
+
+    /*
+     * returns whether the graph contains an edge equivalent to the one given
+     *
+     */
+    @Override
+    public boolean contains(Edge edge) {
+        return containsEdge(edge.getConnectedNodes());
+    }
+
+    @Override
+    public boolean containsEdge(SetOfTwo<Node> nodePair) {
+        int a = ordinalOf(nodePair.getA());
+        int b = ordinalOf(nodePair.getB());
+        if (a < 0 || b < 0) {
+            return false;
+        }
+        long key = Pairs.key(a, b);
+        LongIntHashMap stripe = edgeIndex[stripeOf(key)];
+        synchronized (stripe) {
+            return stripe.containsKey(key);
+        }
+    }
+
+    /**
+     * returns the store holding the probabilities of all edges.
+     * @return the edge attribute store.
+     */
+    @Override
+    public EdgeAttributes getEdgeAttributes() {
+        return attributes;
+    }
+
+    /**
+     * returns the set of neighbours for the given node. The returned set is a
+     * view onto the node's adjacency row.
+     * @param node the node
+     * @return the set of neighbours for the node.
+     */
+    @Override
+    public Set<Neighbour> getNeighboursOfNode(Node node) {
+        int ordinal = ordinalOf(node);
+        if (ordinal < 0) {
+            return Collections.emptySet();
+        }
+        return new NeighbourView(rows.get(ordinal));
+    }
+
+    /**
+     * returns the degree of the node with the given ordinal.
+     * @param node the node ordinal
+     * @return the degree, or 0 if the graph lacks the node.
+     */
+    @Override
+    public int degree(int node) {
+        Row row = node >= 0 && nodes.get(node) != null ? rows.get(node) : null;
+        return row == null ? 0 : row.size();
+    }
+
+    /**
+     * calls the visitor for every neighbour of the node with the given ordinal.
+     * @param node the node ordinal
+     * @param visitor the callback
+     */
+    @Override
+    public void forEachNeighbour(int node, NeighbourVisitor visitor) {
+        if (node < 0 || nodes.get(node) == null) {
+            return;
+        }
+        Row row = rows.get(node);
+        int[] entries;
+        int size;
+        synchronized (row) {
+            entries = row.entries;
+            size = row.size;
+        }
+        for (int i = 0; i < size; i += 2) {
+            visitor.visit(entries[i], entries[i+1]);
+        }
+    }
+
+    /**
+     * sets the dictionary assigning ordinals to node ids.
+     * @param dictionary the node dictionary
+     * @throws GraphException if the graph already contains nodes.
+     */
+    @Override
+    public void setNodeDictionary(NodeDictionary dictionary) {
+        if (numNodes.get() > 0) {
+            throw new GraphException("Cannot replace the node dictionary of non-empty graph \""+getName()+"\".");
+        }
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * gets the dictionary assigning ordinals to node ids.
+     * @return the node dictionary
+     */
+    @Override
+    public NodeDictionary getNodeDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * returns an immutable snapshot of this graph. Should only be called once
+     * population has finished.
+     * @return the frozen graph.
+     */
+    @Override
+    public FrozenGraph freeze() {
+        return new FrozenGraph(this);
+    }
+
+    /**
+     * counts the edges contained in both this and the other graph.
+     * @param other another graph
+     * @return the number of shared edges.
+     */
+    @Override
+    public int intersectionCount(Graph other) {
+        return GraphAlgebra.intersectionCount(this, other);
+    }
+
+    /**
+     * counts the edges contained in this graph but not in the other graph.
+     * @param other another graph
+     * @return the number of edges unique to this graph.
+     */
+    @Override
+    public int differenceCount(Graph other) {
+        return getNumEdges() - GraphAlgebra.intersectionCount(this, other);
+    }
+
+    /**
+     * counts the edges of this graph between nodes of the given graph.
+     * @param nodeSubset a graph whose nodes delimit the subset
+     * @return the number of induced edges.
+     */
+    @Override
+    public int inducedEdgeCount(Graph nodeSubset) {
+        return GraphAlgebra.inducedEdgeCount(this, nodeSubset);
+    }
+
+    /**
+     * returns the dictionary ordinal of the given node or of its local equivalent.
+     * @param node a node of this or another graph.
+     * @return the ordinal or -1 if the graph contains no such node.
+     */
+    private int ordinalOf(Node node) {
+        int ordinal = dictionary.ordinalOf(node);
+        return ordinal >= 0 && nodes.get(ordinal) != null ? ordinal : -1;
+    }
+
+    /**
+     * returns the stripe of the edge index responsible for the given key.
+     */
+    private static int stripeOf(long key) {
+        int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        return h >>> (32 - Integer.numberOfTrailingZeros(STRIPES));
+    }
+
+    /**
+     * logs a warning message
+     * @param msg the message.
+     */
+    private void warn(String msg) {
+        Logger logger = Logger.getLogger(this.getClass().getCanonicalName());
+        if (logger.isLoggable(Level.WARNING)) {
+            logger.log(Level.WARNING, msg, new Throwable(){});
+        }
+    }
+
+    /**
+     * A lock-free table of references indexed by a non-negative int. The table
+     * is split into chunks which are allocated on first use.
+     */
+    private static final class Slots<T> {
+
+        /**
+         * log2 of the chunk size.
+         */
+        private static final int CHUNK_SHIFT = 15;
+
+        /**
+         * number of slots per chunk.
+         */
+        private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+        /**
+         * the chunks; enough to cover all non-negative ints.
+         */
+        private final AtomicReferenceArray<AtomicReferenceArray<T>> chunks =
+                new AtomicReferenceArray<AtomicReferenceArray<T>>(1 << (31 - CHUNK_SHIFT));
+
+        /**
+         * gets the value of a slot.
+         * @return the value, or null if the slot is empty.
+         */
+        T get(int i) {
+            AtomicReferenceArray<T> chunk = chunks.get(i >>> CHUNK_SHIFT);
+            return chunk == null ? null : chunk.get(i & (CHUNK_SIZE - 1));
+        }
+
+        /**
+         * waits for a slot that has been claimed by another thread to be filled.
+         * @return the value of the slot.
+         */
+        T await(int i) {
+            T value = get(i);
+            while (value == null) {
+                Thread.yield();
+                value = get(i);
+            }
+            return value;
+        }
+
+        /**
+         * sets the value of a slot.
+         */
+        void set(int i, T value) {
+            chunk(i).set(i & (CHUNK_SIZE - 1), value);
+        }
+
+        /**
+         * sets the value of a slot if it currently holds the expected value.
+         * @return whether the value was set.
+         */
+        boolean compareAndSet(int i, T expected, T value) {
+            return chunk(i).compareAndSet(i & (CHUNK_SIZE - 1), expected, value);
+        }
+
+        /**
+         * gets the chunk holding the given slot, allocating it if necessary.
+         */
+        private AtomicReferenceArray<T> chunk(int i) {
+            int c = i >>> CHUNK_SHIFT;
+            AtomicReferenceArray<T> chunk = chunks.get(c);
+            if (chunk == null) {
+                chunks.compareAndSet(c, null, new AtomicReferenceArray<T>(CHUNK_SIZE));
+                chunk = chunks.get(c);
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * The append-only adjacency row of a node, holding alternating neighbour
+     * and edge ordinals. Guarded by its own monitor; entries below
+     * <code>size</code> are never changed.
+     */
+    private static final class Row {
+
+        private int[] entries = new int[4];
+
+        private int size = 0;
+
+        /**
+         * appends a neighbour.
+         */
+        synchronized void append(int neighbour, int edge) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size] = neighbour;
+            entries[size+1] = edge;
+            size += 2;
+        }
+
+        /**
+         * returns the number of neighbours.
+         */
+        synchronized int size() {
+            return size / 2;
+        }
+    }
+
+    /**
+     * A read-only set view onto the neighbours of a node.
+     */
+    private final class NeighbourView extends AbstractSet<Neighbour> {
+
+        /**
+         * the adjacency row.
+         */
+        private final Row row;
+
+        /**
+         * constructor
+         * @param row the adjacency row.
+         */
+        private NeighbourView(Row row) {
+            this.row = row;
+        }
+
+        @Override
+        public int size() {
+            return row.size();
+        }
+
+        @Override
+        public Iterator<Neighbour> iterator() {
+            final int[] entries;
+            final int size;
+            synchronized (row) {
+                entries = row.entries;
+                size = row.size;
+            }
+            return new Iterator<Neighbour>() {
+
+                private int pos = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return pos < size;
+                }
+
+                @Override
+                public Neighbour next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int i = pos;
+                    pos += 2;
+                    return new Neighbour(nodes.get(entries[i]), edges.await(entries[i+1]));
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("Read-only view.");
+                }
+            };
+        }
+    }
+}
@@ -19,9 +19,7 @@ package uk.ac.ncl.cs.harness.graph;
 
 import java.util.Collections;
 import uk.ac.ncl.cs.harness.util.SetOfTwo;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -37,14 +35,19 @@ public class Edge implements Comparable<Edge> {
     private final SetOfTwo<Node> ij;
 
     /**
-     * the probabilities carried by the edge.
+     * the graph-level store holding the probabilities carried by the edge.
      */
-    private Map<String,Probability> probabilities;
+    private final EdgeAttributes attributes;
+
+    /**
+     * the edge's ordinal within the attribute store.
+     */
+    private final int index;
 
     /**
      * the graph object to which this edge belongs.
      */
-    private Graph owningGraph;
+    private final Graph owningGraph;
 
     /**
      * a package-private constructor that can only be used by graph implementations.
@@ -53,8 +56,10 @@ public class Edge implements Comparable<Edge> {
      * @param i a node
      * @param j another node
      * @param owningGraph the graph to which this edge (and the adjacent nodes) belong.
+     * @param attributes the owning graph's attribute store.
+     * @param index the edge's ordinal within the attribute store.
      */
-    Edge(Node i, Node j, Graph owningGraph) {
+    Edge(Node i, Node j, Graph owningGraph, EdgeAttributes attributes, int index) {
 //        if (i.getId().compareTo(j.getId()) <= 0) {
 //            this.i = i;
 //            this.j = j;
@@ -64,6 +69,8 @@ public class Edge implements Comparable<Edge> {
 //        }
         ij = new SetOfTwo<Node>(i, j);
         this.owningGraph = owningGraph;
+        this.attributes = attributes;
+        this.index = index;
     }
 
     /**
@@ -75,17 +82,22 @@ public class Edge implements Comparable<Edge> {
         return ij;
     }
 
+    /**
+     * gets the edge's ordinal, which indexes its entries in the owning graph's
+     * <code>EdgeAttributes</code>.
+     * @return the edge's ordinal.
+     */
+    public int getIndex() {
+        return index;
+    }
+
     /**
      * Adds a probability to the edge.
      * @param name the label of the probabilty.
      * @param prob the value of the probability.
      */
     public void addProbability(String name, double prob) {
-        if (probabilities == null) {
-            probabilities = new HashMap<String, Probability>(5);
-        }
-        Probability p = new Probability(name, prob);
-        probabilities.put(name, p);
+        attributes.set(name, index, prob);
     }
 
     /**
@@ -93,11 +105,17 @@ public class Edge implements Comparable<Edge> {
      * @return a set of all probabilities stored in this edge.
      */
     public Set<Probability> getProbabilities() {
-        if (probabilities == null) {
-            return Collections.emptySet();
-        } else {
-            return new HashSet(probabilities.values());
+        Set<Probability> probabilities = null;
+        for (String key : attributes.getKeys()) {
+            double value = attributes.get(key, index);
+            if (!Double.isNaN(value)) {
+                if (probabilities == null) {
+                    probabilities = new HashSet<Probability>();
+                }
+                probabilities.add(new Probability(key, value));
+            }
         }
+        return probabilities == null ? Collections.<Probability>emptySet() : probabilities;
     }
 
     /**
@@ -106,11 +124,20 @@ public class Edge implements Comparable<Edge> {
      * @return the probability or null if it does not exist.
      */
     public Probability getProbability(String id) {
-        if (probabilities == null) {
-            return null;
-        } else {
-            return probabilities.get(id);
-        }
+        double value = attributes.get(id, index);
+        return Double.isNaN(value) ? null : new Probability(id, value);
+    }
+
+    /**
+     * Retrieves the value of the probability identified by the given ID without
+     * creating a <code>Probability</code> object.
+     * @param id the ID of the probability.
+     * @param absent the value to return if the probability does not exist.
+     * @return the probability value, or <code>absent</code>.
+     */
+    public double getProbabilityValue(String id, double absent) {
+        double value = attributes.get(id, index);
+        return Double.isNaN(value) ? absent : value;
     }
 
     /**
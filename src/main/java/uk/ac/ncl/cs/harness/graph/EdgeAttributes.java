@@ -0,0 +1,161 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+
+/**
+ * <p>A graph-level store for edge probabilities. Each probability key (e.g.
+ * <code>Probability.MAIN_KEY</code> or the name of a gold standard) owns one
+ * <code>double</code> column, which is indexed by edge ordinal. Missing values
+ * are stored as <code>NaN</code>.</p>
+ *
+ * <p>The probability accessors of <code>Edge</code> are views onto this store.
+ * Code that needs to process all edges of a graph can scan the columns directly.</p>
+ *
+ * <p>Frozen graphs hold a read-only copy of the store, which rejects writes and
+ * can be read from several threads at once.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+public final class EdgeAttributes {
+
+    /**
+     * initial length of a new column.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * probability key linked to its column.
+     */
+    private final Map<String,double[]> columns = new LinkedHashMap<String, double[]>();
+
+    /**
+     * whether this store rejects writes.
+     */
+    private final boolean readOnly;
+
+    /**
+     * creates an empty, writable store.
+     */
+    public EdgeAttributes() {
+        this.readOnly = false;
+    }
+
+    /**
+     * creates a read-only copy of the given store.
+     * @param source the store to copy
+     * @param numEdges the number of edges whose values are copied.
+     */
+    private EdgeAttributes(EdgeAttributes source, int numEdges) {
+        for (Map.Entry<String,double[]> entry : source.columns.entrySet()) {
+            double[] column = newColumn(numEdges, 0);
+            double[] values = entry.getValue();
+            System.arraycopy(values, 0, column, 0, Math.min(numEdges, values.length));
+            columns.put(entry.getKey(), column);
+        }
+        this.readOnly = true;
+    }
+
+    /**
+     * creates a read-only copy of this store.
+     * @param numEdges the number of edges whose values are copied.
+     * @return the read-only copy.
+     */
+    EdgeAttributes readOnlyCopy(int numEdges) {
+        return new EdgeAttributes(this, numEdges);
+    }
+
+    /**
+     * sets the value of a probability for the given edge.
+     * @param key the probability key.
+     * @param edge the edge ordinal.
+     * @param value the probability value.
+     * @throws GraphException if the store is read-only.
+     */
+    public void set(String key, int edge, double value) {
+        if (readOnly) {
+            throw new GraphException("Cannot set probability \""+key+"\" in a frozen graph.");
+        }
+        double[] column = columns.get(key);
+        if (column == null) {
+            column = newColumn(Math.max(INITIAL_CAPACITY, edge + 1), 0);
+            columns.put(key, column);
+        } else if (edge >= column.length) {
+            column = grow(column, Math.max(column.length * 2, edge + 1));
+            columns.put(key, column);
+        }
+        column[edge] = value;
+    }
+
+    /**
+     * gets the value of a probability for the given edge.
+     * @param key the probability key.
+     * @param edge the edge ordinal.
+     * @return the value or <code>NaN</code> if it has not been set.
+     */
+    public double get(String key, int edge) {
+        double[] column = columns.get(key);
+        return column == null || edge >= column.length ? Double.NaN : column[edge];
+    }
+
+    /**
+     * returns the column for the given key. Entries for edges whose value has
+     * not been set are <code>NaN</code>; the column may be longer than the number
+     * of edges in the graph. The returned array is live and should be treated as
+     * read-only.
+     * @param key the probability key.
+     * @return the column or <code>null</code> if no value has been set for the key.
+     */
+    public double[] getColumn(String key) {
+        return columns.get(key);
+    }
+
+    /**
+     * gets all keys for which at least one value has been set.
+     * @return the keys in order of first use.
+     */
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(columns.keySet());
+    }
+
+    /**
+     * creates a column of the given length, with all entries from
+     * <code>from</code> on set to <code>NaN</code>.
+     */
+    private static double[] newColumn(int length, int from) {
+        double[] column = new double[length];
+        Arrays.fill(column, from, length, Double.NaN);
+        return column;
+    }
+
+    /**
+     * copies a column into a longer one.
+     */
+    private static double[] grow(double[] column, int length) {
+        double[] grown = newColumn(length, column.length);
+        System.arraycopy(column, 0, grown, 0, column.length);
+        return grown;
+    }
+
+}
@@ -0,0 +1,506 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.util.SetOfTwo;
+
+/**
+ * <p>An immutable snapshot of a graph, as returned by <code>Graph.freeze()</code>.
+ * The adjacency structure is compacted into sorted compressed-sparse-row arrays
+ * which, like everything else in this class, are only reachable through final
+ * fields and never written after construction. A frozen graph can therefore be
+ * handed to other threads without synchronisation and read by all of them
+ * concurrently.</p>
+ *
+ * <p>All mutating methods, including setting edge probabilities, throw a
+ * <code>GraphException</code>. The snapshot shares the node dictionary of the
+ * graph it was taken from, so nodes and edges keep their ordinals.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+public final class FrozenGraph implements Graph {
+
+    /**
+     * The Graph's name
+     */
+    private final String name;
+
+    /**
+     * Assigns ordinals to node ids
+     */
+    private final NodeDictionary dictionary;
+
+    /**
+     * nodes in order of creation
+     */
+    private final Node[] members;
+
+    /**
+     * nodes by ordinal, null where this graph lacks the node
+     */
+    private final Node[] nodes;
+
+    /**
+     * edges by edge ordinal
+     */
+    private final Edge[] edges;
+
+    /**
+     * row offsets of the adjacency arrays, one row per node ordinal.
+     */
+    private final int[] offsets;
+
+    /**
+     * neighbour ordinals, sorted within each row.
+     */
+    private final int[] targets;
+
+    /**
+     * edge ordinals matching the entries in <code>targets</code>.
+     */
+    private final int[] targetEdges;
+
+    /**
+     * Probabilities of all edges, indexed by edge ordinal
+     */
+    private final EdgeAttributes attributes;
+
+    /**
+     * creates a snapshot of the given graph.
+     * @param source the graph to copy.
+     */
+    FrozenGraph(Graph source) {
+
+        name = source.getName();
+        dictionary = source.getNodeDictionary();
+
+        //copy nodes
+        members = new Node[source.getNumNodes()];
+        int rows = 0;
+        int m = 0;
+        for (Node node : source.getNodes()) {
+            int ordinal = dictionary.ordinalOf(node);
+            members[m++] = new Node(dictionary, this, ordinal);
+            rows = Math.max(rows, ordinal + 1);
+        }
+        nodes = new Node[rows];
+        for (Node node : members) {
+            nodes[node.getIndex()] = node;
+        }
+
+        //copy edges, keeping their ordinals
+        int numEdges = source.getNumEdges();
+        attributes = source.getEdgeAttributes().readOnlyCopy(numEdges);
+        edges = new Edge[numEdges];
+        int[] edgeA = new int[numEdges], edgeB = new int[numEdges];
+        int[] degrees = new int[rows];
+        for (Edge edge : source.getEdges()) {
+            int e = edge.getIndex();
+            int a = dictionary.ordinalOf(edge.getConnectedNodes().getA());
+            int b = dictionary.ordinalOf(edge.getConnectedNodes().getB());
+            edges[e] = new Edge(nodes[a], nodes[b], this, attributes, e);
+            edgeA[e] = a;
+            edgeB[e] = b;
+            degrees[a]++;
+            if (a != b) {
+                degrees[b]++;
+            }
+        }
+
+        //fill unsorted rows in edge order
+        offsets = new int[rows + 1];
+        for (int i = 0; i < rows; i++) {
+            offsets[i+1] = offsets[i] + degrees[i];
+        }
+        int total = offsets[rows];
+        int[] fill = Arrays.copyOf(offsets, rows);
+        int[] unsorted = new int[total];
+        int[] unsortedEdges = new int[total];
+        for (int e = 0; e < numEdges; e++) {
+            int i = fill[edgeA[e]]++;
+            unsorted[i] = edgeB[e];
+            unsortedEdges[i] = e;
+            if (edgeA[e] != edgeB[e]) {
+                int j = fill[edgeB[e]]++;
+                unsorted[j] = edgeA[e];
+                unsortedEdges[j] = e;
+            }
+        }
+
+        //transpose: visiting rows in ascending order appends ascending entries
+        System.arraycopy(offsets, 0, fill, 0, rows);
+        targets = new int[total];
+        targetEdges = new int[total];
+        for (int row = 0; row < rows; row++) {
+            for (int i = offsets[row]; i < offsets[row+1]; i++) {
+                int j = fill[unsorted[i]]++;
+                targets[j] = row;
+                targetEdges[j] = unsortedEdges[i];
+            }
+        }
+    }
+
+    /**
+     * gets the graph name
+     * @return
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * not supported by frozen graphs.
+     * @throws GraphException always.
+     */
+    @Override
+    public void setName(String name) {
+        throw frozen();
+    }
+
+    /**
+     * not supported by frozen graphs.
+     * @throws GraphException always.
+     */
+    @Override
+    public Node createNode(String id) {
+        throw frozen();
+    }
+
+    /**
+     * not supported by frozen graphs.
+     * @throws GraphException always.
+     */
+    @Override
+    public Node createNode(int id) {
+        throw frozen();
+    }
+
+    /**
+     * not supported by frozen graphs.
+     * @throws GraphException always.
+     */
+    @Override
+    public Edge createEdge(SetOfTwo<Node> nodes) {
+        throw frozen();
+    }
+
+    /**
+     * not supported by frozen graphs.
+     * @throws GraphException always.
+     */
+    @Override
+    public int[] addNodes(String[] ids) {
+        throw frozen();
+    }
+
+    /**
+     * not supported by frozen graphs.
+     * @throws GraphException always.
+     */
+    @Override
+    public int addEdges(int[] a, int[] b) {
+        throw frozen();
+    }
+
+    /**
+     * Returns all the graph's nodes
+     * @return
+     */
+    @Override
+    public Collection<Node> getNodes() {
+        return Collections.unmodifiableList(Arrays.asList(members));
+    }
+
+    /**
+     * returns all the graph's edges
+     * @return
+     */
+    @Override
+    public Collection<Edge> getEdges() {
+        return Collections.unmodifiableList(Arrays.asList(edges));
+    }
+
+    @Override
+    public int getNumEdges() {
+        return edges.length;
+    }
+
+    @Override
+    public int getNumNodes() {
+        return members.length;
+    }
+
+    /**
+     * returns whether the graph contains a node with the same id as the one given.
+     * @param node
+     * @return
+     */
+    @Override
+    public boolean contains(Node node) {
+        return ordinalOf(node) >= 0;
+    }
+
+    /*
+     * returns whether the graph contains an edge equivalent to the one given
+     *
+     */
+    @Override
+    public boolean contains(Edge edge) {
+        return containsEdge(edge.getConnectedNodes());
+    }
+
+    @Override
+    public boolean containsEdge(SetOfTwo<Node> nodePair) {
+        int a = ordinalOf(nodePair.getA());
+        int b = ordinalOf(nodePair.getB());
+        return a >= 0 && b >= 0 && findEdge(a, b) >= 0;
+    }
+
+    /**
+     * returns the read-only store holding the probabilities of all edges.
+     * @return the edge attribute store.
+     */
+    @Override
+    public EdgeAttributes getEdgeAttributes() {
+        return attributes;
+    }
+
+    /**
+     * returns the set of neighbours for the given node. The returned set is a
+     * view onto the adjacency arrays; its <code>size()</code> is a constant-time
+     * operation.
+     * @param node the node
+     * @return the set of neighbours for the node.
+     */
+    @Override
+    public Set<Neighbour> getNeighboursOfNode(Node node) {
+        int ordinal = ordinalOf(node);
+        if (ordinal < 0) {
+            return Collections.emptySet();
+        }
+        return new NeighbourView(ordinal);
+    }
+
+    /**
+     * returns the degree of the node with the given ordinal.
+     * @param node the node ordinal
+     * @return the degree, or 0 if the graph lacks the node.
+     */
+    @Override
+    public int degree(int node) {
+        return node >= 0 && node < nodes.length ? offsets[node+1] - offsets[node] : 0;
+    }
+
+    /**
+     * calls the visitor for every neighbour of the node with the given ordinal.
+     * @param node the node ordinal
+     * @param visitor the callback
+     */
+    @Override
+    public void forEachNeighbour(int node, NeighbourVisitor visitor) {
+        if (node < 0 || node >= nodes.length) {
+            return;
+        }
+        for (int i = offsets[node]; i < offsets[node+1]; i++) {
+            visitor.visit(targets[i], targetEdges[i]);
+        }
+    }
+
+    /**
+     * not supported by frozen graphs.
+     * @throws GraphException always.
+     */
+    @Override
+    public void setNodeDictionary(NodeDictionary dictionary) {
+        throw frozen();
+    }
+
+    /**
+     * gets the dictionary assigning ordinals to node ids.
+     * @return the node dictionary
+     */
+    @Override
+    public NodeDictionary getNodeDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * returns this graph, which is already frozen.
+     * @return this graph.
+     */
+    @Override
+    public FrozenGraph freeze() {
+        return this;
+    }
+
+    /**
+     * counts the edges contained in both this and the other graph.
+     * @param other another graph
+     * @return the number of shared edges.
+     */
+    @Override
+    public int intersectionCount(Graph other) {
+        return GraphAlgebra.intersectionCount(this, other);
+    }
+
+    /**
+     * counts the edges contained in this graph but not in the other graph.
+     * @param other another graph
+     * @return the number of edges unique to this graph.
+     */
+    @Override
+    public int differenceCount(Graph other) {
+        return getNumEdges() - GraphAlgebra.intersectionCount(this, other);
+    }
+
+    /**
+     * counts the edges of this graph between nodes of the given graph.
+     * @param nodeSubset a graph whose nodes delimit the subset
+     * @return the number of induced edges.
+     */
+    @Override
+    public int inducedEdgeCount(Graph nodeSubset) {
+        return GraphAlgebra.inducedEdgeCount(this, nodeSubset);
+    }
+
+    /**
+     * returns the dictionary ordinal of the given node or of its local equivalent.
+     * @param node a node of this or another graph.
+     * @return the ordinal or -1 if the graph contains no such node.
+     */
+    private int ordinalOf(Node node) {
+        int ordinal = dictionary.ordinalOf(node);
+        return ordinal >= 0 && ordinal < nodes.length && nodes[ordinal] != null ? ordinal : -1;
+    }
+
+    /**
+     * looks up the edge between the two given node ordinals by binary search
+     * of the shorter row.
+     * @return the edge ordinal, or -1 if the nodes are not connected.
+     */
+    private int findEdge(int a, int b) {
+        int row = offsets[a+1] - offsets[a] <= offsets[b+1] - offsets[b] ? a : b;
+        int other = row == a ? b : a;
+        int pos = Arrays.binarySearch(targets, offsets[row], offsets[row+1], other);
+        return pos >= 0 ? targetEdges[pos] : -1;
+    }
+
+    /**
+     * looks up the edge between the two given dictionary ordinals. Used by
+     * overlays, which may also hold nodes unknown to this graph.
+     * @return the edge ordinal, or -1 if the nodes are not connected.
+     */
+    int edgeBetween(int a, int b) {
+        return a < nodes.length && b < nodes.length ? findEdge(a, b) : -1;
+    }
+
+    /**
+     * returns the start of the given node's row in the adjacency arrays.
+     */
+    int rowStart(int ordinal) {
+        return ordinal < nodes.length ? offsets[ordinal] : 0;
+    }
+
+    /**
+     * returns the end (exclusive) of the given node's row in the adjacency arrays.
+     */
+    int rowEnd(int ordinal) {
+        return ordinal < nodes.length ? offsets[ordinal+1] : 0;
+    }
+
+    /**
+     * returns the neighbour ordinal at the given position of the adjacency arrays.
+     */
+    int neighbourAt(int i) {
+        return targets[i];
+    }
+
+    /**
+     * returns the edge ordinal at the given position of the adjacency arrays.
+     */
+    int edgeAt(int i) {
+        return targetEdges[i];
+    }
+
+    /**
+     * creates the exception thrown by all mutating methods.
+     */
+    private GraphException frozen() {
+        return new GraphException("Graph \""+name+"\" is frozen and cannot be modified.");
+    }
+
+    /**
+     * A read-only set view onto the neighbours of a node.
+     */
+    private final class NeighbourView extends AbstractSet<Neighbour> {
+
+        /**
+         * the node ordinal.
+         */
+        private final int ordinal;
+
+        /**
+         * constructor
+         * @param ordinal the node ordinal.
+         */
+        private NeighbourView(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public int size() {
+            return offsets[ordinal+1] - offsets[ordinal];
+        }
+
+        @Override
+        public Iterator<Neighbour> iterator() {
+            return new Iterator<Neighbour>() {
+
+                private int pos = offsets[ordinal];
+
+                @Override
+                public boolean hasNext() {
+                    return pos < offsets[ordinal+1];
+                }
+
+                @Override
+                public Neighbour next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int i = pos++;
+                    return new Neighbour(nodes[targets[i]], edges[targetEdges[i]]);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("Read-only view.");
+                }
+            };
+        }
+    }
+}
@@ -53,6 +53,15 @@ public interface Graph {
      */
     Node createNode(String id);
 
+    /**
+     * creates a node with the given numeric id. The node is the same as the
+     * one created by <code>createNode(String.valueOf(id))</code>, but its id
+     * string is never materialised unless asked for.
+     * @param id the node's non-negative numeric id
+     * @return the node
+     */
+    Node createNode(int id);
+
     /**
      * Creates an edge between the given pair of nodes.
      * @param nodes the pair of nodes which is to be connected by an edge.
@@ -60,6 +69,28 @@ public interface Graph {
      */
     Edge createEdge(SetOfTwo<Node> nodes);
 
+    /**
+     * creates nodes for all the given ids in one pass. Unlike <code>createNode</code>,
+     * ids that are already present or repeated are skipped silently.
+     * @param ids the node ids.
+     * @return the dictionary ordinals of the nodes, in the order of <code>ids</code>.
+     */
+    int[] addNodes(String[] ids);
+
+    /**
+     * creates an edge between the nodes with dictionary ordinals <code>a[i]</code>
+     * and <code>b[i]</code> for each <code>i</code>. The pairs are deduplicated in
+     * a single sort, so, unlike <code>createEdge</code>, duplicates are not logged
+     * one by one but counted.
+     * @param a the first node ordinal of each edge.
+     * @param b the second node ordinal of each edge.
+     * @return the number of pairs skipped, either because they were repeated
+     * or because the graph already contained the edge.
+     * @throws uk.ac.ncl.cs.harness.exceptions.GraphException if the graph lacks
+     * one of the nodes.
+     */
+    int addEdges(int[] a, int[] b);
+
     /**
      * gets the set of all nodes contained in the graph.
      * @return the set of all nodes contained in the graph.
@@ -112,4 +143,77 @@ public interface Graph {
      */
     Set<Neighbour> getNeighboursOfNode(Node node);
 
+    /**
+     * returns the degree of the node with the given dictionary ordinal, i.e.
+     * the size of its neighbour set.
+     * @param node the node's dictionary ordinal.
+     * @return the degree, or 0 if the graph lacks the node.
+     */
+    int degree(int node);
+
+    /**
+     * calls the visitor for every neighbour of the node with the given
+     * dictionary ordinal. No objects are allocated per neighbour.
+     * @param node the node's dictionary ordinal.
+     * @param visitor the callback.
+     */
+    void forEachNeighbour(int node, NeighbourVisitor visitor);
+
+    /**
+     * returns the store holding the probabilities of all edges in this graph,
+     * one column per probability key, indexed by <code>Edge.getIndex()</code>.
+     * Edge ordinals are dense, i.e. they range from 0 to <code>getNumEdges()-1</code>.
+     * @return the graph's edge attribute store.
+     */
+    EdgeAttributes getEdgeAttributes();
+
+    /**
+     * sets the dictionary that assigns ordinals to this graph's node IDs. Graphs
+     * sharing a dictionary can match each other's nodes and edges by ordinal.
+     * @param dictionary the node dictionary.
+     * @throws uk.ac.ncl.cs.harness.exceptions.GraphException if the graph already
+     * contains nodes.
+     */
+    void setNodeDictionary(NodeDictionary dictionary);
+
+    /**
+     * gets the dictionary that assigns ordinals to this graph's node IDs.
+     * @return the node dictionary.
+     */
+    NodeDictionary getNodeDictionary();
+
+    /**
+     * returns an immutable snapshot of this graph, which can be shared between
+     * threads without synchronisation. The graph itself remains unchanged and
+     * writable; later changes to it are not reflected in the snapshot.
+     * @return the frozen graph.
+     * @see FrozenGraph
+     */
+    FrozenGraph freeze();
+
+    /**
+     * counts the edges contained in both this and the other graph, matching
+     * nodes by id. The size of the union follows as
+     * <code>getNumEdges() + other.getNumEdges() - intersectionCount(other)</code>.
+     * @param other another graph.
+     * @return the number of shared edges.
+     */
+    int intersectionCount(Graph other);
+
+    /**
+     * counts the edges contained in this graph but not in the other graph,
+     * matching nodes by id.
+     * @param other another graph.
+     * @return the number of edges unique to this graph.
+     */
+    int differenceCount(Graph other);
+
+    /**
+     * counts the edges of this graph that connect two nodes contained in the
+     * given graph, i.e. the edges of the subgraph induced by its nodes.
+     * @param nodeSubset a graph whose nodes delimit the subset.
+     * @return the number of induced edges.
+     */
+    int inducedEdgeCount(Graph nodeSubset);
+
 }
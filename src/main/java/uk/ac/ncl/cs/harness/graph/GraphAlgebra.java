@@ -0,0 +1,197 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import uk.ac.ncl.cs.harness.util.SetOfTwo;
+
+/**
+ * Generic kernels behind the edge set operations of the <code>Graph</code>
+ * interface. Graphs over a shared node dictionary are compared row by row,
+ * merging sorted adjacency rows of node ordinals; otherwise the edges are
+ * matched by node id. Neither way builds temporary edge collections.
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+final class GraphAlgebra {
+
+    /**
+     * no instances.
+     */
+    private GraphAlgebra() {
+    }
+
+    /**
+     * counts the edges contained in both graphs.
+     * @param g a graph
+     * @param other another graph
+     * @return the number of shared edges.
+     */
+    static int intersectionCount(Graph g, Graph other) {
+
+        if (g.getNodeDictionary() != other.getNodeDictionary()) {
+            int count = 0;
+            for (Edge edge : g.getEdges()) {
+                if (other.containsEdge(edge.getConnectedNodes())) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        //walk the sparser graph
+        if (other.getNumEdges() < g.getNumEdges()) {
+            Graph swap = g;
+            g = other;
+            other = swap;
+        }
+        NodeDictionary dictionary = g.getNodeDictionary();
+        RowCollector rowG = new RowCollector(), rowOther = new RowCollector();
+        int count = 0;
+        for (Node node : g.getNodes()) {
+            int u = dictionary.ordinalOf(node);
+            if (other.degree(u) == 0) {
+                continue;
+            }
+            int n = rowG.collect(g, u);
+            int m = rowOther.collect(other, u);
+            int[] a = rowG.row, b = rowOther.row;
+            for (int i = 0, j = 0; i < n && j < m;) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * counts the edges of the graph that connect two nodes of the given node subset.
+     * @param g a graph
+     * @param nodeSubset a graph whose nodes delimit the subset
+     * @return the number of edges induced by the subset.
+     */
+    static int inducedEdgeCount(Graph g, Graph nodeSubset) {
+
+        if (g == nodeSubset) {
+            return g.getNumEdges();
+        }
+
+        if (g.getNodeDictionary() != nodeSubset.getNodeDictionary()) {
+            int count = 0;
+            for (Edge edge : g.getEdges()) {
+                SetOfTwo<Node> ab = edge.getConnectedNodes();
+                if (nodeSubset.contains(ab.getA()) && nodeSubset.contains(ab.getB())) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        final NodeDictionary dictionary = g.getNodeDictionary();
+        final BitSet members = new BitSet(dictionary.size());
+        for (Node node : nodeSubset.getNodes()) {
+            members.set(dictionary.ordinalOf(node));
+        }
+
+        //the subset covers all nodes of the graph
+        int shared = 0;
+        for (Node node : g.getNodes()) {
+            if (members.get(dictionary.ordinalOf(node))) {
+                shared++;
+            }
+        }
+        if (shared == g.getNumNodes()) {
+            return g.getNumEdges();
+        }
+
+        InducedCounter counter = new InducedCounter(members);
+        for (int u = members.nextSetBit(0); u >= 0; u = members.nextSetBit(u + 1)) {
+            counter.node = u;
+            g.forEachNeighbour(u, counter);
+        }
+        return counter.count;
+    }
+
+    /**
+     * Collects the neighbours of a node with an ordinal not smaller than the
+     * node's own, so each edge is seen from one end only.
+     */
+    private static final class RowCollector implements NeighbourVisitor {
+
+        private int[] row = new int[16];
+
+        private int size;
+
+        private int min;
+
+        /**
+         * collects and sorts the row of the given node.
+         * @return the row length
+         */
+        int collect(Graph graph, int node) {
+            size = 0;
+            min = node;
+            graph.forEachNeighbour(node, this);
+            Arrays.sort(row, 0, size);
+            return size;
+        }
+
+        @Override
+        public void visit(int neighbour, int edge) {
+            if (neighbour >= min) {
+                if (size == row.length) {
+                    row = Arrays.copyOf(row, size * 2);
+                }
+                row[size++] = neighbour;
+            }
+        }
+    }
+
+    /**
+     * Counts the neighbours of a node that lie in the subset, seeing each edge
+     * from one end only.
+     */
+    private static final class InducedCounter implements NeighbourVisitor {
+
+        private final BitSet members;
+
+        private int node;
+
+        private int count;
+
+        InducedCounter(BitSet members) {
+            this.members = members;
+        }
+
+        @Override
+        public void visit(int neighbour, int edge) {
+            if (neighbour >= node && members.get(neighbour)) {
+                count++;
+            }
+        }
+    }
+
+}
@@ -20,7 +20,10 @@ package uk.ac.ncl.cs.harness.graph;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
 import uk.ac.ncl.cs.harness.extsupport.Extension;
+import uk.ac.ncl.cs.harness.util.LongIntHashMap;
+import uk.ac.ncl.cs.harness.util.Pairs;
 import uk.ac.ncl.cs.harness.util.SetOfTwo;
 
 /**
@@ -28,6 +31,12 @@ import uk.ac.ncl.cs.harness.util.SetOfTwo;
  * stores all elements in maps. It is comparably inefficient for small graphs, but
  * increasingly efficient for large, sparse graphs.
  *
+ * Nodes are stored by their ordinal in the graph's <code>NodeDictionary</code>, and
+ * edges are keyed by the packed ordinals of their two nodes (see <code>Pairs</code>)
+ * in a primitive hash map, so edge lookups neither allocate nor hash node IDs.
+ * Nodes of other graphs sharing the same dictionary are resolved without a
+ * string lookup.
+ *
  * @author Jochen Weile, M.Sc.
  */
 @Extension(id="mapgraph")
@@ -40,19 +49,39 @@ public final class MapGraph implements Graph {
     private String name;
 
     /**
-     * Node id linked to node
+     * Assigns ordinals to node ids
+     */
+    private NodeDictionary dictionary = new NodeDictionary();
+
+    /**
+     * All nodes in order of creation
      */
-    private Map<String,Node> nodes = new HashMap<String, Node>();
+    private ArrayList<Node> nodes = new ArrayList<Node>();
 
     /**
-     * Key (pair of node) linked to edge
+     * Nodes by dictionary ordinal, null where this graph lacks the node
      */
-    private Map<SetOfTwo<Node>,Edge> edges = new HashMap<SetOfTwo<Node>, Edge>();
+    private List<Node> nodesByOrdinal = new ArrayList<Node>();
 
     /**
-     * Node linked its neighbours
+     * All edges in order of creation
      */
-    private Map<Node,Set<Neighbour>> neighbours = new HashMap<Node, Set<Neighbour>>();
+    private ArrayList<Edge> edges = new ArrayList<Edge>();
+
+    /**
+     * Packed key (pair of node ordinals) linked to the edge's position in <code>edges</code>
+     */
+    private LongIntHashMap edgeIndex = new LongIntHashMap();
+
+    /**
+     * Neighbours of each node by dictionary ordinal
+     */
+    private List<Set<Neighbour>> neighbours = new ArrayList<Set<Neighbour>>();
+
+    /**
+     * Probabilities of all edges, indexed by edge ordinal
+     */
+    private EdgeAttributes attributes = new EdgeAttributes();
 
     /**
      * gets the graph name
@@ -79,17 +108,71 @@ public final class MapGraph implements Graph {
      */
     @Override
     public Node createNode(String id) {
-        if (nodes.get(id) != null) {
-            warn("Tried to create duplicate node \""+id+"\" in graph \""+getName()+"\".");
-            return nodes.get(id);
+        return createNodeAt(dictionary.add(id));
+    }
+
+    /**
+     * Creates a new node with a numeric id
+     * @param id
+     * @return
+     */
+    @Override
+    public Node createNode(int id) {
+        return createNodeAt(dictionary.add(id));
+    }
+
+    /**
+     * creates the node with the given dictionary ordinal, or warns and returns
+     * the existing one.
+     * @param ordinal the node's dictionary ordinal
+     * @return the node
+     */
+    private Node createNodeAt(int ordinal) {
+        Node existing = localNode(ordinal);
+        if (existing != null) {
+            warn("Tried to create duplicate node \""+dictionary.getId(ordinal)+"\" in graph \""+getName()+"\".");
+            return existing;
         } else {
-            Node node = new Node(id, this);
-            nodes.put(id,node);
-            neighbours.put(node, new HashSet<Neighbour>());
-            return node;
+            return insertNode(ordinal);
         }
     }
 
+    /**
+     * Creates nodes for all given ids, skipping existing ones without warnings.
+     * @param ids the node ids
+     * @return the ordinals of the nodes
+     */
+    @Override
+    public int[] addNodes(String[] ids) {
+        nodes.ensureCapacity(nodes.size() + ids.length);
+        int[] ordinals = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            int ordinal = dictionary.add(ids[i]);
+            if (localNode(ordinal) == null) {
+                insertNode(ordinal);
+            }
+            ordinals[i] = ordinal;
+        }
+        return ordinals;
+    }
+
+    /**
+     * stores a new node under the given ordinal.
+     * @param ordinal its dictionary ordinal
+     * @return the new node
+     */
+    private Node insertNode(int ordinal) {
+        while (nodesByOrdinal.size() <= ordinal) {
+            nodesByOrdinal.add(null);
+            neighbours.add(null);
+        }
+        Node node = new Node(dictionary, this, ordinal);
+        nodes.add(node);
+        nodesByOrdinal.set(ordinal, node);
+        neighbours.set(ordinal, new HashSet<Neighbour>());
+        return node;
+    }
+
 
     /**
      * Creates a new edge connecting the two nodes in the Pair pair.
@@ -122,44 +205,84 @@ public final class MapGraph implements Graph {
      */
     private Edge createEdge(SetOfTwo<Node> pair, boolean createNodes) {
 
-        //check if the given nodes are alien, if so: replace them
-        if (!pair.getA().getOwningGraph().equals(this)
-                || !pair.getB().getOwningGraph().equals(this)) {
-            
-            Node a = pair.getA().getOwningGraph().equals(this) ?
-                        pair.getA() :
-                        getNode(pair.getA(), createNodes);
-            Node b = pair.getB().getOwningGraph().equals(this) ?
-                        pair.getB() :
-                        getNode(pair.getB(), createNodes);
-
-            //if no local equivalents could be found or created log a warning and return null.
-            if (a == null || b == null) {
-                warn("Edge "+pair+" not created: No local node equivalents present.");
-                return null;
-            }
+        //resolve the local equivalents of the given nodes by ordinal
+        int ordA = ordinalOf(pair.getA());
+        int ordB = ordinalOf(pair.getB());
+
+        if (createNodes) {
+            ordA = ordA < 0 ? createNode(pair.getA().getId()).getIndex() : ordA;
+            ordB = ordB < 0 ? createNode(pair.getB().getId()).getIndex() : ordB;
+        }
 
-            pair = new SetOfTwo(a,b);
+        //if no local equivalents could be found or created log a warning and return null.
+        if (ordA < 0 || ordB < 0) {
+            warn("Edge "+pair+" not created: No local node equivalents present.");
+            return null;
         }
 
+        long key = Pairs.key(ordA, ordB);
+        int existing = edgeIndex.get(key);
+
         //check for duplicate edge
-        if (edges.get(pair) != null) {
+        if (existing != LongIntHashMap.NO_VALUE) {
 
             warn("Tried to create duplicate edge "+pair+"in graph \""+getName()+"\".");
-            return edges.get(pair);
+            return edges.get(existing);
 
         } else {
+            return insertEdge(ordA, ordB, key);
+        }
+    }
 
-            Edge edge = new Edge(pair.getA(), pair.getB(), this);
-            edges.put(pair, edge);
+    /**
+     * Creates edges between the given pairs of node ordinals, skipping and
+     * counting duplicates.
+     * @param a the first node ordinal of each edge
+     * @param b the second node ordinal of each edge
+     * @return the number of skipped pairs
+     */
+    @Override
+    public int addEdges(int[] a, int[] b) {
+        long[] keys = Pairs.sortedUniqueKeys(a, b);
+        int duplicates = a.length - keys.length;
+        edges.ensureCapacity(edges.size() + keys.length);
+        for (long key : keys) {
+            int ordA = Pairs.high(key), ordB = Pairs.low(key);
+            if (localNode(ordA) == null || localNode(ordB) == null) {
+                throw new GraphException("Cannot connect nodes "+ordA+" and "+ordB
+                        +": not present in graph \""+getName()+"\".");
+            }
+            if (edgeIndex.containsKey(key)) {
+                duplicates++;
+            } else {
+                insertEdge(ordA, ordB, key);
+            }
+        }
+        return duplicates;
+    }
 
-            Set<Neighbour> neigh_a = neighbours.get(pair.getA());
-            neigh_a.add(new Neighbour(pair.getB(), edge));
-            Set<Neighbour> neigh_b = neighbours.get(pair.getB());
-            neigh_b.add(new Neighbour(pair.getA(), edge));
+    /**
+     * stores a new edge between the nodes with the given ordinals.
+     * @param ordA the first node ordinal
+     * @param ordB the second node ordinal
+     * @param key the packed key of the two ordinals
+     * @return the new edge
+     */
+    private Edge insertEdge(int ordA, int ordB, long key) {
 
-            return edge;
-        }
+        Node a = nodesByOrdinal.get(ordA);
+        Node b = nodesByOrdinal.get(ordB);
+
+        Edge edge = new Edge(a, b, this, attributes, edges.size());
+        edgeIndex.put(key, edges.size());
+        edges.add(edge);
+
+        Set<Neighbour> neigh_a = neighbours.get(ordA);
+        neigh_a.add(new Neighbour(b, edge));
+        Set<Neighbour> neigh_b = neighbours.get(ordB);
+        neigh_b.add(new Neighbour(a, edge));
+
+        return edge;
     }
 
 
@@ -170,7 +293,7 @@ public final class MapGraph implements Graph {
      */
     @Override
     public Collection<Node> getNodes() {
-        return Collections.unmodifiableCollection(nodes.values());
+        return Collections.unmodifiableCollection(nodes);
     }
 
     /**
@@ -179,7 +302,7 @@ public final class MapGraph implements Graph {
      */
     @Override
     public Collection<Edge> getEdges() {
-        return Collections.unmodifiableCollection(edges.values());
+        return Collections.unmodifiableCollection(edges);
     }
 
     /*
@@ -194,7 +317,9 @@ public final class MapGraph implements Graph {
 
     @Override
     public boolean containsEdge(SetOfTwo<Node> nodePair) {
-        return edges.containsKey(nodePair);
+        int a = ordinalOf(nodePair.getA());
+        int b = ordinalOf(nodePair.getB());
+        return a >= 0 && b >= 0 && edgeIndex.containsKey(Pairs.key(a, b));
     }
 
 
@@ -205,21 +330,26 @@ public final class MapGraph implements Graph {
      */
     @Override
     public boolean contains(Node node) {
-        return nodes.containsKey(node.getId());
+        return ordinalOf(node) >= 0;
     }
 
     /**
-     * returns the equivalent to the given node. If none exists it can be created
-     * if the <code>create</code> flag is set.
+     * returns the dictionary ordinal of the given node or of its local equivalent.
+     * @param node a node of this or another graph.
+     * @return the ordinal, or -1 if the graph contains no such node.
      */
-    private Node getNode(Node peer, boolean create) {
-        Node node = nodes.get(peer.getId());
-
-        if (node == null && create) {
-            node = createNode(peer.getId());
-        }
+    private int ordinalOf(Node node) {
+        int ordinal = dictionary.ordinalOf(node);
+        return localNode(ordinal) == null ? -1 : ordinal;
+    }
 
-        return node;
+    /**
+     * returns the local node with the given dictionary ordinal.
+     * @param ordinal a dictionary ordinal
+     * @return the node, or null if the graph contains no such node.
+     */
+    private Node localNode(int ordinal) {
+        return ordinal >= 0 && ordinal < nodesByOrdinal.size() ? nodesByOrdinal.get(ordinal) : null;
     }
 
     @Override
@@ -250,13 +380,28 @@ public final class MapGraph implements Graph {
      * @return  the equivalent to the given edge
      */
     private Edge getEdge(Edge peer, CreateCondition create) {
-        Edge edge = edges.get(peer.getConnectedNodes());
+        SetOfTwo<Node> pair = peer.getConnectedNodes();
+        int a = ordinalOf(pair.getA());
+        int b = ordinalOf(pair.getB());
+        int position = a < 0 || b < 0 ?
+            LongIntHashMap.NO_VALUE :
+            edgeIndex.get(Pairs.key(a, b));
+        Edge edge = position == LongIntHashMap.NO_VALUE ? null : edges.get(position);
         if (edge == null && create != CreateCondition.DO_NOT_CREATE) {
             edge = createEdge(peer.getConnectedNodes(), create == CreateCondition.ALWAYS_CREATE);
         }
         return edge;
     }
 
+    /**
+     * returns the store holding the probabilities of all edges.
+     * @return the edge attribute store.
+     */
+    @Override
+    public EdgeAttributes getEdgeAttributes() {
+        return attributes;
+    }
+
     /**
      * returns the set of neighbours for the given node
      * @param node the node
@@ -264,7 +409,96 @@ public final class MapGraph implements Graph {
      */
     @Override
     public Set<Neighbour> getNeighboursOfNode(Node node) {
-        return Collections.unmodifiableSet(neighbours.get(node));
+        int ordinal = ordinalOf(node);
+        if (ordinal < 0) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(neighbours.get(ordinal));
+    }
+
+    /**
+     * returns the degree of the node with the given ordinal.
+     * @param node the node ordinal
+     * @return the degree, or 0 if the graph lacks the node.
+     */
+    @Override
+    public int degree(int node) {
+        return localNode(node) == null ? 0 : neighbours.get(node).size();
+    }
+
+    /**
+     * calls the visitor for every neighbour of the node with the given ordinal.
+     * @param node the node ordinal
+     * @param visitor the callback
+     */
+    @Override
+    public void forEachNeighbour(int node, NeighbourVisitor visitor) {
+        if (localNode(node) != null) {
+            for (Neighbour neighbour : neighbours.get(node)) {
+                visitor.visit(neighbour.getNode().getIndex(), neighbour.getConnectingEdge().getIndex());
+            }
+        }
+    }
+
+    /**
+     * sets the dictionary assigning ordinals to node ids.
+     * @param dictionary the node dictionary
+     * @throws GraphException if the graph already contains nodes.
+     */
+    @Override
+    public void setNodeDictionary(NodeDictionary dictionary) {
+        if (!nodes.isEmpty()) {
+            throw new GraphException("Cannot replace the node dictionary of non-empty graph \""+getName()+"\".");
+        }
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * gets the dictionary assigning ordinals to node ids.
+     * @return the node dictionary
+     */
+    @Override
+    public NodeDictionary getNodeDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * returns an immutable snapshot of this graph.
+     * @return the frozen graph.
+     */
+    @Override
+    public FrozenGraph freeze() {
+        return new FrozenGraph(this);
+    }
+
+    /**
+     * counts the edges contained in both this and the other graph.
+     * @param other another graph
+     * @return the number of shared edges.
+     */
+    @Override
+    public int intersectionCount(Graph other) {
+        return GraphAlgebra.intersectionCount(this, other);
+    }
+
+    /**
+     * counts the edges contained in this graph but not in the other graph.
+     * @param other another graph
+     * @return the number of edges unique to this graph.
+     */
+    @Override
+    public int differenceCount(Graph other) {
+        return getNumEdges() - GraphAlgebra.intersectionCount(this, other);
+    }
+
+    /**
+     * counts the edges of this graph between nodes of the given graph.
+     * @param nodeSubset a graph whose nodes delimit the subset
+     * @return the number of induced edges.
+     */
+    @Override
+    public int inducedEdgeCount(Graph nodeSubset) {
+        return GraphAlgebra.inducedEdgeCount(this, nodeSubset);
     }
 
 
@@ -273,6 +507,9 @@ public final class MapGraph implements Graph {
      * @param msg the message.
      */
     private void warn(String msg) {
-        Logger.getLogger(this.getClass().getCanonicalName()).log(Level.WARNING, msg, new Throwable(){});
+        Logger logger = Logger.getLogger(this.getClass().getCanonicalName());
+        if (logger.isLoggable(Level.WARNING)) {
+            logger.log(Level.WARNING, msg, new Throwable(){});
+        }
     }
 }
@@ -0,0 +1,768 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.extsupport.Extension;
+import uk.ac.ncl.cs.harness.util.LongIntHashMap;
+import uk.ac.ncl.cs.harness.util.MappedIntArray;
+import uk.ac.ncl.cs.harness.util.Pairs;
+import uk.ac.ncl.cs.harness.util.SetOfTwo;
+
+/**
+ * <p>An implementation of the <code>Graph</code> interface for templates too large
+ * for the Java heap. The node table, the edge list and the sorted
+ * compressed-sparse-row adjacency all live in memory-mapped temporary files
+ * (see <code>MappedIntArray</code>), so their size is bound by the address space
+ * and the disk rather than by <code>-Xmx</code>. <code>Node</code> and
+ * <code>Edge</code> objects are created on access and never stored.</p>
+ *
+ * <p>The only on-heap index holds the edges added since the last compaction.
+ * Like in <code>CSRGraph</code>, the adjacency is rebuilt once that index grows
+ * as large as the compacted part, and before the neighbours of a node are read.
+ * Bulk loads through <code>addEdges</code> bypass the index and compact once at
+ * the end, which is the intended way to build very large graphs. Node ids are
+ * still held by the (possibly shared) <code>NodeDictionary</code>.</p>
+ *
+ * <p>All mapped data is accessed with absolute reads, so once a graph is fully
+ * populated any number of threads may read it concurrently. Note that
+ * <code>freeze()</code> copies the graph onto the heap; to share a large
+ * template between threads, share the populated graph itself.</p>
+ *
+ * <p>The mapped storage is released by <code>close()</code>, after which the
+ * graph must not be used any more. The workflow closes the graphs it creates
+ * at the end of each replica.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+@Extension(id="mappedgraph")
+public final class MappedGraph implements Graph, Closeable {
+
+    /**
+     * minimal number of pending edges before a compaction is triggered.
+     */
+    private static final int MIN_PENDING = 1024;
+
+    /**
+     * The Graph's name
+     */
+    private String name;
+
+    /**
+     * Assigns ordinals to node ids
+     */
+    private NodeDictionary dictionary = new NodeDictionary();
+
+    /**
+     * position of each node in <code>members</code> plus one by ordinal, 0 where
+     * this graph lacks the node
+     */
+    private final MappedIntArray slots;
+
+    /**
+     * node ordinals in order of creation
+     */
+    private final MappedIntArray members;
+
+    /**
+     * degree of each node by ordinal
+     */
+    private final MappedIntArray degrees;
+
+    /**
+     * number of nodes
+     */
+    private int numNodes = 0;
+
+    /**
+     * the largest local node ordinal plus one
+     */
+    private int rows = 0;
+
+    /**
+     * first and second node ordinal of each edge
+     */
+    private final MappedIntArray edgeA, edgeB;
+
+    /**
+     * number of edges
+     */
+    private int numEdges = 0;
+
+    /**
+     * row offsets of the compacted adjacency. Row <code>i</code> spans
+     * <code>offsets[i]</code> to <code>offsets[i+1]</code>.
+     */
+    private final MappedIntArray offsets;
+
+    /**
+     * neighbour ordinals of the compacted adjacency, sorted within each row.
+     */
+    private final MappedIntArray targets;
+
+    /**
+     * edge ordinals matching the entries in <code>targets</code>.
+     */
+    private final MappedIntArray targetEdges;
+
+    /**
+     * working space for compactions: row fill pointers and the unsorted rows.
+     */
+    private final MappedIntArray fill, unsorted, unsortedEdges;
+
+    /**
+     * number of rows covered by the compacted adjacency.
+     */
+    private int compactedNodes = 0;
+
+    /**
+     * number of edges covered by the compacted adjacency.
+     */
+    private int compactedEdges = 0;
+
+    /**
+     * whether edges were added since the last compaction.
+     */
+    private volatile boolean dirty = false;
+
+    /**
+     * Packed key (pair of node ordinals) of each edge added since the last
+     * compaction, linked to its edge ordinal
+     */
+    private LongIntHashMap pending = new LongIntHashMap();
+
+    /**
+     * Probabilities of all edges, indexed by edge ordinal
+     */
+    private EdgeAttributes attributes = new EdgeAttributes();
+
+    /**
+     * creates an empty graph backed by files in the system's temporary directory.
+     * @throws GraphException if the backing files cannot be created.
+     */
+    public MappedGraph() {
+        try {
+            slots = new MappedIntArray(null);
+            members = new MappedIntArray(null);
+            degrees = new MappedIntArray(null);
+            edgeA = new MappedIntArray(null);
+            edgeB = new MappedIntArray(null);
+            offsets = new MappedIntArray(null);
+            targets = new MappedIntArray(null);
+            targetEdges = new MappedIntArray(null);
+            fill = new MappedIntArray(null);
+            unsorted = new MappedIntArray(null);
+            unsortedEdges = new MappedIntArray(null);
+        } catch (IOException ex) {
+            throw new GraphException("Unable to create memory-mapped graph storage.", ex);
+        }
+    }
+
+    /**
+     * releases the memory-mapped storage. The graph must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        for (MappedIntArray array : new MappedIntArray[] {slots, members, degrees,
+                edgeA, edgeB, offsets, targets, targetEdges, fill, unsorted, unsortedEdges}) {
+            array.close();
+        }
+    }
+
+    /**
+     * gets the graph name
+     * @return
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * sets the graph name
+     * @param name
+     */
+    @Override
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Creates a new node
+     * @param id
+     * @return
+     */
+    @Override
+    public Node createNode(String id) {
+        return createNodeAt(dictionary.add(id));
+    }
+
+    /**
+     * Creates a new node with a numeric id
+     * @param id
+     * @return
+     */
+    @Override
+    public Node createNode(int id) {
+        return createNodeAt(dictionary.add(id));
+    }
+
+    /**
+     * creates the node with the given dictionary ordinal, or warns and returns
+     * the existing one.
+     * @param ordinal the node's dictionary ordinal
+     * @return the node
+     */
+    private Node createNodeAt(int ordinal) {
+        if (hasNode(ordinal)) {
+            warn("Tried to create duplicate node \""+dictionary.getId(ordinal)+"\" in graph \""+getName()+"\".");
+        } else {
+            insertNode(ordinal);
+        }
+        return node(ordinal);
+    }
+
+    /**
+     * Creates nodes for all given ids, skipping existing ones without warnings.
+     * @param ids the node ids
+     * @return the ordinals of the nodes
+     */
+    @Override
+    public int[] addNodes(String[] ids) {
+        ensure(members, (long) numNodes + ids.length);
+        int[] ordinals = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            int ordinal = dictionary.add(ids[i]);
+            if (!hasNode(ordinal)) {
+                insertNode(ordinal);
+            }
+            ordinals[i] = ordinal;
+        }
+        return ordinals;
+    }
+
+    /**
+     * adds the node with the given ordinal to the node table.
+     */
+    private void insertNode(int ordinal) {
+        ensure(slots, ordinal + 1L);
+        ensure(degrees, ordinal + 1L);
+        ensure(members, numNodes + 1L);
+        members.set(numNodes, ordinal);
+        slots.set(ordinal, ++numNodes);
+        rows = Math.max(rows, ordinal + 1);
+    }
+
+    /**
+     * Creates a new edge connecting the two nodes in the given pair.
+     *
+     * If one or both of the nodes is alien to the graph, the method tries
+     * to find equivalent nodes first. If the edge exists already, a warning
+     * is logged and the original edge is returned.
+     *
+     * @param pair the pair of nodes to connect.
+     * @return the new edge, or null if the required nodes do not exist.
+     */
+    @Override
+    public Edge createEdge(SetOfTwo<Node> pair) {
+
+        int a = ordinalOf(pair.getA());
+        int b = ordinalOf(pair.getB());
+
+        if (a < 0 || b < 0) {
+            warn("Edge "+pair+" not created: No local node equivalents present.");
+            return null;
+        }
+
+        int existing = findEdge(a, b);
+        if (existing >= 0) {
+            warn("Tried to create duplicate edge "+pair+"in graph \""+getName()+"\".");
+            return edge(existing);
+        }
+
+        int e = insertEdge(a, b);
+        pending.put(Pairs.key(a, b), e);
+
+        if (pending.size() >= Math.max(MIN_PENDING, compactedEdges)) {
+            compact();
+        }
+
+        return edge(e);
+    }
+
+    /**
+     * Creates edges between the given pairs of node ordinals, skipping and
+     * counting duplicates. The new edges bypass the pending index; the
+     * adjacency is compacted once at the end.
+     * @param a the first node ordinal of each edge
+     * @param b the second node ordinal of each edge
+     * @return the number of skipped pairs
+     */
+    @Override
+    public int addEdges(int[] a, int[] b) {
+        long[] keys = Pairs.sortedUniqueKeys(a, b);
+        int duplicates = a.length - keys.length;
+        ensure(edgeA, (long) numEdges + keys.length);
+        ensure(edgeB, (long) numEdges + keys.length);
+        int before = numEdges;
+        for (long key : keys) {
+            int ordA = Pairs.high(key), ordB = Pairs.low(key);
+            if (!hasNode(ordA) || !hasNode(ordB)) {
+                throw new GraphException("Cannot connect nodes "+ordA+" and "+ordB
+                        +": not present in graph \""+getName()+"\".");
+            }
+            //keys are unique, so only edges present before this call can collide
+            if (findEdge(ordA, ordB) >= 0) {
+                duplicates++;
+            } else {
+                insertEdge(ordA, ordB);
+            }
+        }
+        if (numEdges > before) {
+            compact();
+        }
+        return duplicates;
+    }
+
+    /**
+     * appends a new edge between the given node ordinals to the edge list,
+     * without adding it to the adjacency.
+     * @return the new edge ordinal
+     */
+    private int insertEdge(int a, int b) {
+        if (2L * (numEdges + 1) > Integer.MAX_VALUE) {
+            throw new GraphException("Memory-mapped graph \""+getName()+"\" cannot hold more edges.");
+        }
+        int e = numEdges;
+        ensure(edgeA, e + 1L);
+        ensure(edgeB, e + 1L);
+        edgeA.set(e, a);
+        edgeB.set(e, b);
+        degrees.getAndAdd(a, 1);
+        if (a != b) {
+            degrees.getAndAdd(b, 1);
+        }
+        numEdges++;
+        dirty = true;
+        return e;
+    }
+
+    /**
+     * Returns all the graph's nodes. The nodes are created on access.
+     * @return
+     */
+    @Override
+    public Collection<Node> getNodes() {
+        return new AbstractList<Node>() {
+
+            @Override
+            public Node get(int index) {
+                if (index < 0 || index >= numNodes) {
+                    throw new IndexOutOfBoundsException("No node at position "+index);
+                }
+                return node(members.get(index));
+            }
+
+            @Override
+            public int size() {
+                return numNodes;
+            }
+        };
+    }
+
+    /**
+     * returns all the graph's edges. The edges are created on access.
+     * @return
+     */
+    @Override
+    public Collection<Edge> getEdges() {
+        return new AbstractList<Edge>() {
+
+            @Override
+            public Edge get(int index) {
+                if (index < 0 || index >= numEdges) {
+                    throw new IndexOutOfBoundsException("No edge with ordinal "+index);
+                }
+                return edge(index);
+            }
+
+            @Override
+            public int size() {
+                return numEdges;
+            }
+        };
+    }
+
+    @Override
+    public int getNumEdges() {
+        return numEdges;
+    }
+
+    @Override
+    public int getNumNodes() {
+        return numNodes;
+    }
+
+    /**
+     * returns whether the graph contains a node with the same id as the one given.
+     * @param node
+     * @return
+     */
+    @Override
+    public boolean contains(Node node) {
+        return ordinalOf(node) >= 0;
+    }
+
+    /*
+     * returns whether the graph contains an edge equivalent to the one given
+     *
+     */
+    @Override
+    public boolean contains(Edge edge) {
+        return containsEdge(edge.getConnectedNodes());
+    }
+
+    @Override
+    public boolean containsEdge(SetOfTwo<Node> nodePair) {
+        int a = ordinalOf(nodePair.getA());
+        int b = ordinalOf(nodePair.getB());
+        return a >= 0 && b >= 0 && findEdge(a, b) >= 0;
+    }
+
+    /**
+     * returns the store holding the probabilities of all edges.
+     * @return the edge attribute store.
+     */
+    @Override
+    public EdgeAttributes getEdgeAttributes() {
+        return attributes;
+    }
+
+    /**
+     * returns the set of neighbours for the given node. The returned set is a
+     * view onto the mapped adjacency; its <code>size()</code> is a constant-time
+     * operation.
+     * @param node the node
+     * @return the set of neighbours for the node.
+     */
+    @Override
+    public Set<Neighbour> getNeighboursOfNode(Node node) {
+        int ordinal = ordinalOf(node);
+        if (ordinal < 0) {
+            return Collections.emptySet();
+        }
+        ensureCompacted();
+        return new NeighbourView(ordinal);
+    }
+
+    /**
+     * returns the degree of the node with the given ordinal.
+     * @param node the node ordinal
+     * @return the degree, or 0 if the graph lacks the node.
+     */
+    @Override
+    public int degree(int node) {
+        return node >= 0 && node < rows ? degrees.get(node) : 0;
+    }
+
+    /**
+     * calls the visitor for every neighbour of the node with the given ordinal.
+     * @param node the node ordinal
+     * @param visitor the callback
+     */
+    @Override
+    public void forEachNeighbour(int node, NeighbourVisitor visitor) {
+        ensureCompacted();
+        if (node < 0 || node >= compactedNodes) {
+            return;
+        }
+        for (int i = offsets.get(node), end = offsets.get(node + 1); i < end; i++) {
+            visitor.visit(targets.get(i), targetEdges.get(i));
+        }
+    }
+
+    /**
+     * sets the dictionary assigning ordinals to node ids.
+     * @param dictionary the node dictionary
+     * @throws GraphException if the graph already contains nodes.
+     */
+    @Override
+    public void setNodeDictionary(NodeDictionary dictionary) {
+        if (numNodes > 0) {
+            throw new GraphException("Cannot replace the node dictionary of non-empty graph \""+getName()+"\".");
+        }
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * gets the dictionary assigning ordinals to node ids.
+     * @return the node dictionary
+     */
+    @Override
+    public NodeDictionary getNodeDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * returns an immutable snapshot of this graph. The snapshot is held on the heap.
+     * @return the frozen graph.
+     */
+    @Override
+    public FrozenGraph freeze() {
+        return new FrozenGraph(this);
+    }
+
+    /**
+     * counts the edges contained in both this and the other graph.
+     * @param other another graph
+     * @return the number of shared edges.
+     */
+    @Override
+    public int intersectionCount(Graph other) {
+        return GraphAlgebra.intersectionCount(this, other);
+    }
+
+    /**
+     * counts the edges contained in this graph but not in the other graph.
+     * @param other another graph
+     * @return the number of edges unique to this graph.
+     */
+    @Override
+    public int differenceCount(Graph other) {
+        return getNumEdges() - GraphAlgebra.intersectionCount(this, other);
+    }
+
+    /**
+     * counts the edges of this graph between nodes of the given graph.
+     * @param nodeSubset a graph whose nodes delimit the subset
+     * @return the number of induced edges.
+     */
+    @Override
+    public int inducedEdgeCount(Graph nodeSubset) {
+        return GraphAlgebra.inducedEdgeCount(this, nodeSubset);
+    }
+
+    /**
+     * checks whether the graph contains the node with the given ordinal.
+     */
+    private boolean hasNode(int ordinal) {
+        return ordinal >= 0 && ordinal < rows && slots.get(ordinal) != 0;
+    }
+
+    /**
+     * returns the dictionary ordinal of the given node or of its local equivalent.
+     * @param node a node of this or another graph.
+     * @return the ordinal or -1 if the graph contains no such node.
+     */
+    private int ordinalOf(Node node) {
+        int ordinal = dictionary.ordinalOf(node);
+        return hasNode(ordinal) ? ordinal : -1;
+    }
+
+    /**
+     * creates the node object for the given ordinal.
+     */
+    private Node node(int ordinal) {
+        return new Node(dictionary, this, ordinal);
+    }
+
+    /**
+     * creates the edge object for the given edge ordinal.
+     */
+    private Edge edge(int e) {
+        return new Edge(node(edgeA.get(e)), node(edgeB.get(e)), this, attributes, e);
+    }
+
+    /**
+     * looks up the edge between the two given node ordinals, first in the
+     * compacted adjacency and then among the pending edges.
+     * @return the edge ordinal, or -1 if the nodes are not connected.
+     */
+    private int findEdge(int a, int b) {
+        if (a < compactedNodes && b < compactedNodes) {
+            int row = rowLength(a) <= rowLength(b) ? a : b;
+            int other = row == a ? b : a;
+            long pos = targets.binarySearch(offsets.get(row), offsets.get(row + 1), other);
+            if (pos >= 0) {
+                return targetEdges.get(pos);
+            }
+        }
+        return pending.size() == 0 ? -1 : pending.get(Pairs.key(a, b));
+    }
+
+    /**
+     * returns the length of the compacted row of the given node.
+     */
+    private int rowLength(int ordinal) {
+        return offsets.get(ordinal + 1) - offsets.get(ordinal);
+    }
+
+    /**
+     * compacts the adjacency if edges were added since the last compaction.
+     */
+    private void ensureCompacted() {
+        if (dirty) {
+            synchronized (this) {
+                if (dirty) {
+                    compact();
+                }
+            }
+        }
+    }
+
+    /**
+     * rebuilds the sorted CSR adjacency from the edge list. The rows are
+     * first filled in edge order and then transposed, which leaves every row
+     * sorted without any comparison sort (the adjacency matrix is symmetric).
+     */
+    private synchronized void compact() {
+
+        ensure(offsets, rows + 1L);
+        ensure(fill, rows);
+        offsets.set(0, 0);
+        for (int i = 0; i < rows; i++) {
+            offsets.set(i + 1, offsets.get(i) + degrees.get(i));
+            fill.set(i, offsets.get(i));
+        }
+        int total = offsets.get(rows);
+        ensure(unsorted, total);
+        ensure(unsortedEdges, total);
+        ensure(targets, total);
+        ensure(targetEdges, total);
+
+        //fill unsorted rows in edge order
+        for (int e = 0; e < numEdges; e++) {
+            int a = edgeA.get(e), b = edgeB.get(e);
+            int i = fill.getAndAdd(a, 1);
+            unsorted.set(i, b);
+            unsortedEdges.set(i, e);
+            if (a != b) {
+                int j = fill.getAndAdd(b, 1);
+                unsorted.set(j, a);
+                unsortedEdges.set(j, e);
+            }
+        }
+
+        //transpose: visiting rows in ascending order appends ascending entries
+        for (int i = 0; i < rows; i++) {
+            fill.set(i, offsets.get(i));
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int i = offsets.get(row), end = offsets.get(row + 1); i < end; i++) {
+                int j = fill.getAndAdd(unsorted.get(i), 1);
+                targets.set(j, row);
+                targetEdges.set(j, unsortedEdges.get(i));
+            }
+        }
+
+        compactedNodes = rows;
+        compactedEdges = numEdges;
+        pending = new LongIntHashMap();
+        dirty = false;
+    }
+
+    /**
+     * grows a mapped array to the given capacity.
+     * @throws GraphException if the backing file cannot be extended.
+     */
+    private void ensure(MappedIntArray array, long capacity) {
+        if (capacity > array.capacity()) {
+            try {
+                array.ensureCapacity(Math.max(capacity, 2 * array.capacity()));
+            } catch (IOException ex) {
+                throw new GraphException("Unable to extend memory-mapped storage of graph \""+getName()+"\".", ex);
+            }
+        }
+    }
+
+    /**
+     * logs a warning message
+     * @param msg the message.
+     */
+    private void warn(String msg) {
+        Logger logger = Logger.getLogger(this.getClass().getCanonicalName());
+        if (logger.isLoggable(Level.WARNING)) {
+            logger.log(Level.WARNING, msg, new Throwable(){});
+        }
+    }
+
+    /**
+     * A read-only set view onto the neighbours of a node.
+     */
+    private final class NeighbourView extends AbstractSet<Neighbour> {
+
+        /**
+         * the node ordinal.
+         */
+        private final int ordinal;
+
+        /**
+         * constructor
+         * @param ordinal the node ordinal.
+         */
+        private NeighbourView(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public int size() {
+            return degrees.get(ordinal);
+        }
+
+        @Override
+        public Iterator<Neighbour> iterator() {
+            ensureCompacted();
+            return new Iterator<Neighbour>() {
+
+                private int pos = ordinal < compactedNodes ? offsets.get(ordinal) : 0;
+
+                private final int end = ordinal < compactedNodes ? offsets.get(ordinal + 1) : 0;
+
+                @Override
+                public boolean hasNext() {
+                    return pos < end;
+                }
+
+                @Override
+                public Neighbour next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int i = pos++;
+                    return new Neighbour(node(targets.get(i)), edge(targetEdges.get(i)));
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("Read-only view.");
+                }
+            };
+        }
+    }
+}
@@ -29,12 +29,12 @@ public class Neighbour {
     /**
      * The connected node.
      */
-    private Node node;
+    private final Node node;
 
     /**
      * the connecting edge.
      */
-    private Edge connectingEdge;
+    private final Edge connectingEdge;
 
     /**
      * constructor with target node and connecting edge
@@ -0,0 +1,36 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph;
+
+/**
+ * Callback for walking the adjacency of a node by ordinal, without allocating
+ * <code>Neighbour</code> objects or iterators.
+ *
+ * @see Graph#forEachNeighbour(int, NeighbourVisitor)
+ * @author Jochen Weile, M.Sc.
+ */
+public interface NeighbourVisitor {
+
+    /**
+     * called once for each neighbour of the visited node.
+     * @param neighbour the dictionary ordinal of the neighbour.
+     * @param edge the ordinal of the connecting edge (see <code>Edge.getIndex()</code>).
+     */
+    void visit(int neighbour, int edge);
+
+}
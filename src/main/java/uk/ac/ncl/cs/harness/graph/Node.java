@@ -22,31 +22,65 @@ import java.util.Set;
 /**
  * This class represents a node in a graph.
  *
+ * Nodes with numeric IDs (see <code>NodeDictionary</code>) are hashed and
+ * compared as numbers, without materialising their ID strings. Hash codes
+ * and ordering are the same as those of the ID strings, so numeric and
+ * textual nodes can be mixed freely.
+ *
  * @author Jochen Weile, M.Sc.
  */
 public class Node implements Comparable<Node> {
 
     /**
-     * the node's ID.
+     * the node's ID, or null if it is numeric.
      */
     private final String id;
 
+    /**
+     * the node's numeric ID, or -1 if it is not numeric.
+     */
+    private final int numericId;
+
     /**
      * The graph to which this node belongs.
      */
     private final Graph owningGraph;
 
+    /**
+     * the node's ordinal in the node dictionary of its owning graph.
+     */
+    private final int index;
+
     /**
      * package-private constructor to be only used from graph implementations.
      * @param id the node ID
      * @param owningGraph the graph to which this node belongs.
+     * @param index the node's ordinal in the owning graph's node dictionary.
      */
-    Node(String id, Graph owningGraph) {
+    Node(String id, Graph owningGraph, int index) {
         if(id == null) throw new NullPointerException("Can't create a node with null id");
         if(owningGraph == null) throw new NullPointerException("Can't create a node with null graph");
 
-        this.id = id;
+        this.numericId = NodeDictionary.parseNumericId(id);
+        this.id = numericId < 0 ? id : null;
+        this.owningGraph = owningGraph;
+        this.index = index;
+    }
+
+    /**
+     * package-private constructor to be only used from graph implementations.
+     * Takes the ID from the dictionary, leaving numeric IDs unmaterialised.
+     * @param dictionary the owning graph's node dictionary.
+     * @param owningGraph the graph to which this node belongs.
+     * @param index the node's ordinal in the owning graph's node dictionary.
+     */
+    Node(NodeDictionary dictionary, Graph owningGraph, int index) {
+        if(owningGraph == null) throw new NullPointerException("Can't create a node with null graph");
+
+        this.numericId = dictionary.getNumericId(index);
+        this.id = numericId < 0 ? dictionary.getId(index) : null;
         this.owningGraph = owningGraph;
+        this.index = index;
     }
 
     /**
@@ -54,7 +88,24 @@ public class Node implements Comparable<Node> {
      * @return the id of the node
      */
     public String getId() {
-        return id;
+        return id != null ? id : Integer.toString(numericId);
+    }
+
+    /**
+     * gets the numeric ID of this node.
+     * @return the numeric ID, or -1 if the node's ID is not numeric.
+     */
+    public int getNumericId() {
+        return numericId;
+    }
+
+    /**
+     * gets the node's ordinal in the node dictionary of its owning graph.
+     * @return the node's ordinal.
+     * @see NodeDictionary
+     */
+    int getIndex() {
+        return index;
     }
 
     /**
@@ -70,7 +121,7 @@ public class Node implements Comparable<Node> {
      * @return the node's degree
      */
     public int degree() {
-        return owningGraph.getNeighboursOfNode(this).size();
+        return owningGraph.degree(index);
     }
 
     /**
@@ -95,6 +146,9 @@ public class Node implements Comparable<Node> {
             return false;
         }
         final Node other = (Node) obj;
+        if (numericId >= 0 || other.numericId >= 0) {
+            return numericId == other.numericId;
+        }
         return id.equals(other.id);
 //        if ((this.id == null) ? (other.id != null) : !this.id.equals(other.id)) {
 //            return false;
@@ -110,7 +164,15 @@ public class Node implements Comparable<Node> {
 //        int hash = 5;
 //        hash = 59 * hash + (this.id != null ? this.id.hashCode() : 0);
 //        return hash;
-        return this.id.hashCode();
+        if (numericId < 0) {
+            return this.id.hashCode();
+        }
+        //equals the hash code of the decimal string
+        int hash = 0;
+        for (int div = magnitude(numericId); div > 0; div /= 10) {
+            hash = 31 * hash + '0' + (numericId / div) % 10;
+        }
+        return hash;
     }
 
     /**
@@ -118,14 +180,42 @@ public class Node implements Comparable<Node> {
      */
     @Override
     public String toString() {
-        return id;
+        return getId();
     }
 
     /**
      * comparable interface implementation
      */
     public int compareTo(Node anotherNode) {
-        return id.compareTo(anotherNode.getId());
+        int a = numericId, b = anotherNode.numericId;
+        if (a < 0 || b < 0) {
+            return getId().compareTo(anotherNode.getId());
+        }
+        //lexicographic order of the decimal strings: compare the common prefix
+        //numerically, then the lengths.
+        int magA = magnitude(a), magB = magnitude(b);
+        if (magA > magB) {
+            a /= magA / magB;
+        } else {
+            b /= magB / magA;
+        }
+        if (a != b) {
+            return a < b ? -1 : 1;
+        }
+        return magA == magB ? 0 : (magA < magB ? -1 : 1);
+    }
+
+    /**
+     * returns the largest power of ten not greater than the given number.
+     * @param n a non-negative number
+     * @return the power of ten, or 1 if n is zero.
+     */
+    private static int magnitude(int n) {
+        int div = 1;
+        while (n / div >= 10) {
+            div *= 10;
+        }
+        return div;
     }
 
 
@@ -0,0 +1,262 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>Assigns each node ID a dense integer ordinal. All graphs sharing a dictionary
+ * use the same ordinal for the same node ID, so nodes and edges can be matched
+ * between them without comparing strings.</p>
+ *
+ * <p>A workflow replica creates one dictionary and hands it to every graph it
+ * instantiates (the template, the evidential graphs, the gold standards and the
+ * result). Ordinals are never reassigned. Lookups are lock-free; adding new IDs
+ * is synchronized.</p>
+ *
+ * <p>Numeric IDs, i.e. non-negative <code>int</code>s in canonical decimal form
+ * such as those of generated graphs, are kept as numbers in a direct-indexed
+ * table. Their strings are only materialised when asked for, and the ID
+ * <code>"17"</code> is the same node as the numeric ID <code>17</code>.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+public final class NodeDictionary {
+
+    /**
+     * log2 of the chunk size of the numeric ID table
+     */
+    private static final int CHUNK_SHIFT = 12;
+
+    /**
+     * numeric IDs below this limit are looked up in the numeric ID table, larger
+     * ones are handled like any other ID.
+     */
+    private static final int DENSE_LIMIT = 1 << (2 * CHUNK_SHIFT);
+
+    /**
+     * Node id linked to ordinal
+     */
+    private final ConcurrentHashMap<String,Integer> ordinals = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * Numeric node id linked to ordinal + 1, in lazily allocated chunks
+     */
+    private final AtomicReferenceArray<AtomicIntegerArray> numericOrdinals =
+            new AtomicReferenceArray<AtomicIntegerArray>(DENSE_LIMIT >>> CHUNK_SHIFT);
+
+    /**
+     * Node ids by ordinal; null for numeric ids
+     */
+    private volatile String[] ids = new String[16];
+
+    /**
+     * Numeric node ids by ordinal; -1 for other ids
+     */
+    private volatile int[] numericIds = new int[16];
+
+    /**
+     * number of assigned ordinals
+     */
+    private volatile int size = 0;
+
+    /**
+     * returns the ordinal of the given node ID, assigning a new one if the ID
+     * is not yet known.
+     * @param id the node ID
+     * @return the ordinal of the node ID.
+     */
+    public int add(String id) {
+        int numericId = parseNumericId(id);
+        if (numericId >= 0 && numericId < DENSE_LIMIT) {
+            return add(numericId);
+        }
+        Integer ordinal = ordinals.get(id);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        synchronized (this) {
+            ordinal = ordinals.get(id);
+            if (ordinal != null) {
+                return ordinal;
+            }
+            int next = append(id, numericId);
+            ordinals.put(id, next);
+            return next;
+        }
+    }
+
+    /**
+     * returns the ordinal of the given numeric node ID, assigning a new one if the
+     * ID is not yet known.
+     * @param id the numeric node ID
+     * @return the ordinal of the node ID.
+     * @throws IllegalArgumentException if the ID is negative.
+     */
+    public int add(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Numeric node IDs must not be negative: "+id);
+        }
+        if (id >= DENSE_LIMIT) {
+            return add(Integer.toString(id));
+        }
+        int ordinal = lookup(id);
+        if (ordinal >= 0) {
+            return ordinal;
+        }
+        synchronized (this) {
+            AtomicIntegerArray chunk = numericOrdinals.get(id >>> CHUNK_SHIFT);
+            if (chunk == null) {
+                chunk = new AtomicIntegerArray(1 << CHUNK_SHIFT);
+                numericOrdinals.set(id >>> CHUNK_SHIFT, chunk);
+            }
+            ordinal = chunk.get(id & ((1 << CHUNK_SHIFT) - 1)) - 1;
+            if (ordinal >= 0) {
+                return ordinal;
+            }
+            int next = append(null, id);
+            chunk.set(id & ((1 << CHUNK_SHIFT) - 1), next + 1);
+            return next;
+        }
+    }
+
+    /**
+     * assigns the next ordinal. Must be called while holding the lock.
+     * @param id the node ID, or null if it is numeric.
+     * @param numericId the numeric node ID or -1.
+     * @return the new ordinal
+     */
+    private int append(String id, int numericId) {
+        int next = size;
+        if (next == ids.length) {
+            ids = Arrays.copyOf(ids, next * 2);
+            numericIds = Arrays.copyOf(numericIds, next * 2);
+        }
+        ids[next] = id;
+        numericIds[next] = numericId;
+        size = next + 1;
+        return next;
+    }
+
+    /**
+     * returns the ordinal of the given node ID.
+     * @param id the node ID
+     * @return the ordinal, or -1 if the ID is unknown to this dictionary.
+     */
+    public int lookup(String id) {
+        int numericId = parseNumericId(id);
+        if (numericId >= 0 && numericId < DENSE_LIMIT) {
+            return lookup(numericId);
+        }
+        Integer ordinal = ordinals.get(id);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * returns the ordinal of the given numeric node ID.
+     * @param id the numeric node ID
+     * @return the ordinal, or -1 if the ID is unknown to this dictionary.
+     */
+    public int lookup(int id) {
+        if (id < 0) {
+            return -1;
+        }
+        if (id >= DENSE_LIMIT) {
+            return lookup(Integer.toString(id));
+        }
+        AtomicIntegerArray chunk = numericOrdinals.get(id >>> CHUNK_SHIFT);
+        return chunk == null ? -1 : chunk.get(id & ((1 << CHUNK_SHIFT) - 1)) - 1;
+    }
+
+    /**
+     * returns the ordinal of the given node's ID in this dictionary. If the node
+     * belongs to a graph using this dictionary, this is a constant-time field access.
+     * @param node a node of any graph
+     * @return the ordinal, or -1 if the node's ID is unknown to this dictionary.
+     */
+    public int ordinalOf(Node node) {
+        if (node.getOwningGraph().getNodeDictionary() == this) {
+            return node.getIndex();
+        }
+        if (node.getNumericId() >= 0) {
+            return lookup(node.getNumericId());
+        }
+        return lookup(node.getId());
+    }
+
+    /**
+     * returns the node ID with the given ordinal.
+     * @param ordinal the ordinal
+     * @return the node ID
+     * @throws IndexOutOfBoundsException if no such ordinal has been assigned.
+     */
+    public String getId(int ordinal) {
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException("No node ID with ordinal "+ordinal);
+        }
+        String id = ids[ordinal];
+        return id != null ? id : Integer.toString(numericIds[ordinal]);
+    }
+
+    /**
+     * returns the numeric node ID with the given ordinal.
+     * @param ordinal the ordinal
+     * @return the numeric node ID, or -1 if the ID is not numeric.
+     * @throws IndexOutOfBoundsException if no such ordinal has been assigned.
+     */
+    public int getNumericId(int ordinal) {
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException("No node ID with ordinal "+ordinal);
+        }
+        return numericIds[ordinal];
+    }
+
+    /**
+     * returns the number of assigned ordinals. All ordinals are smaller than this.
+     * @return the number of known node IDs.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * parses an ID in canonical decimal form, i.e. without sign or leading zeros.
+     * @param id the node ID
+     * @return the numeric value, or -1 if the ID is not a non-negative
+     * <code>int</code> in canonical decimal form.
+     */
+    static int parseNumericId(String id) {
+        int length = id.length();
+        if (length == 0 || length > 10 || (id.charAt(0) == '0' && length > 1)) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value <= Integer.MAX_VALUE ? (int) value : -1;
+    }
+
+}
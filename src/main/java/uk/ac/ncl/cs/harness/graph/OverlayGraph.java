@@ -0,0 +1,679 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph;
+
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.util.LongIntHashMap;
+import uk.ac.ncl.cs.harness.util.Pairs;
+import uk.ac.ncl.cs.harness.util.SetOfTwo;
+
+/**
+ * <p>A graph that is derived from a frozen template graph, such as the output of
+ * an experiment. Edges that also exist in the template are recorded as a single
+ * bit in a bit set over the template's edge ordinals; only edges absent from
+ * the template (false positives) are stored individually. <code>Edge</code>
+ * objects are created on access instead of being stored.</p>
+ *
+ * <p>The overlay behaves like any other graph: it starts out empty, and nodes and
+ * edges are added through <code>createNode</code> and <code>createEdge</code>.
+ * Nodes do not have to exist in the template. The overlay shares the template's
+ * node dictionary, which cannot be replaced.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+public final class OverlayGraph implements Graph {
+
+    /**
+     * initial capacity of the edge arrays.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The Graph's name
+     */
+    private String name;
+
+    /**
+     * The template this graph is derived from.
+     */
+    private final FrozenGraph template;
+
+    /**
+     * Assigns ordinals to node ids; the template's dictionary
+     */
+    private final NodeDictionary dictionary;
+
+    /**
+     * nodes in order of creation
+     */
+    private Node[] members;
+
+    /**
+     * nodes by ordinal, null where this graph lacks the node
+     */
+    private Node[] nodes;
+
+    /**
+     * degree of each node by ordinal
+     */
+    private int[] degrees;
+
+    /**
+     * number of nodes
+     */
+    private int numNodes = 0;
+
+    /**
+     * the largest local node ordinal plus one
+     */
+    private int rows = 0;
+
+    /**
+     * template edge ordinals of the template edges contained in this graph.
+     */
+    private final BitSet kept;
+
+    /**
+     * local edge ordinal of each contained template edge, by template edge ordinal.
+     */
+    private final int[] keptOrdinals;
+
+    /**
+     * Packed key (pair of node ordinals) of each edge absent from the template
+     * linked to its local edge ordinal
+     */
+    private LongIntHashMap added = new LongIntHashMap();
+
+    /**
+     * adjacency of the edges absent from the template. Holds alternating
+     * neighbour and edge ordinals per node ordinal.
+     */
+    private int[][] addedAdjacency;
+
+    /**
+     * number of ints used in each row of <code>addedAdjacency</code>.
+     */
+    private int[] addedSizes;
+
+    /**
+     * packed node ordinals (see <code>Pairs</code>) by local edge ordinal
+     */
+    private long[] edgeKeys = new long[INITIAL_CAPACITY];
+
+    /**
+     * number of edges
+     */
+    private int numEdges = 0;
+
+    /**
+     * Probabilities of all edges, indexed by edge ordinal
+     */
+    private EdgeAttributes attributes = new EdgeAttributes();
+
+    /**
+     * creates an empty overlay on the given template.
+     * @param template the frozen template graph.
+     */
+    public OverlayGraph(FrozenGraph template) {
+        this.template = template;
+        this.dictionary = template.getNodeDictionary();
+        int capacity = Math.max(INITIAL_CAPACITY, template.getNodeDictionary().size());
+        members = new Node[capacity];
+        nodes = new Node[capacity];
+        degrees = new int[capacity];
+        addedAdjacency = new int[capacity][];
+        addedSizes = new int[capacity];
+        kept = new BitSet(template.getNumEdges());
+        keptOrdinals = new int[template.getNumEdges()];
+    }
+
+    /**
+     * gets the template this graph is derived from.
+     * @return the frozen template.
+     */
+    public FrozenGraph getTemplate() {
+        return template;
+    }
+
+    /**
+     * gets the graph name
+     * @return
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * sets the graph name
+     * @param name
+     */
+    @Override
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Creates a new node
+     * @param id
+     * @return
+     */
+    @Override
+    public Node createNode(String id) {
+        return createNodeAt(dictionary.add(id));
+    }
+
+    /**
+     * Creates a new node with a numeric id
+     * @param id
+     * @return
+     */
+    @Override
+    public Node createNode(int id) {
+        return createNodeAt(dictionary.add(id));
+    }
+
+    /**
+     * creates the node with the given dictionary ordinal, or warns and returns
+     * the existing one.
+     * @param ordinal the node's dictionary ordinal
+     * @return the node
+     */
+    private Node createNodeAt(int ordinal) {
+        if (ordinal < rows && nodes[ordinal] != null) {
+            warn("Tried to create duplicate node \""+dictionary.getId(ordinal)+"\" in graph \""+getName()+"\".");
+            return nodes[ordinal];
+        }
+        return insertNode(ordinal);
+    }
+
+    /**
+     * Creates nodes for all given ids, skipping existing ones without warnings.
+     * @param ids the node ids
+     * @return the ordinals of the nodes
+     */
+    @Override
+    public int[] addNodes(String[] ids) {
+        if (numNodes + ids.length > members.length) {
+            members = Arrays.copyOf(members, numNodes + ids.length);
+        }
+        int[] ordinals = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            int ordinal = dictionary.add(ids[i]);
+            if (ordinal >= rows || nodes[ordinal] == null) {
+                insertNode(ordinal);
+            }
+            ordinals[i] = ordinal;
+        }
+        return ordinals;
+    }
+
+    /**
+     * stores a new node under the given ordinal.
+     * @param ordinal its dictionary ordinal
+     * @return the new node
+     */
+    private Node insertNode(int ordinal) {
+        if (ordinal >= nodes.length) {
+            int capacity = Math.max(ordinal + 1, nodes.length * 2);
+            nodes = Arrays.copyOf(nodes, capacity);
+            degrees = Arrays.copyOf(degrees, capacity);
+            addedAdjacency = Arrays.copyOf(addedAdjacency, capacity);
+            addedSizes = Arrays.copyOf(addedSizes, capacity);
+        }
+        if (numNodes == members.length) {
+            members = Arrays.copyOf(members, numNodes * 2);
+        }
+
+        Node node = new Node(dictionary, this, ordinal);
+        nodes[ordinal] = node;
+        members[numNodes++] = node;
+        rows = Math.max(rows, ordinal + 1);
+        return node;
+    }
+
+    /**
+     * Creates a new edge connecting the two nodes in the given pair. Edges
+     * present in the template only cost a bit.
+     *
+     * If one or both of the nodes is alien to the graph, the method tries
+     * to find equivalent nodes first. If the edge exists already, a warning
+     * is logged and the original edge is returned.
+     *
+     * @param pair the pair of nodes to connect.
+     * @return the new edge, or null if the required nodes do not exist.
+     */
+    @Override
+    public Edge createEdge(SetOfTwo<Node> pair) {
+
+        int a = ordinalOf(pair.getA());
+        int b = ordinalOf(pair.getB());
+
+        if (a < 0 || b < 0) {
+            warn("Edge "+pair+" not created: No local node equivalents present.");
+            return null;
+        }
+
+        int existing = findEdge(a, b);
+        if (existing >= 0) {
+            warn("Tried to create duplicate edge "+pair+"in graph \""+getName()+"\".");
+            return edge(existing);
+        }
+
+        if (numEdges == edgeKeys.length) {
+            edgeKeys = Arrays.copyOf(edgeKeys, numEdges * 2);
+        }
+
+        return edge(insertEdge(a, b));
+    }
+
+    /**
+     * Creates edges between the given pairs of node ordinals, skipping and
+     * counting duplicates.
+     * @param a the first node ordinal of each edge
+     * @param b the second node ordinal of each edge
+     * @return the number of skipped pairs
+     */
+    @Override
+    public int addEdges(int[] a, int[] b) {
+        long[] keys = Pairs.sortedUniqueKeys(a, b);
+        int duplicates = a.length - keys.length;
+        if (numEdges + keys.length > edgeKeys.length) {
+            edgeKeys = Arrays.copyOf(edgeKeys, numEdges + keys.length);
+        }
+        for (long key : keys) {
+            int ordA = Pairs.high(key), ordB = Pairs.low(key);
+            if (ordA >= rows || nodes[ordA] == null || nodes[ordB] == null) {
+                throw new GraphException("Cannot connect nodes "+ordA+" and "+ordB
+                        +": not present in graph \""+getName()+"\".");
+            }
+            if (findEdge(ordA, ordB) >= 0) {
+                duplicates++;
+            } else {
+                insertEdge(ordA, ordB);
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * stores a new edge between the given node ordinals, either as a bit
+     * over the template or as an added edge.
+     * @return the new edge ordinal
+     */
+    private int insertEdge(int a, int b) {
+        int e = numEdges++;
+        long key = Pairs.key(a, b);
+        edgeKeys[e] = key;
+
+        int templateEdge = template.edgeBetween(a, b);
+        if (templateEdge >= 0) {
+            kept.set(templateEdge);
+            keptOrdinals[templateEdge] = e;
+        } else {
+            added.put(key, e);
+            appendAdded(a, b, e);
+            if (a != b) {
+                appendAdded(b, a, e);
+            }
+        }
+
+        degrees[a]++;
+        if (a != b) {
+            degrees[b]++;
+        }
+
+        return e;
+    }
+
+    /**
+     * Returns all the graph's nodes
+     * @return
+     */
+    @Override
+    public Collection<Node> getNodes() {
+        return Collections.unmodifiableList(Arrays.asList(members).subList(0, numNodes));
+    }
+
+    /**
+     * returns all the graph's edges. The edges are created on access.
+     * @return
+     */
+    @Override
+    public Collection<Edge> getEdges() {
+        return new AbstractList<Edge>() {
+
+            @Override
+            public Edge get(int index) {
+                if (index < 0 || index >= numEdges) {
+                    throw new IndexOutOfBoundsException("No edge with ordinal "+index);
+                }
+                return edge(index);
+            }
+
+            @Override
+            public int size() {
+                return numEdges;
+            }
+        };
+    }
+
+    @Override
+    public int getNumEdges() {
+        return numEdges;
+    }
+
+    @Override
+    public int getNumNodes() {
+        return numNodes;
+    }
+
+    /**
+     * returns whether the graph contains a node with the same id as the one given.
+     * @param node
+     * @return
+     */
+    @Override
+    public boolean contains(Node node) {
+        return ordinalOf(node) >= 0;
+    }
+
+    /*
+     * returns whether the graph contains an edge equivalent to the one given
+     *
+     */
+    @Override
+    public boolean contains(Edge edge) {
+        return containsEdge(edge.getConnectedNodes());
+    }
+
+    @Override
+    public boolean containsEdge(SetOfTwo<Node> nodePair) {
+        int a = ordinalOf(nodePair.getA());
+        int b = ordinalOf(nodePair.getB());
+        return a >= 0 && b >= 0 && findEdge(a, b) >= 0;
+    }
+
+    /**
+     * returns the store holding the probabilities of all edges.
+     * @return the edge attribute store.
+     */
+    @Override
+    public EdgeAttributes getEdgeAttributes() {
+        return attributes;
+    }
+
+    /**
+     * returns the set of neighbours for the given node. The returned set is a
+     * view onto the template and the added edges; its <code>size()</code> is a
+     * constant-time operation.
+     * @param node the node
+     * @return the set of neighbours for the node.
+     */
+    @Override
+    public Set<Neighbour> getNeighboursOfNode(Node node) {
+        int ordinal = ordinalOf(node);
+        if (ordinal < 0) {
+            return Collections.emptySet();
+        }
+        return new NeighbourView(ordinal);
+    }
+
+    /**
+     * returns the degree of the node with the given ordinal.
+     * @param node the node ordinal
+     * @return the degree, or 0 if the graph lacks the node.
+     */
+    @Override
+    public int degree(int node) {
+        return node >= 0 && node < rows ? degrees[node] : 0;
+    }
+
+    /**
+     * calls the visitor for every neighbour of the node with the given ordinal.
+     * @param node the node ordinal
+     * @param visitor the callback
+     */
+    @Override
+    public void forEachNeighbour(int node, NeighbourVisitor visitor) {
+        if (node < 0 || node >= rows) {
+            return;
+        }
+        for (int i = template.rowStart(node), end = template.rowEnd(node); i < end; i++) {
+            int templateEdge = template.edgeAt(i);
+            if (kept.get(templateEdge)) {
+                visitor.visit(template.neighbourAt(i), keptOrdinals[templateEdge]);
+            }
+        }
+        int[] row = addedAdjacency[node];
+        for (int i = 0; i < addedSizes[node]; i += 2) {
+            visitor.visit(row[i], row[i+1]);
+        }
+    }
+
+    /**
+     * overlays always use their template's node dictionary.
+     * @param dictionary the node dictionary
+     * @throws GraphException if the dictionary is not the template's.
+     */
+    @Override
+    public void setNodeDictionary(NodeDictionary dictionary) {
+        if (dictionary != this.dictionary) {
+            throw new GraphException("Overlay graph \""+getName()+"\" must use its template's node dictionary.");
+        }
+    }
+
+    /**
+     * gets the dictionary assigning ordinals to node ids.
+     * @return the node dictionary
+     */
+    @Override
+    public NodeDictionary getNodeDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * returns an immutable snapshot of this graph.
+     * @return the frozen graph.
+     */
+    @Override
+    public FrozenGraph freeze() {
+        return new FrozenGraph(this);
+    }
+
+    /**
+     * counts the edges contained in both this and the other graph.
+     * @param other another graph
+     * @return the number of shared edges.
+     */
+    @Override
+    public int intersectionCount(Graph other) {
+        return GraphAlgebra.intersectionCount(this, other);
+    }
+
+    /**
+     * counts the edges contained in this graph but not in the other graph.
+     * @param other another graph
+     * @return the number of edges unique to this graph.
+     */
+    @Override
+    public int differenceCount(Graph other) {
+        return getNumEdges() - GraphAlgebra.intersectionCount(this, other);
+    }
+
+    /**
+     * counts the edges of this graph between nodes of the given graph.
+     * @param nodeSubset a graph whose nodes delimit the subset
+     * @return the number of induced edges.
+     */
+    @Override
+    public int inducedEdgeCount(Graph nodeSubset) {
+        return GraphAlgebra.inducedEdgeCount(this, nodeSubset);
+    }
+
+    /**
+     * returns the dictionary ordinal of the given node or of its local equivalent.
+     * @param node a node of this or another graph.
+     * @return the ordinal or -1 if the graph contains no such node.
+     */
+    private int ordinalOf(Node node) {
+        int ordinal = dictionary.ordinalOf(node);
+        return ordinal >= 0 && ordinal < rows && nodes[ordinal] != null ? ordinal : -1;
+    }
+
+    /**
+     * looks up the edge between the two given node ordinals, checking the
+     * added edges before the template.
+     * @return the local edge ordinal, or -1 if the nodes are not connected.
+     */
+    private int findEdge(int a, int b) {
+        int e = added.get(Pairs.key(a, b));
+        if (e != LongIntHashMap.NO_VALUE) {
+            return e;
+        }
+        int templateEdge = template.edgeBetween(a, b);
+        return templateEdge >= 0 && kept.get(templateEdge) ? keptOrdinals[templateEdge] : -1;
+    }
+
+    /**
+     * creates the edge object for the given local edge ordinal.
+     */
+    private Edge edge(int e) {
+        long key = edgeKeys[e];
+        return new Edge(nodes[Pairs.high(key)], nodes[Pairs.low(key)], this, attributes, e);
+    }
+
+    /**
+     * appends a neighbour entry to the added adjacency of the given node.
+     */
+    private void appendAdded(int node, int neighbour, int edge) {
+        int[] row = addedAdjacency[node];
+        int size = addedSizes[node];
+        if (row == null) {
+            row = addedAdjacency[node] = new int[4];
+        } else if (size == row.length) {
+            row = addedAdjacency[node] = Arrays.copyOf(row, size * 2);
+        }
+        row[size] = neighbour;
+        row[size+1] = edge;
+        addedSizes[node] = size + 2;
+    }
+
+    /**
+     * logs a warning message
+     * @param msg the message.
+     */
+    private void warn(String msg) {
+        Logger logger = Logger.getLogger(this.getClass().getCanonicalName());
+        if (logger.isLoggable(Level.WARNING)) {
+            logger.log(Level.WARNING, msg, new Throwable(){});
+        }
+    }
+
+    /**
+     * A read-only set view onto the neighbours of a node.
+     */
+    private final class NeighbourView extends AbstractSet<Neighbour> {
+
+        /**
+         * the node ordinal.
+         */
+        private final int ordinal;
+
+        /**
+         * constructor
+         * @param ordinal the node ordinal.
+         */
+        private NeighbourView(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public int size() {
+            return degrees[ordinal];
+        }
+
+        @Override
+        public Iterator<Neighbour> iterator() {
+            return new Iterator<Neighbour>() {
+
+                /**
+                 * position in the template row, then in the added row.
+                 */
+                private int pos = template.rowStart(ordinal);
+
+                private final int templateEnd = template.rowEnd(ordinal);
+
+                private int addedPos = 0;
+
+                {
+                    skipDropped();
+                }
+
+                /**
+                 * advances past template edges not contained in the overlay.
+                 */
+                private void skipDropped() {
+                    while (pos < templateEnd && !kept.get(template.edgeAt(pos))) {
+                        pos++;
+                    }
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return pos < templateEnd || addedPos < addedSizes[ordinal];
+                }
+
+                @Override
+                public Neighbour next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int neighbour, edge;
+                    if (pos < templateEnd) {
+                        neighbour = template.neighbourAt(pos);
+                        edge = keptOrdinals[template.edgeAt(pos)];
+                        pos++;
+                        skipDropped();
+                    } else {
+                        neighbour = addedAdjacency[ordinal][addedPos];
+                        edge = addedAdjacency[ordinal][addedPos+1];
+                        addedPos += 2;
+                    }
+                    return new Neighbour(nodes[neighbour], edge(edge));
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("Read-only view.");
+                }
+            };
+        }
+    }
+}
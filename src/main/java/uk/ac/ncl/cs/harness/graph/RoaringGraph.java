@@ -0,0 +1,659 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph;
+
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.extsupport.Extension;
+import uk.ac.ncl.cs.harness.util.LongIntHashMap;
+import uk.ac.ncl.cs.harness.util.PairBitmap;
+import uk.ac.ncl.cs.harness.util.Pairs;
+import uk.ac.ncl.cs.harness.util.SetOfTwo;
+
+/**
+ * <p>A read-optimised implementation of the <code>Graph</code> interface for
+ * evidential graphs, which are written once and then queried many times. The
+ * edge set is held as a compressed <code>PairBitmap</code> over the node dictionary
+ * ordinals, and each edge otherwise only costs its packed pair key.
+ * <code>Edge</code> objects are created on access instead of being stored.</p>
+ *
+ * <p>Membership tests are bitmap lookups. Two roaring graphs sharing a dictionary
+ * can count their common edges container by container (see
+ * <code>intersectionCount</code>), so the cost depends on the compressed size
+ * rather than the number of edges.</p>
+ *
+ * <p>Neighbours of a node with a smaller ordinal are read from one contiguous
+ * index range, but neighbours with larger ordinals are found by probing every
+ * later node. Neighbour iteration therefore costs O(n) per node; use another
+ * implementation for template graphs that experiments traverse.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+@Extension(id="roaringgraph")
+public final class RoaringGraph implements Graph {
+
+    /**
+     * initial capacity of the node and edge arrays.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The Graph's name
+     */
+    private String name;
+
+    /**
+     * Assigns ordinals to node ids
+     */
+    private NodeDictionary dictionary = new NodeDictionary();
+
+    /**
+     * nodes in order of creation
+     */
+    private Node[] members = new Node[INITIAL_CAPACITY];
+
+    /**
+     * nodes by ordinal, null where this graph lacks the node
+     */
+    private Node[] nodes = new Node[INITIAL_CAPACITY];
+
+    /**
+     * degree of each node by ordinal
+     */
+    private int[] degrees = new int[INITIAL_CAPACITY];
+
+    /**
+     * number of nodes
+     */
+    private int numNodes = 0;
+
+    /**
+     * the largest local node ordinal plus one
+     */
+    private int rows = 0;
+
+    /**
+     * indices (see <code>PairBitmap.index</code>) of all connected pairs.
+     */
+    private PairBitmap pairs = new PairBitmap();
+
+    /**
+     * packed node ordinals (see <code>Pairs</code>) by edge ordinal
+     */
+    private long[] edgeKeys = new long[INITIAL_CAPACITY];
+
+    /**
+     * number of edges
+     */
+    private int numEdges = 0;
+
+    /**
+     * Packed key linked to the edge ordinal. Only built once an existing edge
+     * has to be looked up by its nodes.
+     */
+    private LongIntHashMap edgeIndex = null;
+
+    /**
+     * Probabilities of all edges, indexed by edge ordinal
+     */
+    private EdgeAttributes attributes = new EdgeAttributes();
+
+    /**
+     * gets the graph name
+     * @return
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * sets the graph name
+     * @param name
+     */
+    @Override
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Creates a new node
+     * @param id
+     * @return
+     */
+    @Override
+    public Node createNode(String id) {
+        return createNodeAt(dictionary.add(id));
+    }
+
+    /**
+     * Creates a new node with a numeric id
+     * @param id
+     * @return
+     */
+    @Override
+    public Node createNode(int id) {
+        return createNodeAt(dictionary.add(id));
+    }
+
+    /**
+     * creates the node with the given dictionary ordinal, or warns and returns
+     * the existing one.
+     * @param ordinal the node's dictionary ordinal
+     * @return the node
+     */
+    private Node createNodeAt(int ordinal) {
+        if (ordinal < rows && nodes[ordinal] != null) {
+            warn("Tried to create duplicate node \""+dictionary.getId(ordinal)+"\" in graph \""+getName()+"\".");
+            return nodes[ordinal];
+        }
+        return insertNode(ordinal);
+    }
+
+    /**
+     * Creates nodes for all given ids, skipping existing ones without warnings.
+     * @param ids the node ids
+     * @return the ordinals of the nodes
+     */
+    @Override
+    public int[] addNodes(String[] ids) {
+        if (numNodes + ids.length > members.length) {
+            members = Arrays.copyOf(members, numNodes + ids.length);
+        }
+        int[] ordinals = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            int ordinal = dictionary.add(ids[i]);
+            if (ordinal >= rows || nodes[ordinal] == null) {
+                insertNode(ordinal);
+            }
+            ordinals[i] = ordinal;
+        }
+        return ordinals;
+    }
+
+    /**
+     * stores a new node under the given ordinal.
+     * @param ordinal its dictionary ordinal
+     * @return the new node
+     */
+    private Node insertNode(int ordinal) {
+        if (ordinal >= nodes.length) {
+            int capacity = Math.max(ordinal + 1, nodes.length * 2);
+            nodes = Arrays.copyOf(nodes, capacity);
+            degrees = Arrays.copyOf(degrees, capacity);
+        }
+        if (numNodes == members.length) {
+            members = Arrays.copyOf(members, numNodes * 2);
+        }
+
+        Node node = new Node(dictionary, this, ordinal);
+        nodes[ordinal] = node;
+        members[numNodes++] = node;
+        rows = Math.max(rows, ordinal + 1);
+        return node;
+    }
+
+    /**
+     * Creates a new edge connecting the two nodes in the given pair.
+     *
+     * If one or both of the nodes is alien to the graph, the method tries
+     * to find equivalent nodes first. If the edge exists already, a warning
+     * is logged and the original edge is returned.
+     *
+     * @param pair the pair of nodes to connect.
+     * @return the new edge, or null if the required nodes do not exist.
+     */
+    @Override
+    public Edge createEdge(SetOfTwo<Node> pair) {
+
+        int a = ordinalOf(pair.getA());
+        int b = ordinalOf(pair.getB());
+
+        if (a < 0 || b < 0) {
+            warn("Edge "+pair+" not created: No local node equivalents present.");
+            return null;
+        }
+
+        if (!pairs.add(PairBitmap.index(a, b))) {
+            warn("Tried to create duplicate edge "+pair+"in graph \""+getName()+"\".");
+            return edge(edgeOrdinal(a, b));
+        }
+
+        if (numEdges == edgeKeys.length) {
+            edgeKeys = Arrays.copyOf(edgeKeys, numEdges * 2);
+        }
+
+        return edge(insertEdge(a, b));
+    }
+
+    /**
+     * Creates edges between the given pairs of node ordinals, skipping and
+     * counting duplicates.
+     * @param a the first node ordinal of each edge
+     * @param b the second node ordinal of each edge
+     * @return the number of skipped pairs
+     */
+    @Override
+    public int addEdges(int[] a, int[] b) {
+        long[] keys = Pairs.sortedUniqueKeys(a, b);
+        int duplicates = a.length - keys.length;
+        if (numEdges + keys.length > edgeKeys.length) {
+            edgeKeys = Arrays.copyOf(edgeKeys, numEdges + keys.length);
+        }
+        for (long key : keys) {
+            int ordA = Pairs.high(key), ordB = Pairs.low(key);
+            if (ordA >= rows || nodes[ordA] == null || nodes[ordB] == null) {
+                throw new GraphException("Cannot connect nodes "+ordA+" and "+ordB
+                        +": not present in graph \""+getName()+"\".");
+            }
+            if (pairs.add(PairBitmap.index(ordA, ordB))) {
+                insertEdge(ordA, ordB);
+            } else {
+                duplicates++;
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * stores a new edge between the given node ordinals, whose pair
+     * has already been added to the bitmap.
+     * @return the new edge ordinal
+     */
+    private int insertEdge(int a, int b) {
+        int e = numEdges++;
+        edgeKeys[e] = Pairs.key(a, b);
+        if (edgeIndex != null) {
+            edgeIndex.put(edgeKeys[e], e);
+        }
+
+        degrees[a]++;
+        if (a != b) {
+            degrees[b]++;
+        }
+
+        return e;
+    }
+
+    /**
+     * Returns all the graph's nodes
+     * @return
+     */
+    @Override
+    public Collection<Node> getNodes() {
+        return Collections.unmodifiableList(Arrays.asList(members).subList(0, numNodes));
+    }
+
+    /**
+     * returns all the graph's edges. The edges are created on access.
+     * @return
+     */
+    @Override
+    public Collection<Edge> getEdges() {
+        return new AbstractList<Edge>() {
+
+            @Override
+            public Edge get(int index) {
+                if (index < 0 || index >= numEdges) {
+                    throw new IndexOutOfBoundsException("No edge with ordinal "+index);
+                }
+                return edge(index);
+            }
+
+            @Override
+            public int size() {
+                return numEdges;
+            }
+        };
+    }
+
+    @Override
+    public int getNumEdges() {
+        return numEdges;
+    }
+
+    @Override
+    public int getNumNodes() {
+        return numNodes;
+    }
+
+    /**
+     * returns whether the graph contains a node with the same id as the one given.
+     * @param node
+     * @return
+     */
+    @Override
+    public boolean contains(Node node) {
+        return ordinalOf(node) >= 0;
+    }
+
+    /*
+     * returns whether the graph contains an edge equivalent to the one given
+     *
+     */
+    @Override
+    public boolean contains(Edge edge) {
+        return containsEdge(edge.getConnectedNodes());
+    }
+
+    @Override
+    public boolean containsEdge(SetOfTwo<Node> nodePair) {
+        int a = ordinalOf(nodePair.getA());
+        int b = ordinalOf(nodePair.getB());
+        return a >= 0 && b >= 0 && pairs.contains(PairBitmap.index(a, b));
+    }
+
+    /**
+     * returns the store holding the probabilities of all edges.
+     * @return the edge attribute store.
+     */
+    @Override
+    public EdgeAttributes getEdgeAttributes() {
+        return attributes;
+    }
+
+    /**
+     * returns the set of neighbours for the given node. The returned set is a
+     * view onto the bitmap; its <code>size()</code> is a constant-time operation.
+     * @param node the node
+     * @return the set of neighbours for the node.
+     */
+    @Override
+    public Set<Neighbour> getNeighboursOfNode(Node node) {
+        int ordinal = ordinalOf(node);
+        if (ordinal < 0) {
+            return Collections.emptySet();
+        }
+        return new NeighbourView(ordinal);
+    }
+
+    /**
+     * returns the degree of the node with the given ordinal.
+     * @param node the node ordinal
+     * @return the degree, or 0 if the graph lacks the node.
+     */
+    @Override
+    public int degree(int node) {
+        return node >= 0 && node < rows ? degrees[node] : 0;
+    }
+
+    /**
+     * calls the visitor for every neighbour of the node with the given ordinal.
+     * @param node the node ordinal
+     * @param visitor the callback
+     */
+    @Override
+    public void forEachNeighbour(int node, NeighbourVisitor visitor) {
+        if (node < 0 || node >= rows || degrees[node] == 0) {
+            return;
+        }
+        for (int k = nextNeighbour(node, 0); k >= 0; k = nextNeighbour(node, k + 1)) {
+            visitor.visit(k, edgeOrdinal(node, k));
+        }
+    }
+
+    /**
+     * sets the dictionary assigning ordinals to node ids.
+     * @param dictionary the node dictionary
+     * @throws GraphException if the graph already contains nodes.
+     */
+    @Override
+    public void setNodeDictionary(NodeDictionary dictionary) {
+        if (numNodes > 0) {
+            throw new GraphException("Cannot replace the node dictionary of non-empty graph \""+getName()+"\".");
+        }
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * gets the dictionary assigning ordinals to node ids.
+     * @return the node dictionary
+     */
+    @Override
+    public NodeDictionary getNodeDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * returns an immutable snapshot of this graph.
+     * @return the frozen graph.
+     */
+    @Override
+    public FrozenGraph freeze() {
+        return new FrozenGraph(this);
+    }
+
+    /**
+     * counts the edges contained in both this and the other graph.
+     * @param other another graph
+     * @return the number of shared edges.
+     */
+    @Override
+    public int intersectionCount(Graph other) {
+        return compatible(this, other) ?
+            intersectionCount((RoaringGraph) other) :
+            GraphAlgebra.intersectionCount(this, other);
+    }
+
+    /**
+     * counts the edges contained in this graph but not in the other graph.
+     * @param other another graph
+     * @return the number of edges unique to this graph.
+     */
+    @Override
+    public int differenceCount(Graph other) {
+        return compatible(this, other) ?
+            differenceCount((RoaringGraph) other) :
+            getNumEdges() - GraphAlgebra.intersectionCount(this, other);
+    }
+
+    /**
+     * counts the edges of this graph between nodes of the given graph.
+     * @param nodeSubset a graph whose nodes delimit the subset
+     * @return the number of induced edges.
+     */
+    @Override
+    public int inducedEdgeCount(Graph nodeSubset) {
+        return GraphAlgebra.inducedEdgeCount(this, nodeSubset);
+    }
+
+    /**
+     * returns whether the two given graphs are roaring graphs over the same
+     * node dictionary, i.e. whether their bitmaps can be compared directly.
+     * @param g1 a graph
+     * @param g2 another graph
+     * @return whether <code>intersectionCount</code> and <code>differenceCount</code>
+     * can be used on the two graphs.
+     */
+    public static boolean compatible(Graph g1, Graph g2) {
+        return g1 instanceof RoaringGraph && g2 instanceof RoaringGraph
+                && g1.getNodeDictionary() == g2.getNodeDictionary();
+    }
+
+    /**
+     * counts the edges contained in both this and the other graph.
+     * @param other a roaring graph over the same node dictionary.
+     * @return the number of shared edges.
+     * @throws GraphException if the graphs use different node dictionaries.
+     */
+    public int intersectionCount(RoaringGraph other) {
+        checkCompatible(other);
+        return (int) pairs.andCardinality(other.pairs);
+    }
+
+    /**
+     * counts the edges of this graph whose pair indices (see
+     * <code>PairBitmap.index</code>) over this graph's node dictionary are
+     * contained in the given bitmap.
+     * @param pairIndices a bitmap of pair indices.
+     * @return the number of shared edges.
+     */
+    public int intersectionCount(PairBitmap pairIndices) {
+        return (int) pairs.andCardinality(pairIndices);
+    }
+
+    /**
+     * counts the edges contained in this graph but not in the other graph.
+     * @param other a roaring graph over the same node dictionary.
+     * @return the number of edges unique to this graph.
+     * @throws GraphException if the graphs use different node dictionaries.
+     */
+    public int differenceCount(RoaringGraph other) {
+        checkCompatible(other);
+        return (int) pairs.andNotCardinality(other.pairs);
+    }
+
+    /**
+     * makes sure the other graph's pair indices match the ones of this graph.
+     */
+    private void checkCompatible(RoaringGraph other) {
+        if (other.dictionary != dictionary) {
+            throw new GraphException("Graphs \""+getName()+"\" and \""+other.getName()
+                    +"\" do not share a node dictionary.");
+        }
+    }
+
+    /**
+     * returns the dictionary ordinal of the given node or of its local equivalent.
+     * @param node a node of this or another graph.
+     * @return the ordinal or -1 if the graph contains no such node.
+     */
+    private int ordinalOf(Node node) {
+        int ordinal = dictionary.ordinalOf(node);
+        return ordinal >= 0 && ordinal < rows && nodes[ordinal] != null ? ordinal : -1;
+    }
+
+    /**
+     * creates the edge object for the given edge ordinal.
+     */
+    private Edge edge(int e) {
+        long key = edgeKeys[e];
+        return new Edge(nodes[Pairs.high(key)], nodes[Pairs.low(key)], this, attributes, e);
+    }
+
+    /**
+     * looks up the ordinal of the edge between the given node ordinals,
+     * building the edge index on first use.
+     */
+    private int edgeOrdinal(int a, int b) {
+        if (edgeIndex == null) {
+            edgeIndex = new LongIntHashMap();
+            for (int e = 0; e < numEdges; e++) {
+                edgeIndex.put(edgeKeys[e], e);
+            }
+        }
+        return edgeIndex.get(Pairs.key(a, b));
+    }
+
+    /**
+     * finds the next neighbour of the given node.
+     * @param j the node ordinal
+     * @param from the smallest neighbour ordinal to consider
+     * @return the next neighbour's ordinal, or -1 if there are none left.
+     */
+    private int nextNeighbour(int j, int from) {
+        //neighbours up to j (including j itself) occupy a contiguous index range
+        if (from <= j) {
+            long base = PairBitmap.index(j, 0);
+            long next = pairs.nextValue(base + from);
+            if (next >= 0 && next <= base + j) {
+                return (int) (next - base);
+            }
+            from = j + 1;
+        }
+        //neighbours above j have to be probed one by one
+        for (int k = from; k < rows; k++) {
+            if (pairs.contains(PairBitmap.index(k, j))) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * logs a warning message
+     * @param msg the message.
+     */
+    private void warn(String msg) {
+        Logger logger = Logger.getLogger(this.getClass().getCanonicalName());
+        if (logger.isLoggable(Level.WARNING)) {
+            logger.log(Level.WARNING, msg, new Throwable(){});
+        }
+    }
+
+    /**
+     * A read-only set view onto the neighbours of a node.
+     */
+    private final class NeighbourView extends AbstractSet<Neighbour> {
+
+        /**
+         * the node ordinal.
+         */
+        private final int ordinal;
+
+        /**
+         * constructor
+         * @param ordinal the node ordinal.
+         */
+        private NeighbourView(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public int size() {
+            return degrees[ordinal];
+        }
+
+        @Override
+        public Iterator<Neighbour> iterator() {
+            return new Iterator<Neighbour>() {
+
+                private int next = nextNeighbour(ordinal, 0);
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public Neighbour next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int neighbour = next;
+                    next = nextNeighbour(ordinal, neighbour + 1);
+                    return new Neighbour(nodes[neighbour], edge(edgeOrdinal(ordinal, neighbour)));
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("Read-only view.");
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph.populators;
+
+import cern.jet.random.Uniform;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.logging.Logger;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.extsupport.Extension;
+import uk.ac.ncl.cs.harness.extsupport.ExtensionProperty;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.graph.NodeDictionary;
+import uk.ac.ncl.cs.harness.stats.RandomEngineRegistry;
+
+/**
+ * <p>This is a graph populator that generates random networks with a given
+ * degree sequence according to the configuration model. Every node gets as
+ * many stubs as its degree, the stubs are shuffled once and paired up in
+ * order. Self-loops are dropped and multi-edges are merged when the graph is
+ * bulk-loaded, so high degrees may come out slightly lower than requested.
+ * If the degrees sum up to an odd number, one stub stays unpaired.</p>
+ *
+ * <p>The degree sequence is either given directly as a comma-separated list
+ * (property <code>degrees</code>) or read from a file (property
+ * <code>file</code>). The file holds one degree per line, like the
+ * <code>degrees.tsv</code> written by <code>DegreeSample</code>, or a histogram
+ * with a degree and the number of nodes with that degree on each line.
+ * Empty lines and lines starting with <code>#</code> are skipped.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+@Extension(id="configuration")
+public final class ConfigurationModelPopulator implements GraphPopulator {
+
+    private Uniform uniform = new Uniform(RandomEngineRegistry.getEngine());
+
+    /**
+     * the degree sequence, if given directly
+     */
+    private int[] degrees;
+
+    /**
+     * the file holding the degree sequence
+     */
+    private String file;
+
+    /**
+     * gets the degree sequence, if given directly.
+     * @return the degree sequence or null.
+     */
+    public int[] getDegreeSequence() {
+        return degrees == null ? null : degrees.clone();
+    }
+
+    /**
+     * sets the degree sequence, which takes precedence over the file.
+     * @param degrees the degree of each node.
+     * @throws IllegalArgumentException if a degree is negative.
+     */
+    public void setDegreeSequence(int[] degrees) throws IllegalArgumentException {
+        for (int degree : degrees) {
+            if (degree < 0) {
+                throw new IllegalArgumentException("Negative degree: "+degree);
+            }
+        }
+        this.degrees = degrees.clone();
+    }
+
+    /**
+     * sets the degree sequence, which takes precedence over the file.
+     * @param degrees the degree of each node as a comma-separated list.
+     * @throws IllegalArgumentException if the list is malformed or contains
+     * negative degrees.
+     */
+    @ExtensionProperty(id="degrees")
+    public void setDegrees(String degrees) throws IllegalArgumentException {
+        String[] fields = degrees.trim().split("\\s*,\\s*");
+        int[] sequence = new int[fields.length];
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                sequence[i] = Integer.parseInt(fields[i]);
+            }
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Malformed degree sequence: "+degrees, ex);
+        }
+        setDegreeSequence(sequence);
+    }
+
+    /**
+     * gets the degree sequence file name.
+     * @return the file name.
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * sets the degree sequence file name.
+     * @param file the file name.
+     */
+    @ExtensionProperty(id="file")
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * populates the graph with a random network of the given degree sequence.
+     * @param graph the graph to populate.
+     * @throws GraphException if no degree sequence is given or the file
+     * cannot be read.
+     */
+    @Override
+    public void populate(Graph graph) {
+
+        int[] sequence = degrees;
+        if (sequence == null) {
+            if (file == null) {
+                throw new GraphException("No degree sequence given.");
+            }
+            try {
+                sequence = readDegrees(file);
+            } catch (IOException ex) {
+                throw new GraphException("Unable to read degree sequence "+file, ex);
+            }
+        }
+        int n = sequence.length;
+
+        //create nodes
+        NodeDictionary dictionary = graph.getNodeDictionary();
+        int[] ordinals = new int[n];
+        for (int v = 0; v < n; v++) {
+            ordinals[v] = dictionary.ordinalOf(graph.createNode(v + 1));
+        }
+
+        long numStubs = 0;
+        for (int degree : sequence) {
+            numStubs += degree;
+        }
+        if (numStubs > Integer.MAX_VALUE - 8) {
+            throw new GraphException("Too many stubs for the configuration model: "+numStubs);
+        }
+
+        //one stub per edge end, shuffled
+        int[] stubs = new int[(int) numStubs];
+        int s = 0;
+        for (int v = 0; v < n; v++) {
+            for (int k = 0; k < sequence[v]; k++) {
+                stubs[s++] = ordinals[v];
+            }
+        }
+        for (int i = stubs.length - 1; i > 0; i--) {
+            int j = uniform.nextIntFromTo(0, i);
+            int swap = stubs[i];
+            stubs[i] = stubs[j];
+            stubs[j] = swap;
+        }
+
+        //pair up consecutive stubs, dropping self-loops
+        int[] a = new int[stubs.length / 2], b = new int[stubs.length / 2];
+        int numPairs = 0;
+        for (int i = 0; i + 1 < stubs.length; i += 2) {
+            if (stubs[i] != stubs[i + 1]) {
+                a[numPairs] = stubs[i];
+                b[numPairs++] = stubs[i + 1];
+            }
+        }
+        int loops = stubs.length / 2 - numPairs;
+
+        //multi-edges are merged in the bulk load's sort pass
+        int multiEdges = graph.addEdges(Arrays.copyOf(a, numPairs), Arrays.copyOf(b, numPairs));
+        Logger.getLogger(this.getClass().getCanonicalName())
+                .fine("Dropped "+loops+" self-loops and "+multiEdges+" multi-edges.");
+    }
+
+    /**
+     * reads a degree sequence or degree histogram.
+     * @param file the file name
+     * @return the degree sequence
+     * @throws IOException if the file cannot be read or is malformed.
+     */
+    private static int[] readDegrees(String file) throws IOException {
+        int[] sequence = new int[1024];
+        int size = 0;
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("[\\s,;]+");
+                int degree, count;
+                try {
+                    degree = Integer.parseInt(fields[0]);
+                    count = fields.length > 1 ? Integer.parseInt(fields[1]) : 1;
+                } catch (NumberFormatException ex) {
+                    throw new IOException("Malformed line "+lineNumber+" in "+file+": "+line);
+                }
+                if (degree < 0 || count < 0) {
+                    throw new IOException("Negative value in line "+lineNumber+" in "+file+": "+line);
+                }
+                if ((long) size + count > Integer.MAX_VALUE - 8) {
+                    throw new IOException("Too many nodes in "+file);
+                }
+                if (size + count > sequence.length) {
+                    sequence = Arrays.copyOf(sequence, (int) Math.min(Integer.MAX_VALUE - 8,
+                            Math.max(2L * sequence.length, (long) size + count)));
+                }
+                Arrays.fill(sequence, size, size + count, degree);
+                size += count;
+            }
+        } finally {
+            in.close();
+        }
+        return Arrays.copyOf(sequence, size);
+    }
+
+    /**
+     * returns a string summarising the current configuration.
+     * @return a string summarising the current configuration.
+     */
+    @Override
+    public String configSummary() {
+        return "\"" + this.getClass().getSimpleName() + "\" {" +
+                (degrees != null ? "nodes: " + degrees.length : "file: " + file) + "}";
+    }
+
+}
@@ -0,0 +1,326 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph.populators;
+
+import cern.jet.random.Uniform;
+import cern.jet.random.engine.MersenneTwister;
+import java.util.Arrays;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.extsupport.Extension;
+import uk.ac.ncl.cs.harness.extsupport.ExtensionProperty;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.graph.NodeDictionary;
+import uk.ac.ncl.cs.harness.stats.GeometricSkip;
+import uk.ac.ncl.cs.harness.stats.RandomEngineRegistry;
+
+/**
+ * <p>This is a graph populator that mimics the evolution of protein interaction
+ * networks by gene duplication and divergence. Starting from a clique of seed
+ * nodes, each new node duplicates a uniformly chosen existing node and keeps
+ * each of the copied interactions independently with probability
+ * <code>retention</code>. A duplicate that keeps none of them is linked to its
+ * original instead, so the network stays connected.</p>
+ *
+ * <p>The growing network is held in array-backed adjacency rows, and the kept
+ * interactions are picked from the original's row with geometric skips, so
+ * the cost is proportional to the number of edges created. With
+ * <code>resumeGrowth</code> enabled, grown networks are kept as checkpoints
+ * (see <code>GrowthCheckpoints</code>), so when <code>numNodes</code> is swept
+ * upwards, each population resumes the growth of a smaller network instead of
+ * starting over.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+@Extension(id="duplication")
+public final class DuplicationDivergencePopulator implements GraphPopulator {
+
+    /**
+     * grown networks, to be resumed by later populations.
+     */
+    private static final GrowthCheckpoints<Growth> checkpoints = new GrowthCheckpoints<Growth>(256);
+
+    /**
+     * number of seed nodes to generate
+     */
+    private int seed = 2;
+
+    /**
+     * number of nodes to generate
+     */
+    private int numberOfNodes;
+
+    /**
+     * probability of keeping a copied edge
+     */
+    private double retention = 0.5;
+
+    /**
+     * whether to resume growth from checkpoints
+     */
+    private boolean resumeGrowth = false;
+
+    /**
+     * gets the number of seed nodes.
+     * @return the number of seed nodes.
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * sets the number of seed nodes, which form a clique.
+     * @param seed number of seed nodes; at least 2.
+     * @throws IllegalArgumentException if preconditions are not met.
+     */
+    @ExtensionProperty(id="seed")
+    public void setSeed(int seed) throws IllegalArgumentException {
+        if (seed < 2) {
+            throw new IllegalArgumentException("Precondition violation: seed >= 2");
+        }
+        this.seed = seed;
+    }
+
+    /**
+     * gets the number of nodes
+     * @return the number of nodes.
+     */
+    public int getNumberOfNodes() {
+        return numberOfNodes;
+    }
+
+    /**
+     * sets the number of nodes.
+     * @param numberOfNodes the number of nodes.
+     */
+    @ExtensionProperty(id="numNodes")
+    public void setNumberOfNodes(int numberOfNodes) {
+        this.numberOfNodes = numberOfNodes;
+    }
+
+    /**
+     * gets the probability of keeping a copied edge.
+     * @return the retention probability.
+     */
+    public double getRetention() {
+        return retention;
+    }
+
+    /**
+     * sets the probability of keeping a copied edge.
+     * @param retention the retention probability
+     * @throws IllegalArgumentException if preconditions are not met.
+     */
+    @ExtensionProperty(id="retention")
+    public void setRetention(double retention) throws IllegalArgumentException {
+        if (retention < 0.0 || retention > 1.0) {
+            throw new IllegalArgumentException(
+                    "Precondition violation: 0 <= retention <= 1");
+        }
+        this.retention = retention;
+    }
+
+    /**
+     * returns whether populations resume the growth of smaller networks.
+     * @return whether growth is resumed from checkpoints.
+     */
+    public boolean isResumeGrowth() {
+        return resumeGrowth;
+    }
+
+    /**
+     * sets whether populations resume the growth of smaller networks. If
+     * enabled, every grown network is kept in memory as a checkpoint, which
+     * only pays off when <code>numNodes</code> is swept upwards. Disabled by
+     * default, so that every network is grown from scratch and independently
+     * of earlier populations.
+     * @param resumeGrowth whether growth is resumed from checkpoints.
+     */
+    @ExtensionProperty(id="resumeGrowth")
+    public void setResumeGrowth(boolean resumeGrowth) {
+        this.resumeGrowth = resumeGrowth;
+    }
+
+    /**
+     * populates the graph by duplication and divergence.
+     * @param graph the graph to populate.
+     * @throws GraphException if the network gets too many edges.
+     */
+    @Override
+    public void populate(Graph graph) {
+
+        int n = Math.max(numberOfNodes, seed);
+
+        //create nodes
+        NodeDictionary dictionary = graph.getNodeDictionary();
+        int[] ordinals = new int[n];
+        for (int v = 0; v < n; v++) {
+            ordinals[v] = dictionary.ordinalOf(graph.createNode(v + 1));
+        }
+
+        String config = seed + "/" + retention;
+        Growth growth = resumeGrowth ? checkpoints.take(config, n) : null;
+        if (growth == null) {
+            growth = new Growth(new MersenneTwister(RandomEngineRegistry.getEngine().nextInt()), seed, n);
+        }
+        growth.grow(n, retention);
+
+        Edges edges = growth.edges;
+        int[] a = new int[edges.size], b = new int[edges.size];
+        for (int e = 0; e < edges.size; e++) {
+            a[e] = ordinals[edges.a[e]];
+            b[e] = ordinals[edges.b[e]];
+        }
+        if (resumeGrowth) {
+            checkpoints.put(config, growth);
+        }
+        graph.addEdges(a, b);
+    }
+
+    /**
+     * returns a string summarising the current configuration.
+     * @return a string summarising the current configuration.
+     */
+    @Override
+    public String configSummary() {
+        return "\"" + this.getClass().getSimpleName() +
+                "\" {nodes: " + numberOfNodes + "; seeds: " + seed +
+                "; retention: " + retention + "}";
+    }
+
+    /**
+     * drops all checkpoints.
+     */
+    static void clearCheckpoints() {
+        checkpoints.clear();
+    }
+
+    /**
+     * The state of a duplication-divergence process: the adjacency rows, the
+     * edges in order of creation, and the random number generator.
+     */
+    private static final class Growth implements GrowthCheckpoints.State {
+
+        private final Uniform uniform;
+
+        private int[][] rows;
+
+        private int[] degrees;
+
+        private final Edges edges;
+
+        private int numNodes;
+
+        /**
+         * creates the seed clique.
+         */
+        Growth(MersenneTwister engine, int seed, int capacity) {
+            this.uniform = new Uniform(engine);
+            rows = new int[capacity][];
+            degrees = new int[capacity];
+            edges = new Edges(capacity);
+            for (int i = 0; i < seed; i++) {
+                rows[i] = new int[Math.max(4, seed)];
+                for (int j = 0; j < i; j++) {
+                    rows[i][degrees[i]++] = j;
+                    rows[j][degrees[j]++] = i;
+                    edges.add(i, j);
+                }
+            }
+            numNodes = seed;
+        }
+
+        @Override
+        public int getNumNodes() {
+            return numNodes;
+        }
+
+        /**
+         * duplicates nodes until there are n.
+         * @param n the number of nodes to grow to.
+         * @param retention the probability of keeping a copied edge.
+         */
+        void grow(int n, double retention) {
+            if (rows.length < n) {
+                rows = Arrays.copyOf(rows, n);
+                degrees = Arrays.copyOf(degrees, n);
+            }
+            GeometricSkip skip = retention > 0.0 ? new GeometricSkip(uniform, retention) : null;
+            for (int v = numNodes; v < n; v++) {
+                int original = uniform.nextIntFromTo(0, v - 1);
+                int[] source = rows[original];
+                int degree = degrees[original];
+
+                rows[v] = new int[Math.max(4, (int) (retention * degree) + 1)];
+                if (skip != null) {
+                    for (long k = skip.next() - 1; k < degree; k += skip.next()) {
+                        connect(v, source[(int) k]);
+                        edges.add(v, source[(int) k]);
+                    }
+                }
+                if (degrees[v] == 0) {
+                    connect(v, original);
+                    edges.add(v, original);
+                }
+            }
+            numNodes = Math.max(numNodes, n);
+        }
+
+        /**
+         * appends the edge between v and w to both adjacency rows.
+         */
+        private void connect(int v, int w) {
+            if (degrees[v] == rows[v].length) {
+                rows[v] = Arrays.copyOf(rows[v], 2 * degrees[v]);
+            }
+            rows[v][degrees[v]++] = w;
+            if (degrees[w] == rows[w].length) {
+                rows[w] = Arrays.copyOf(rows[w], 2 * degrees[w]);
+            }
+            rows[w][degrees[w]++] = v;
+        }
+    }
+
+    /**
+     * A growable list of edges between node positions.
+     */
+    private static final class Edges {
+
+        private int[] a, b;
+
+        private int size = 0;
+
+        Edges(int capacity) {
+            a = new int[Math.max(16, capacity)];
+            b = new int[a.length];
+        }
+
+        void add(int x, int y) {
+            if (size == a.length) {
+                if (size >= Integer.MAX_VALUE - 8) {
+                    throw new GraphException("Too many edges for duplication-divergence.");
+                }
+                int grown = (int) Math.min(Integer.MAX_VALUE - 8, 2L * size);
+                a = Arrays.copyOf(a, grown);
+                b = Arrays.copyOf(b, grown);
+            }
+            a[size] = x;
+            b[size++] = y;
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph.populators;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.extsupport.Extension;
+import uk.ac.ncl.cs.harness.extsupport.ExtensionProperty;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.io.EdgeList;
+
+/**
+ * <p>This is a graph populator that imports a real network from a delimited
+ * edge list file (see <code>EdgeList</code> for the format).</p>
+ *
+ * <p>Parsed edge lists are cached per file, so all replicas of a sweep share
+ * one parse and only populate their own graphs from it. A cached edge list is
+ * parsed again if the file has changed since, and it may be dropped when
+ * memory runs low.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+@Extension(id="edgelist")
+public final class EdgeListPopulator implements GraphPopulator {
+
+    /**
+     * parsed edge lists, keyed by canonical file path.
+     */
+    private static final Map<String,CacheEntry> cache = new HashMap<String, CacheEntry>();
+
+    /**
+     * the edge list file
+     */
+    private String file;
+
+    /**
+     * whether the first line of the file is a header
+     */
+    private boolean header = false;
+
+    /**
+     * gets the edge list file name.
+     * @return the edge list file name.
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * sets the edge list file name.
+     * @param file the edge list file name.
+     */
+    @ExtensionProperty(id="file")
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * returns whether the first line of the file is skipped as a header.
+     * @return whether the first line is a header.
+     */
+    public boolean isHeader() {
+        return header;
+    }
+
+    /**
+     * sets whether the first line of the file is skipped as a header.
+     * @param header whether the first line is a header.
+     */
+    @ExtensionProperty(id="header")
+    public void setHeader(boolean header) {
+        this.header = header;
+    }
+
+    /**
+     * populates the graph with the network in the edge list file.
+     * @param graph the graph to populate.
+     * @throws GraphException if the file cannot be read.
+     */
+    @Override
+    public void populate(Graph graph) {
+        EdgeList edges;
+        try {
+            edges = load(new File(file), header);
+        } catch (IOException ex) {
+            throw new GraphException("Unable to read edge list "+file, ex);
+        }
+        int repeated = edges.populate(graph);
+        if (repeated > 0) {
+            Logger.getLogger(this.getClass().getCanonicalName())
+                    .fine("Skipped "+repeated+" repeated edges in "+file);
+        }
+    }
+
+    /**
+     * returns the parsed edge list of the given file, parsing it only if it is
+     * not cached or has changed.
+     * @param f the edge list file
+     * @param header whether the first line is a header.
+     * @return the parsed edge list.
+     * @throws IOException if the file cannot be read.
+     */
+    private static EdgeList load(File f, boolean header) throws IOException {
+        String key = f.getCanonicalPath() + (header ? "#header" : "");
+        synchronized (cache) {
+            CacheEntry entry = cache.get(key);
+            EdgeList edges = entry == null ? null : entry.edges.get();
+            if (edges != null && entry.lastModified == f.lastModified()
+                    && entry.length == f.length()) {
+                return edges;
+            }
+            edges = EdgeList.read(f, header);
+            if (edges.getSkippedLines() > 0) {
+                Logger.getLogger(EdgeListPopulator.class.getCanonicalName())
+                        .warning("Skipped "+edges.getSkippedLines()+" malformed lines in "+f);
+            }
+            cache.put(key, new CacheEntry(edges, f.lastModified(), f.length()));
+            return edges;
+        }
+    }
+
+    /**
+     * returns a string summarising the current configuration.
+     * @return a string summarising the current configuration.
+     */
+    @Override
+    public String configSummary() {
+        return "\"" + this.getClass().getSimpleName() +
+                "\" {file: " + file + "; header: " + header + "}";
+    }
+
+    /**
+     * A cached edge list with the file state it was parsed from.
+     */
+    private static final class CacheEntry {
+
+        private final SoftReference<EdgeList> edges;
+
+        private final long lastModified;
+
+        private final long length;
+
+        CacheEntry(EdgeList edges, long lastModified, long length) {
+            this.edges = new SoftReference<EdgeList>(edges);
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph.populators;
+
+import cern.jet.random.Uniform;
+import java.util.Arrays;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.stats.GeometricSkip;
+
+/**
+ * Samples independent edges between groups of nodes, each pair with the same
+ * probability. Instead of testing every pair, the sampler jumps from edge to
+ * edge through the pair index space with geometrically distributed skips
+ * (Batagelj and Brandes, 2005), so its cost is proportional to the number of
+ * edges sampled. The edges are collected and added to a graph in bulk.
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+final class EdgeSampler {
+
+    /**
+     * the largest initial buffer size
+     */
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private final Uniform uniform;
+
+    /**
+     * ordinals of the sampled edges' ends
+     */
+    private int[] a, b;
+
+    private int size = 0;
+
+    /**
+     * constructor.
+     * @param uniform the random source
+     * @param expectedEdges the expected number of edges, to size the buffers.
+     * @throws GraphException if the expected edges would not fit into the buffers.
+     */
+    EdgeSampler(Uniform uniform, double expectedEdges) {
+        this.uniform = uniform;
+        double needed = expectedEdges + 4 * Math.sqrt(expectedEdges) + 16;
+        if (needed > Integer.MAX_VALUE - 8) {
+            throw new GraphException("Too many edges expected: " + expectedEdges);
+        }
+        //start small and let add() grow the buffers with the actual sample
+        int capacity = (int) Math.min(needed, INITIAL_CAPACITY);
+        a = new int[capacity];
+        b = new int[capacity];
+    }
+
+    /**
+     * samples edges between distinct nodes of one group.
+     * @param ordinals node ordinals
+     * @param from the first node of the group
+     * @param to the end of the group (exclusive)
+     * @param p the edge probability
+     */
+    void sampleWithin(int[] ordinals, int from, int to, double p) {
+        int n = to - from;
+        if (n < 2 || p <= 0.0) {
+            return;
+        }
+        //walk the lower triangle (v > w) row by row
+        GeometricSkip skip = new GeometricSkip(uniform, p);
+        int v = 1;
+        long w = -1;
+        while (v < n) {
+            w += skip.next();
+            if (w >= (long) n * n) {
+                //beyond the last pair
+                break;
+            }
+            while (w >= v && v < n) {
+                w -= v;
+                v++;
+            }
+            if (v < n) {
+                add(ordinals[from + v], ordinals[from + (int) w]);
+            }
+        }
+    }
+
+    /**
+     * samples edges between the nodes of two disjoint groups.
+     * @param ordinals node ordinals
+     * @param rowFrom the first node of the first group
+     * @param rowTo the end of the first group (exclusive)
+     * @param colFrom the first node of the second group
+     * @param colTo the end of the second group (exclusive)
+     * @param p the edge probability
+     */
+    void sampleBetween(int[] ordinals, int rowFrom, int rowTo, int colFrom, int colTo, double p) {
+        int cols = colTo - colFrom;
+        long pairs = (long) (rowTo - rowFrom) * cols;
+        if (pairs == 0 || p <= 0.0) {
+            return;
+        }
+        GeometricSkip skip = new GeometricSkip(uniform, p);
+        for (long index = skip.next() - 1; index < pairs; index += skip.next()) {
+            add(ordinals[rowFrom + (int) (index / cols)], ordinals[colFrom + (int) (index % cols)]);
+        }
+    }
+
+    /**
+     * stores a sampled edge.
+     */
+    private void add(int x, int y) {
+        if (size == a.length) {
+            if (size >= Integer.MAX_VALUE - 8) {
+                throw new GraphException("Too many edges sampled.");
+            }
+            int grown = (int) Math.min(Integer.MAX_VALUE - 8, 2L * size);
+            a = Arrays.copyOf(a, grown);
+            b = Arrays.copyOf(b, grown);
+        }
+        a[size] = x;
+        b[size++] = y;
+    }
+
+    /**
+     * adds all sampled edges to the graph.
+     * @param graph the graph containing the sampled nodes.
+     */
+    void addTo(Graph graph) {
+        graph.addEdges(Arrays.copyOf(a, size), Arrays.copyOf(b, size));
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph.populators;
+
+import cern.jet.random.Uniform;
+import uk.ac.ncl.cs.harness.extsupport.Extension;
+import uk.ac.ncl.cs.harness.extsupport.ExtensionProperty;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.graph.NodeDictionary;
+import uk.ac.ncl.cs.harness.stats.RandomEngineRegistry;
+
+/**
+ * This is a graph populator that generates Erd&#337;s-R&eacute;nyi random graphs
+ * G(n,p), in which each pair of distinct nodes is connected independently with
+ * probability <code>p</code>. Pairs are visited with geometric skips (see
+ * <code>EdgeSampler</code>), so the cost is proportional to the number of
+ * edges generated. The edge probability can be given
+ * directly or as the expected mean degree, whichever was set last.
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+@Extension(id="erdosrenyi")
+public final class ErdosRenyiPopulator implements GraphPopulator {
+
+    private Uniform uniform = new Uniform(RandomEngineRegistry.getEngine());
+
+    /**
+     * number of nodes to generate
+     */
+    private int numberOfNodes;
+
+    /**
+     * the edge probability
+     */
+    private double p;
+
+    /**
+     * the expected mean degree
+     */
+    private double meanDegree;
+
+    /**
+     * whether the edge probability derives from the mean degree
+     */
+    private boolean useMeanDegree = false;
+
+    /**
+     * gets the number of nodes
+     * @return the number of nodes.
+     */
+    public int getNumberOfNodes() {
+        return numberOfNodes;
+    }
+
+    /**
+     * sets the number of nodes.
+     * @param numberOfNodes the number of nodes.
+     */
+    @ExtensionProperty(id="numNodes")
+    public void setNumberOfNodes(int numberOfNodes) {
+        this.numberOfNodes = numberOfNodes;
+    }
+
+    /**
+     * gets the edge probability, as given or as derived from the mean degree.
+     * @return the edge probability.
+     */
+    public double getP() {
+        if (useMeanDegree) {
+            return numberOfNodes < 2 ? 0.0 : Math.min(1.0, meanDegree / (numberOfNodes - 1));
+        }
+        return p;
+    }
+
+    /**
+     * sets the edge probability.
+     * @param p the edge probability
+     * @throws IllegalArgumentException if preconditions are not met.
+     */
+    @ExtensionProperty(id="p")
+    public void setP(double p) throws IllegalArgumentException {
+        if (p < 0.0 || p > 1.0) {
+            throw new IllegalArgumentException(
+                    "Precondition violation: 0 <= p <= 1");
+        }
+        this.p = p;
+        this.useMeanDegree = false;
+    }
+
+    /**
+     * gets the expected mean degree, as given or as derived from the edge probability.
+     * @return the expected mean degree.
+     */
+    public double getMeanDegree() {
+        return useMeanDegree ? meanDegree : p * Math.max(0, numberOfNodes - 1);
+    }
+
+    /**
+     * sets the expected mean degree, from which the edge probability is
+     * derived as <code>meanDegree / (numNodes - 1)</code>.
+     * @param meanDegree the expected mean degree
+     * @throws IllegalArgumentException if preconditions are not met.
+     */
+    @ExtensionProperty(id="meanDegree")
+    public void setMeanDegree(double meanDegree) throws IllegalArgumentException {
+        if (meanDegree < 0.0) {
+            throw new IllegalArgumentException(
+                    "Precondition violation: meanDegree >= 0");
+        }
+        this.meanDegree = meanDegree;
+        this.useMeanDegree = true;
+    }
+
+    /**
+     * populates the graph with a G(n,p) random graph.
+     * @param graph the graph to populate.
+     * @throws uk.ac.ncl.cs.harness.exceptions.GraphException if the graph would
+     * have too many edges.
+     */
+    @Override
+    public void populate(Graph graph) {
+
+        int n = numberOfNodes;
+        double prob = getP();
+
+        EdgeSampler sampler = new EdgeSampler(uniform, prob * ((double) n * (n - 1) / 2));
+
+        //create nodes
+        NodeDictionary dictionary = graph.getNodeDictionary();
+        int[] ordinals = new int[n];
+        for (int v = 0; v < n; v++) {
+            ordinals[v] = dictionary.ordinalOf(graph.createNode(v + 1));
+        }
+        if (n < 2 || prob <= 0.0) {
+            return;
+        }
+
+        sampler.sampleWithin(ordinals, 0, n, prob);
+        sampler.addTo(graph);
+    }
+
+    /**
+     * returns a string summarising the current configuration.
+     * @return a string summarising the current configuration.
+     */
+    @Override
+    public String configSummary() {
+        return "\"" + this.getClass().getSimpleName() +
+                "\" {nodes: " + numberOfNodes + "; p: " + getP() + "}";
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph.populators;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * <p>Keeps the states of growth processes, so that a growth-based populator
+ * asked for a larger network can resume from a smaller one instead of growing
+ * it again from scratch. A network grown to <i>n</i> nodes is a prefix of the
+ * same process run further, so when the number of nodes is swept upwards, every
+ * replica continues the process of a replica from the previous grid value.
+ * Sweeping <i>n</i> then costs <i>O(n<sub>max</sub>)</i> growth steps per
+ * replica rather than the sum over all grid values.</p>
+ *
+ * <p>A state is taken out while it grows, so no two populations share one.
+ * States are only resumed for strictly larger networks, which keeps replicas
+ * of the same grid value independent. The oldest states are dropped beyond a
+ * fixed capacity, and all of them may be dropped when memory runs low.</p>
+ *
+ * @param <S> the type of growth state.
+ * @author Jochen Weile, M.Sc.
+ */
+final class GrowthCheckpoints<S extends GrowthCheckpoints.State> {
+
+    /**
+     * The state of a growth process, including its random number generator.
+     */
+    interface State {
+
+        /**
+         * returns the number of nodes grown so far.
+         * @return the number of nodes.
+         */
+        int getNumNodes();
+    }
+
+    /**
+     * the maximal number of states kept
+     */
+    private final int capacity;
+
+    /**
+     * the kept states, oldest first
+     */
+    private final LinkedList<Entry<S>> entries = new LinkedList<Entry<S>>();
+
+    /**
+     * constructor.
+     * @param capacity the maximal number of states kept.
+     */
+    GrowthCheckpoints(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * takes out the largest state of the given configuration that has fewer
+     * than the given number of nodes.
+     * @param config a string identifying the process configuration.
+     * @param numNodes the number of nodes to grow to.
+     * @return the state, or null if there is none.
+     */
+    synchronized S take(String config, int numNodes) {
+        Entry<S> best = null;
+        S bestState = null;
+        for (Iterator<Entry<S>> it = entries.iterator(); it.hasNext();) {
+            Entry<S> entry = it.next();
+            S state = entry.state.get();
+            if (state == null) {
+                it.remove();
+            } else if (entry.config.equals(config) && state.getNumNodes() < numNodes
+                    && (bestState == null || state.getNumNodes() > bestState.getNumNodes())) {
+                best = entry;
+                bestState = state;
+            }
+        }
+        if (best != null) {
+            entries.remove(best);
+        }
+        return bestState;
+    }
+
+    /**
+     * keeps a state for later populations.
+     * @param config a string identifying the process configuration.
+     * @param state the state.
+     */
+    synchronized void put(String config, S state) {
+        entries.addLast(new Entry<S>(config, state));
+        while (entries.size() > capacity) {
+            entries.removeFirst();
+        }
+    }
+
+    /**
+     * drops all states.
+     */
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * A kept state with its configuration.
+     */
+    private static final class Entry<S> {
+
+        private final String config;
+
+        private final SoftReference<S> state;
+
+        Entry(String config, S state) {
+            this.config = config;
+            this.state = new SoftReference<S>(state);
+        }
+    }
+
+}
@@ -0,0 +1,410 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph.populators;
+
+import cern.jet.random.Uniform;
+import cern.jet.random.engine.MersenneTwister;
+import cern.jet.random.engine.RandomEngine;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.extsupport.Extension;
+import uk.ac.ncl.cs.harness.extsupport.ExtensionProperty;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.graph.NodeDictionary;
+import uk.ac.ncl.cs.harness.stats.RandomEngineRegistry;
+import uk.ac.ncl.cs.harness.util.Pairs;
+
+/**
+ * <p>This is a graph populator that generates skewed, community-rich graphs with
+ * the recursive matrix (R-MAT) model of Chakrabarti et al. Each edge descends
+ * through the levels of the adjacency matrix, choosing the top left, top right,
+ * bottom left or bottom right quadrant with probabilities <code>a</code>,
+ * <code>b</code>, <code>c</code> and <code>d</code>. The default probabilities
+ * are those of the Graph500 benchmark.</p>
+ *
+ * <p>Generation can be split into several streams, each of which draws its edges
+ * from its own random engine, seeded from the calling thread's engine. By
+ * default there is a single stream, run by the calling thread, as workflow
+ * replicas already run in parallel. Further streams run in parallel; each sorts and deduplicates its packed node pairs,
+ * and the sorted streams are merged pairwise in parallel before the graph is
+ * filled in bulk. Self-loops and repeated pairs are discarded, so the graph
+ * ends up with somewhat fewer than <code>numEdges</code> edges. The result
+ * depends only on the calling thread's engine and the number of streams.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+@Extension(id="rmat")
+public final class RMatPopulator implements GraphPopulator {
+
+    /**
+     * number of nodes to generate
+     */
+    private int numberOfNodes;
+
+    /**
+     * number of edges to draw
+     */
+    private int numberOfEdges;
+
+    /**
+     * quadrant probabilities
+     */
+    private double a = 0.57, b = 0.19, c = 0.19, d = 0.05;
+
+    /**
+     * number of parallel streams; 0 for one per processor
+     */
+    private int streams = 1;
+
+    /**
+     * number of consecutive draws outside the matrix after which the quadrant
+     * probabilities are deemed unsuitable for the number of nodes
+     */
+    private static final int MAX_REJECTIONS = 1 << 20;
+
+    /**
+     * gets the number of nodes
+     * @return the number of nodes.
+     */
+    public int getNumberOfNodes() {
+        return numberOfNodes;
+    }
+
+    /**
+     * sets the number of nodes.
+     * @param numberOfNodes the number of nodes.
+     */
+    @ExtensionProperty(id="numNodes")
+    public void setNumberOfNodes(int numberOfNodes) {
+        this.numberOfNodes = numberOfNodes;
+    }
+
+    /**
+     * gets the number of edges to draw.
+     * @return the number of edges to draw.
+     */
+    public int getNumberOfEdges() {
+        return numberOfEdges;
+    }
+
+    /**
+     * sets the number of edges to draw, including those that turn out to be
+     * self-loops or repeats.
+     * @param numberOfEdges the number of edges to draw.
+     */
+    @ExtensionProperty(id="numEdges")
+    public void setNumberOfEdges(int numberOfEdges) {
+        this.numberOfEdges = numberOfEdges;
+    }
+
+    /**
+     * gets the probability of the top left quadrant.
+     * @return the probability
+     */
+    public double getA() {
+        return a;
+    }
+
+    /**
+     * sets the probability of the top left quadrant.
+     * @param a the probability
+     */
+    @ExtensionProperty(id="a")
+    public void setA(double a) {
+        this.a = a;
+    }
+
+    /**
+     * gets the probability of the top right quadrant.
+     * @return the probability
+     */
+    public double getB() {
+        return b;
+    }
+
+    /**
+     * sets the probability of the top right quadrant.
+     * @param b the probability
+     */
+    @ExtensionProperty(id="b")
+    public void setB(double b) {
+        this.b = b;
+    }
+
+    /**
+     * gets the probability of the bottom left quadrant.
+     * @return the probability
+     */
+    public double getC() {
+        return c;
+    }
+
+    /**
+     * sets the probability of the bottom left quadrant.
+     * @param c the probability
+     */
+    @ExtensionProperty(id="c")
+    public void setC(double c) {
+        this.c = c;
+    }
+
+    /**
+     * gets the probability of the bottom right quadrant.
+     * @return the probability
+     */
+    public double getD() {
+        return d;
+    }
+
+    /**
+     * sets the probability of the bottom right quadrant.
+     * @param d the probability
+     */
+    @ExtensionProperty(id="d")
+    public void setD(double d) {
+        this.d = d;
+    }
+
+    /**
+     * gets the number of parallel streams.
+     * @return the number of streams, or 0 for one per processor.
+     */
+    public int getStreams() {
+        return streams;
+    }
+
+    /**
+     * sets the number of parallel streams. Fix it for results that are
+     * reproducible across machines. Mind that every population starts its
+     * own threads, on top of the workflow's replica threads.
+     * @param streams the number of streams (default 1), or 0 for one per processor.
+     */
+    @ExtensionProperty(id="streams")
+    public void setStreams(int streams) {
+        this.streams = streams;
+    }
+
+    /**
+     * populates the graph with an R-MAT graph.
+     * @param graph the graph to populate.
+     * @throws GraphException if the quadrant probabilities are invalid,
+     * draw nearly no edges inside the matrix, or generation fails.
+     */
+    @Override
+    public void populate(Graph graph) {
+
+        if (a < 0 || b < 0 || c < 0 || d < 0 || Math.abs(a + b + c + d - 1.0) > 1e-6) {
+            throw new GraphException("R-MAT quadrant probabilities must be non-negative and sum to 1: "
+                    + a + ", " + b + ", " + c + ", " + d);
+        }
+
+        final int n = numberOfNodes;
+        NodeDictionary dictionary = graph.getNodeDictionary();
+        int[] ordinals = new int[n];
+        for (int v = 0; v < n; v++) {
+            ordinals[v] = dictionary.ordinalOf(graph.createNode(v + 1));
+        }
+        if (n < 2 || numberOfEdges <= 0) {
+            return;
+        }
+
+        int numStreams = streams > 0 ? streams : Runtime.getRuntime().availableProcessors();
+        numStreams = Math.max(1, Math.min(numStreams, numberOfEdges));
+        int levels = 32 - Integer.numberOfLeadingZeros(n - 1);
+
+        RandomEngine engine = RandomEngineRegistry.getEngine();
+        if (numStreams == 1) {
+            addEdges(graph, ordinals, new Stream(engine.nextInt(), numberOfEdges, n, levels).call());
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(numStreams);
+        try {
+
+            //generate, sort and deduplicate the streams
+            List<Future<long[]>> pending = new ArrayList<Future<long[]>>();
+            for (int s = 0; s < numStreams; s++) {
+                int quota = numberOfEdges / numStreams + (s < numberOfEdges % numStreams ? 1 : 0);
+                pending.add(executor.submit(new Stream(engine.nextInt(), quota, n, levels)));
+            }
+            List<long[]> sorted = collect(pending);
+
+            //merge pairwise
+            while (sorted.size() > 1) {
+                pending.clear();
+                for (int i = 0; i + 1 < sorted.size(); i += 2) {
+                    final long[] x = sorted.get(i), y = sorted.get(i + 1);
+                    pending.add(executor.submit(new Callable<long[]>() {
+                        @Override
+                        public long[] call() {
+                            return mergeUnique(x, y);
+                        }
+                    }));
+                }
+                long[] odd = sorted.size() % 2 == 1 ? sorted.get(sorted.size() - 1) : null;
+                sorted = collect(pending);
+                if (odd != null) {
+                    sorted.add(odd);
+                }
+            }
+
+            addEdges(graph, ordinals, sorted.get(0));
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * adds the edges of the given packed node positions to the graph.
+     */
+    private static void addEdges(Graph graph, int[] ordinals, long[] keys) {
+        int[] ordA = new int[keys.length], ordB = new int[keys.length];
+        for (int e = 0; e < keys.length; e++) {
+            ordA[e] = ordinals[Pairs.high(keys[e])];
+            ordB[e] = ordinals[Pairs.low(keys[e])];
+        }
+        graph.addEdges(ordA, ordB);
+    }
+
+    /**
+     * waits for the given tasks.
+     * @return their results, in order.
+     * @throws GraphException if a task failed or the thread was interrupted.
+     */
+    private static List<long[]> collect(List<Future<long[]>> futures) {
+        List<long[]> results = new ArrayList<long[]>(futures.size());
+        try {
+            for (Future<long[]> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException ex) {
+            throw new GraphException("R-MAT generation failed", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new GraphException("R-MAT generation interrupted", ex);
+        }
+        return results;
+    }
+
+    /**
+     * merges two sorted arrays of distinct values into one, dropping duplicates.
+     */
+    private static long[] mergeUnique(long[] x, long[] y) {
+        long[] merged = new long[x.length + y.length];
+        int i = 0, j = 0, k = 0;
+        while (i < x.length && j < y.length) {
+            if (x[i] < y[j]) {
+                merged[k++] = x[i++];
+            } else if (x[i] > y[j]) {
+                merged[k++] = y[j++];
+            } else {
+                merged[k++] = x[i++];
+                j++;
+            }
+        }
+        while (i < x.length) {
+            merged[k++] = x[i++];
+        }
+        while (j < y.length) {
+            merged[k++] = y[j++];
+        }
+        return k == merged.length ? merged : Arrays.copyOf(merged, k);
+    }
+
+    /**
+     * returns a string summarising the current configuration.
+     * @return a string summarising the current configuration.
+     */
+    @Override
+    public String configSummary() {
+        return "\"" + this.getClass().getSimpleName() +
+                "\" {nodes: " + numberOfNodes + "; edges: " + numberOfEdges +
+                "; a: " + a + "; b: " + b + "; c: " + c + "; d: " + d + "}";
+    }
+
+    /**
+     * An independent stream of R-MAT edges, returned as sorted, distinct
+     * packed node pairs without self-loops.
+     */
+    private final class Stream implements Callable<long[]> {
+
+        private final int seed, quota, n, levels;
+
+        Stream(int seed, int quota, int n, int levels) {
+            this.seed = seed;
+            this.quota = quota;
+            this.n = n;
+            this.levels = levels;
+        }
+
+        @Override
+        public long[] call() {
+            Uniform uniform = new Uniform(new MersenneTwister(seed));
+            double ab = a + b, abc = a + b + c;
+            long[] keys = new long[quota];
+            int size = 0;
+            int drawn = 0, rejected = 0;
+            while (drawn < quota) {
+                int row = 0, col = 0;
+                for (int level = 0; level < levels; level++) {
+                    double r = uniform.nextDouble();
+                    row <<= 1;
+                    col <<= 1;
+                    if (r >= abc) {
+                        row |= 1;
+                        col |= 1;
+                    } else if (r >= ab) {
+                        row |= 1;
+                    } else if (r >= a) {
+                        col |= 1;
+                    }
+                }
+                if (row >= n || col >= n) {
+                    //outside the matrix if n is not a power of two
+                    if (++rejected >= MAX_REJECTIONS) {
+                        throw new GraphException("R-MAT quadrant probabilities " + a + ", " + b + ", "
+                                + c + ", " + d + " draw almost no edges among " + n + " nodes.");
+                    }
+                    continue;
+                }
+                rejected = 0;
+                drawn++;
+                if (row != col) {
+                    keys[size++] = Pairs.key(row, col);
+                }
+            }
+            Arrays.sort(keys, 0, size);
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                if (unique == 0 || keys[unique - 1] != keys[i]) {
+                    keys[unique++] = keys[i];
+                }
+            }
+            return Arrays.copyOf(keys, unique);
+        }
+    }
+
+}
@@ -18,23 +18,26 @@
 package uk.ac.ncl.cs.harness.graph.populators;
 
 import cern.jet.random.Uniform;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.logging.Logger;
+import cern.jet.random.engine.MersenneTwister;
+import java.util.Arrays;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
 import uk.ac.ncl.cs.harness.extsupport.Extension;
 import uk.ac.ncl.cs.harness.extsupport.ExtensionProperty;
-import uk.ac.ncl.cs.harness.graph.Edge;
 import uk.ac.ncl.cs.harness.graph.Graph;
-import uk.ac.ncl.cs.harness.graph.Node;
+import uk.ac.ncl.cs.harness.graph.NodeDictionary;
 import uk.ac.ncl.cs.harness.stats.RandomEngineRegistry;
-import uk.ac.ncl.cs.harness.util.SetOfTwo;
 
 /**
  * This is a graph populator that generates a scale-free networks with the given
- * number of seeds and a given number of nodes. the number of edges will equal the
- * number of nodes, since this is an impementation of the preferential attachment
- * algorithm.
+ * number of seeds and a given number of nodes. The seeds form a clique, and every
+ * further node is attached to <code>edgesPerNode</code> distinct existing nodes by
+ * preferential attachment. With the default of one edge per node, the number of
+ * edges beyond the seed clique equals the number of non-seed nodes.
+ *
+ * With <code>resumeGrowth</code> enabled, grown networks are kept as checkpoints
+ * (see <code>GrowthCheckpoints</code>), so when <code>numNodes</code> is swept
+ * upwards, each population resumes the growth of a smaller network instead of
+ * starting over.
  *
  * @author Jochen Weile, M.Sc.
  */
@@ -45,7 +48,11 @@ public final class ScaleFreePopulator implements GraphPopulator {
 //     * random number generator.
 //     */
 //    private Random random = new Random();
-    private Uniform uniform = new Uniform(RandomEngineRegistry.getEngine());
+
+    /**
+     * grown networks, to be resumed by later populations.
+     */
+    private static final GrowthCheckpoints<Growth> checkpoints = new GrowthCheckpoints<Growth>(256);
 
     /**
      * number of seed nodes to generate
@@ -57,6 +64,16 @@ public final class ScaleFreePopulator implements GraphPopulator {
      */
     private int numberOfNodes;
 
+    /**
+     * number of edges connecting each new node to the existing network
+     */
+    private int edgesPerNode = 1;
+
+    /**
+     * whether to resume growth from checkpoints
+     */
+    private boolean resumeGrowth = false;
+
     /**
      * gets the number of seed nodes.
      * @return the number of seed nodes.
@@ -91,73 +108,191 @@ public final class ScaleFreePopulator implements GraphPopulator {
         this.numberOfNodes = numberOfNodes;
     }
 
+    /**
+     * gets the number of edges attaching each new node.
+     * @return the number of edges per new node.
+     */
+    public int getEdgesPerNode() {
+        return edgesPerNode;
+    }
+
+    /**
+     * sets the number of edges attaching each new node. Nodes that join before
+     * that many nodes exist connect to all earlier ones instead.
+     * @param edgesPerNode the number of edges per new node; at least 1.
+     * @throws IllegalArgumentException if the number is smaller than 1.
+     */
+    @ExtensionProperty(id="edgesPerNode")
+    public void setEdgesPerNode(int edgesPerNode) {
+        if (edgesPerNode < 1) {
+            throw new IllegalArgumentException("Precondition violation: edgesPerNode >= 1");
+        }
+        this.edgesPerNode = edgesPerNode;
+    }
+
+    /**
+     * returns whether populations resume the growth of smaller networks.
+     * @return whether growth is resumed from checkpoints.
+     */
+    public boolean isResumeGrowth() {
+        return resumeGrowth;
+    }
+
+    /**
+     * sets whether populations resume the growth of smaller networks. If
+     * enabled, every grown network is kept in memory as a checkpoint, which
+     * only pays off when <code>numNodes</code> is swept upwards. Disabled by
+     * default, so that every network is grown from scratch and independently
+     * of earlier populations.
+     * @param resumeGrowth whether growth is resumed from checkpoints.
+     */
+    @ExtensionProperty(id="resumeGrowth")
+    public void setResumeGrowth(boolean resumeGrowth) {
+        this.resumeGrowth = resumeGrowth;
+    }
+
 
     /**
      * populates the graph to form a scale-free network using
      * preferential attachment.
+     *
+     * Every edge contributes both its ends to an endpoint array, so a uniform
+     * pick from the array selects a node with probability proportional to its
+     * degree (Batagelj and Brandes, 2005). Each new node draws its targets from
+     * the endpoints of the edges that existed before it, which makes the whole
+     * generation linear in the number of nodes and edges.
+     *
      * @param graph the graph to populate.
+     * @throws GraphException if the network has too many edges for the endpoint array.
      */
     @Override
     public void populate(Graph graph) {
 
-        int lastNode = 0;
-
-        //Create seeds
-        List<Node> seeds = new ArrayList<Node>();
-        for (int i = 0; i < seed; i++) {
-            seeds.add(graph.createNode(++lastNode +""));
+        int n = Math.max(numberOfNodes, seed);
+        long numEdges = (long) seed * (seed - 1) / 2;
+        for (int v = seed; v < n; v++) {
+            numEdges += Math.min(edgesPerNode, v);
         }
-        for (int i = 0; i < seeds.size(); i++) {
-            Node node_i = seeds.get(i);
-            for (int j = 0; j < i; j++) {
-                Node node_j = seeds.get(j);
-                graph.createEdge(new SetOfTwo<Node>(node_i,node_j));
-            }
+        if (2 * numEdges > Integer.MAX_VALUE - 8) {
+            throw new GraphException("Too many edges for preferential attachment: "+numEdges);
         }
 
-        int sumOfDegrees = graph.getNumEdges() * 2;
+        //create nodes
+        NodeDictionary dictionary = graph.getNodeDictionary();
+        int[] ordinals = new int[n];
+        for (int v = 0; v < n; v++) {
+            ordinals[v] = dictionary.ordinalOf(graph.createNode(v + 1));
+        }
 
-        for (int i = 0; i < numberOfNodes - seed; i++) {
+        String config = seed + "/" + edgesPerNode;
+        Growth growth = resumeGrowth ? checkpoints.take(config, n) : null;
+        if (growth == null) {
+            growth = new Growth(new MersenneTwister(RandomEngineRegistry.getEngine().nextInt()), seed);
+        }
+        growth.grow(n, (int) (2 * numEdges), edgesPerNode);
 
-            int r = uniform.nextIntFromTo(1, sumOfDegrees);
-            int beam = 0;
+        int[] endpoints = growth.endpoints;
+        int size = growth.size;
+        int[] a = new int[size / 2], b = new int[size / 2];
+        for (int e = 0; e < a.length; e++) {
+            a[e] = ordinals[endpoints[2 * e]];
+            b[e] = ordinals[endpoints[2 * e + 1]];
+        }
+        if (resumeGrowth) {
+            checkpoints.put(config, growth);
+        }
+        graph.addEdges(a, b);
+    }
+
+    /**
+     * returns a string summarising the current configuration.
+     * @return a string summarising the current configuration.
+     */
+    @Override
+    public String configSummary() {
+        return "\"" + this.getClass().getSimpleName() +
+                "\" {nodes: " + numberOfNodes + "; seeds: "+ seed +
+                "; edgesPerNode: " + edgesPerNode + "}";
+    }
 
-            boolean created = false;
+    /**
+     * drops all checkpoints.
+     */
+    static void clearCheckpoints() {
+        checkpoints.clear();
+    }
 
-            Iterator<Node> nodes = graph.getNodes().iterator();
+    /**
+     * The state of a preferential attachment process: the ends of all edges
+     * as node positions, and the random number generator.
+     */
+    private static final class Growth implements GrowthCheckpoints.State {
 
-            while (nodes.hasNext() && !created) {
+        private final Uniform uniform;
 
-                Node node = nodes.next();
+        private int[] endpoints = new int[0];
 
-                beam += node.degree();
+        private int size = 0;
 
-                if (beam >= r) {
+        /**
+         * guards against repeated targets of a node
+         */
+        private int[] lastTarget = new int[0];
 
-                    Node newNode = graph.createNode(++lastNode +"");
-                    Edge e = graph.createEdge(new SetOfTwo<Node>(node, newNode));
+        private int numNodes;
 
-                    sumOfDegrees += 2;
-                    created = true;
+        /**
+         * creates the seed clique.
+         */
+        Growth(MersenneTwister engine, int seed) {
+            this.uniform = new Uniform(engine);
+            endpoints = new int[seed * (seed - 1)];
+            for (int i = 0; i < seed; i++) {
+                for (int j = 0; j < i; j++) {
+                    endpoints[size++] = i;
+                    endpoints[size++] = j;
                 }
             }
-            
-            if (!created) {
-                Logger.getLogger(this.getClass().getCanonicalName()).severe("This is a bug! Beam: "+beam+"\tRandom: "+r);
-            }
-            
+            numNodes = seed;
         }
 
-    }
+        @Override
+        public int getNumNodes() {
+            return numNodes;
+        }
 
-    /**
-     * returns a string summarising the current configuration.
-     * @return a string summarising the current configuration.
-     */
-    @Override
-    public String configSummary() {
-        return "\"" + this.getClass().getSimpleName() +
-                "\" {nodes: " + numberOfNodes + "; seeds: "+ seed + "}";
+        /**
+         * attaches new nodes until there are n.
+         * @param n the number of nodes to grow to.
+         * @param capacity the number of endpoints at n nodes.
+         * @param edgesPerNode the number of edges per new node.
+         */
+        void grow(int n, int capacity, int edgesPerNode) {
+            if (endpoints.length < capacity) {
+                endpoints = Arrays.copyOf(endpoints, capacity);
+            }
+            if (lastTarget.length < n) {
+                int old = lastTarget.length;
+                lastTarget = Arrays.copyOf(lastTarget, n);
+                Arrays.fill(lastTarget, old, n, -1);
+            }
+            for (int v = numNodes; v < n; v++) {
+                int existing = size;
+                int targets = Math.min(edgesPerNode, v);
+                for (int k = 0; k < targets; k++) {
+                    int target;
+                    do {
+                        target = existing == 0 ?
+                            uniform.nextIntFromTo(0, v - 1) :
+                            endpoints[uniform.nextIntFromTo(0, existing - 1)];
+                    } while (lastTarget[target] == v);
+                    lastTarget[target] = v;
+                    endpoints[size++] = v;
+                    endpoints[size++] = target;
+                }
+            }
+            numNodes = Math.max(numNodes, n);
+        }
     }
 
     
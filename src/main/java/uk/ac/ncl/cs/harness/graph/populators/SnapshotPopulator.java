@@ -0,0 +1,85 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph.populators;
+
+import java.io.File;
+import java.io.IOException;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.extsupport.Extension;
+import uk.ac.ncl.cs.harness.extsupport.ExtensionProperty;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.io.GraphSnapshot;
+
+/**
+ * This is a graph populator that loads a previously saved template graph from
+ * a binary snapshot file (see <code>GraphSnapshot</code>). The file is mapped
+ * into memory and decoded in place, and the graph is filled through its bulk
+ * methods, so loading a snapshot is much cheaper than generating the graph anew.
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+@Extension(id="snapshot")
+public final class SnapshotPopulator implements GraphPopulator {
+
+    /**
+     * the snapshot file
+     */
+    private String file;
+
+    /**
+     * gets the snapshot file name.
+     * @return the snapshot file name.
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * sets the snapshot file name.
+     * @param file the snapshot file name.
+     */
+    @ExtensionProperty(id="file")
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * populates the graph with the contents of the snapshot file.
+     * @param graph the graph to populate.
+     * @throws GraphException if the snapshot cannot be read.
+     */
+    @Override
+    public void populate(Graph graph) {
+        try {
+            GraphSnapshot.read(new File(file), graph);
+        } catch (IOException ex) {
+            throw new GraphException("Unable to load graph snapshot "+file, ex);
+        }
+    }
+
+    /**
+     * returns a string summarising the current configuration.
+     * @return a string summarising the current configuration.
+     */
+    @Override
+    public String configSummary() {
+        return "\"" + this.getClass().getSimpleName() +
+                "\" {file: " + file + "}";
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph.populators;
+
+import cern.jet.random.Uniform;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.extsupport.Extension;
+import uk.ac.ncl.cs.harness.extsupport.ExtensionProperty;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.graph.NodeDictionary;
+import uk.ac.ncl.cs.harness.stats.RandomEngineRegistry;
+
+/**
+ * <p>This is a graph populator that generates networks with explicit modular
+ * structure according to a stochastic block model. The nodes are partitioned
+ * into consecutive blocks of given sizes, and each pair of nodes is connected
+ * independently with the probability given for their pair of blocks.</p>
+ *
+ * <p>The block sizes are given as a comma-separated list, e.g.
+ * <code>"100,200,50"</code>. The probabilities are given as a symmetric matrix
+ * with rows separated by semicolons and entries by commas, e.g.
+ * <code>"0.1,0.01,0;0.01,0.2,0.01;0,0.01,0.3"</code>. Each block pair is
+ * sampled with geometric skips (see <code>EdgeSampler</code>), so the cost
+ * is proportional to the number of edges rather than to the number of pairs.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+@Extension(id="sbm")
+public final class StochasticBlockPopulator implements GraphPopulator {
+
+    private Uniform uniform = new Uniform(RandomEngineRegistry.getEngine());
+
+    /**
+     * the sizes of the blocks
+     */
+    private int[] blockSizes = new int[0];
+
+    /**
+     * the edge probability for each pair of blocks
+     */
+    private double[][] probabilities = new double[0][0];
+
+    /**
+     * gets the block sizes.
+     * @return the block sizes as a comma-separated list.
+     */
+    public String getBlockSizes() {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < blockSizes.length; i++) {
+            b.append(i == 0 ? "" : ",").append(blockSizes[i]);
+        }
+        return b.toString();
+    }
+
+    /**
+     * sets the block sizes.
+     * @param blockSizes the block sizes as a comma-separated list.
+     * @throws IllegalArgumentException if the list is malformed or contains
+     * negative sizes.
+     */
+    @ExtensionProperty(id="blockSizes")
+    public void setBlockSizes(String blockSizes) throws IllegalArgumentException {
+        String[] fields = blockSizes.trim().split("\\s*,\\s*");
+        int[] sizes = new int[fields.length];
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                sizes[i] = Integer.parseInt(fields[i]);
+                if (sizes[i] < 0) {
+                    throw new IllegalArgumentException("Negative block size: "+sizes[i]);
+                }
+            }
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Malformed block sizes: "+blockSizes, ex);
+        }
+        this.blockSizes = sizes;
+    }
+
+    /**
+     * gets the block pair probabilities.
+     * @return the probability matrix, rows separated by semicolons.
+     */
+    public String getProbabilities() {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < probabilities.length; i++) {
+            b.append(i == 0 ? "" : ";");
+            for (int j = 0; j < probabilities[i].length; j++) {
+                b.append(j == 0 ? "" : ",").append(probabilities[i][j]);
+            }
+        }
+        return b.toString();
+    }
+
+    /**
+     * sets the block pair probabilities.
+     * @param probabilities a symmetric probability matrix, rows separated by
+     * semicolons and entries by commas.
+     * @throws IllegalArgumentException if the matrix is malformed, not square,
+     * not symmetric or contains values outside [0,1].
+     */
+    @ExtensionProperty(id="probabilities")
+    public void setProbabilities(String probabilities) throws IllegalArgumentException {
+        String[] rows = probabilities.trim().split("\\s*;\\s*");
+        double[][] matrix = new double[rows.length][];
+        try {
+            for (int i = 0; i < rows.length; i++) {
+                String[] fields = rows[i].split("\\s*,\\s*");
+                if (fields.length != rows.length) {
+                    throw new IllegalArgumentException("Probability matrix is not square: "+probabilities);
+                }
+                matrix[i] = new double[fields.length];
+                for (int j = 0; j < fields.length; j++) {
+                    matrix[i][j] = Double.parseDouble(fields[j]);
+                    if (matrix[i][j] < 0.0 || matrix[i][j] > 1.0) {
+                        throw new IllegalArgumentException(
+                                "Precondition violation: 0 <= p <= 1 in "+probabilities);
+                    }
+                }
+            }
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Malformed probability matrix: "+probabilities, ex);
+        }
+        for (int i = 0; i < rows.length; i++) {
+            for (int j = 0; j < i; j++) {
+                if (matrix[i][j] != matrix[j][i]) {
+                    throw new IllegalArgumentException("Probability matrix is not symmetric: "+probabilities);
+                }
+            }
+        }
+        this.probabilities = matrix;
+    }
+
+    /**
+     * populates the graph according to the block model.
+     * @param graph the graph to populate.
+     * @throws GraphException if the number of blocks and the size of the
+     * probability matrix differ, or if the graph would have too many edges.
+     */
+    @Override
+    public void populate(Graph graph) {
+
+        int k = blockSizes.length;
+        if (probabilities.length != k) {
+            throw new GraphException("Stochastic block model has "+k
+                    +" blocks but a "+probabilities.length+"x"+probabilities.length+" probability matrix.");
+        }
+
+        //block boundaries
+        int[] starts = new int[k + 1];
+        for (int i = 0; i < k; i++) {
+            starts[i + 1] = starts[i] + blockSizes[i];
+        }
+        int n = starts[k];
+
+        double expected = 0.0;
+        for (int i = 0; i < k; i++) {
+            expected += probabilities[i][i] * ((double) blockSizes[i] * (blockSizes[i] - 1) / 2);
+            for (int j = 0; j < i; j++) {
+                expected += probabilities[i][j] * ((double) blockSizes[i] * blockSizes[j]);
+            }
+        }
+
+        EdgeSampler sampler = new EdgeSampler(uniform, expected);
+
+        //create nodes
+        NodeDictionary dictionary = graph.getNodeDictionary();
+        int[] ordinals = new int[n];
+        for (int v = 0; v < n; v++) {
+            ordinals[v] = dictionary.ordinalOf(graph.createNode(v + 1));
+        }
+
+        for (int i = 0; i < k; i++) {
+            sampler.sampleWithin(ordinals, starts[i], starts[i + 1], probabilities[i][i]);
+            for (int j = 0; j < i; j++) {
+                sampler.sampleBetween(ordinals, starts[i], starts[i + 1],
+                        starts[j], starts[j + 1], probabilities[i][j]);
+            }
+        }
+        sampler.addTo(graph);
+    }
+
+    /**
+     * returns a string summarising the current configuration.
+     * @return a string summarising the current configuration.
+     */
+    @Override
+    public String configSummary() {
+        return "\"" + this.getClass().getSimpleName() +
+                "\" {blocks: " + getBlockSizes() + "; probabilities: " + getProbabilities() + "}";
+    }
+
+}
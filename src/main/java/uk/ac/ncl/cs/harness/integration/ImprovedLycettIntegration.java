@@ -191,16 +191,20 @@ public final class ImprovedLycettIntegration extends IntegrationMethod {
      */
     private void combineGoldStandards() {
 
-        for (Edge edge : getIntegratedGraph().getEdges()) {
+        int numEdges = getIntegratedGraph().getNumEdges();
+        EdgeAttributes attributes = getIntegratedGraph().getEdgeAttributes();
 
-            double pComb = 0.0;
-            for (Probability p : edge.getProbabilities()) {
-                pComb += p.getValue();
+        //every gold standard has a value for every edge, so its column can be scanned
+        double[] pComb = new double[numEdges];
+        for (Graph goldStandard : goldStandards) {
+            double[] column = attributes.getColumn(goldStandard.getName());
+            for (int i = 0; i < numEdges; i++) {
+                pComb[i] += column[i];
             }
-            pComb /= edge.getProbabilities().size();
-
-            edge.addProbability(Probability.MAIN_KEY, pComb);
+        }
 
+        for (int i = 0; i < numEdges; i++) {
+            attributes.set(Probability.MAIN_KEY, i, pComb[i] / goldStandards.size());
         }
 
     }
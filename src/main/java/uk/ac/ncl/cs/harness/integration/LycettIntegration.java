@@ -17,8 +17,8 @@
 
 package uk.ac.ncl.cs.harness.integration;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import uk.ac.ncl.cs.harness.extsupport.Extension;
@@ -141,16 +141,21 @@ public final class LycettIntegration extends IntegrationMethod {
      */
     private void combineGoldStandards() {
 
-        for (Edge edge : getIntegratedGraph().getEdges()) {
+        int numEdges = getIntegratedGraph().getNumEdges();
+        EdgeAttributes attributes = getIntegratedGraph().getEdgeAttributes();
 
-            double pComb = 1.0;
-            for (Probability p : edge.getProbabilities()) {
-                pComb *= 1.0 - p.getValue();
+        //every gold standard has a value for every edge, so its column can be scanned
+        double[] pNotComb = new double[numEdges];
+        Arrays.fill(pNotComb, 1.0);
+        for (Graph goldStandard : goldStandards) {
+            double[] column = attributes.getColumn(goldStandard.getName());
+            for (int i = 0; i < numEdges; i++) {
+                pNotComb[i] *= 1.0 - column[i];
             }
-            pComb = 1.0 - pComb;
-
-            edge.addProbability(Probability.MAIN_KEY, pComb);
+        }
 
+        for (int i = 0; i < numEdges; i++) {
+            attributes.set(Probability.MAIN_KEY, i, 1.0 - pNotComb[i]);
         }
 
     }
@@ -164,10 +169,7 @@ public final class LycettIntegration extends IntegrationMethod {
      */
     private int intersectionCount(Graph g1, Graph g2) {
 
-        Set<Edge> intersection = new HashSet<Edge>(g1.getEdges());
-        intersection.retainAll(g2.getEdges());
-
-        return intersection.size();
+        return g1.intersectionCount(g2);
     }
 
     /**
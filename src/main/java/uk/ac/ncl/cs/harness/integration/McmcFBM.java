@@ -29,7 +29,9 @@ import uk.ac.ncl.cs.harness.extsupport.ExtensionProperty;
 import uk.ac.ncl.cs.harness.graph.Edge;
 import uk.ac.ncl.cs.harness.graph.Graph;
 import uk.ac.ncl.cs.harness.graph.Node;
+import uk.ac.ncl.cs.harness.graph.NodeDictionary;
 import uk.ac.ncl.cs.harness.graph.Probability;
+import uk.ac.ncl.cs.harness.graph.RoaringGraph;
 import uk.ac.ncl.cs.harness.integration.ebm.BurnIn;
 import uk.ac.ncl.cs.harness.integration.ebm.EdgeAverager;
 import uk.ac.ncl.cs.harness.integration.ebm.ErrorRates;
@@ -37,6 +39,7 @@ import uk.ac.ncl.cs.harness.integration.ebm.RateAverager;
 import uk.ac.ncl.cs.harness.io.OutputController;
 import uk.ac.ncl.cs.harness.stats.ErrorGauge;
 import uk.ac.ncl.cs.harness.stats.RandomEngineRegistry;
+import uk.ac.ncl.cs.harness.util.PairBitmap;
 import uk.ac.ncl.cs.harness.util.SetOfTwo;
 
 /**
@@ -65,6 +68,18 @@ public final class McmcFBM extends IntegrationMethod {
      */
     private Set<Edge> intermediateGraph = new HashSet<Edge>(1024);
 
+    /**
+     * Pair indices of the consensus graph edges, mirroring <code>intermediateGraph</code>
+     * for the evidential graphs in <code>bitmapGraphs</code>.
+     */
+    private PairBitmap intermediatePairs = new PairBitmap();
+
+    /**
+     * Evidential graphs whose error rates can be counted directly against
+     * <code>intermediatePairs</code>.
+     */
+    private Set<Graph> bitmapGraphs = new HashSet<Graph>();
+
     /**
      * Beta distributed sampler
      */
@@ -217,6 +232,9 @@ public final class McmcFBM extends IntegrationMethod {
         //generate consensus graph
         performUnion();
 
+        //find evidential graphs that can be compared to the consensus graph by bitmap
+        findBitmapGraphs();
+
         //calculate inital error rates ("theta") for each input graph
         initErrorRates();
 
@@ -338,6 +356,33 @@ public final class McmcFBM extends IntegrationMethod {
         return graph.contains(nodes.getA()) && graph.contains(nodes.getB());
     }
 
+    /**
+     * Collects the evidential graphs that are roaring graphs over the consensus
+     * graph's node dictionary and cover all of its nodes. Their error rates
+     * can be counted on the compressed bitmaps.
+     */
+    private void findBitmapGraphs() {
+        bitmapGraphs.clear();
+        intermediatePairs = new PairBitmap();
+        for (Graph eviGraph : evidentialGraphs) {
+            //the consensus graph holds the union of all nodes, so equal counts mean equal node sets
+            if (eviGraph instanceof RoaringGraph
+                    && eviGraph.getNodeDictionary() == integratedGraph.getNodeDictionary()
+                    && eviGraph.getNumNodes() == integratedGraph.getNumNodes()) {
+                bitmapGraphs.add(eviGraph);
+            }
+        }
+    }
+
+    /**
+     * returns the pair index of the given edge over the consensus graph's node dictionary.
+     */
+    private long pairIndex(Edge edge) {
+        NodeDictionary dictionary = integratedGraph.getNodeDictionary();
+        SetOfTwo<Node> nodes = edge.getConnectedNodes();
+        return PairBitmap.index(dictionary.ordinalOf(nodes.getA()), dictionary.ordinalOf(nodes.getB()));
+    }
+
 
 //    private Map<Edge, boolean[]> edge2Graphs = new HashMap<Edge, boolean[]>();
 //    private boolean[] graphsForEdge(Edge edge) {
@@ -361,7 +406,9 @@ public final class McmcFBM extends IntegrationMethod {
 
         for (Graph eviGraph : evidentialGraphs) {
             
-            double[] err = ErrorGauge.calculate(eviGraph, intermediateGraph);
+            double[] err = bitmapGraphs.contains(eviGraph) ?
+                ErrorGauge.calculate((RoaringGraph) eviGraph, intermediatePairs) :
+                ErrorGauge.calculate(eviGraph, intermediateGraph);
 
             //sample false postive rate from beta and calculate its density value
             beta.setState(err[ErrorGauge.FP]+fpOffset, err[ErrorGauge.TN]+tnOffset);
@@ -405,9 +452,13 @@ public final class McmcFBM extends IntegrationMethod {
             //if uniform random > p(edge) create it otherwise remove it
             double p = probabilities.get(edge);
             if (uniform.nextDouble() < p) {
-                intermediateGraph.add(edge);
+                if (intermediateGraph.add(edge) && !bitmapGraphs.isEmpty()) {
+                    intermediatePairs.add(pairIndex(edge));
+                }
             } else {
-                intermediateGraph.remove(edge);
+                if (intermediateGraph.remove(edge) && !bitmapGraphs.isEmpty()) {
+                    intermediatePairs.remove(pairIndex(edge));
+                }
             }
         }
     }
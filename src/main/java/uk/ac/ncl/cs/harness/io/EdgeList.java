@@ -0,0 +1,357 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import uk.ac.ncl.cs.harness.graph.Graph;
+
+/**
+ * <p>An immutable edge list parsed from a delimited text file, such as a TSV or
+ * CSV export of a protein interaction network. Once parsed, the same edge list
+ * can populate any number of graphs.</p>
+ *
+ * <p>Each line holds an edge as its first two fields; further fields are
+ * ignored. Fields are separated by tabs, commas, semicolons or spaces and may
+ * be enclosed in double quotes, which must not contain separators. Empty lines
+ * and lines starting with <code>#</code> are skipped, as are lines with fewer
+ * than two fields.</p>
+ *
+ * <p>The file is mapped into memory and scanned byte by byte. Node ids are
+ * interned in a hash table over the mapped bytes, so a <code>String</code> is
+ * only created for each distinct node, not for each line. Node positions are
+ * dense, in order of first appearance.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+public final class EdgeList {
+
+    /**
+     * the charset of the input files.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * the distinct node ids in order of first appearance.
+     */
+    private final String[] ids;
+
+    /**
+     * the node positions of the first and second end of each edge.
+     */
+    private final int[] a, b;
+
+    /**
+     * the number of malformed lines that were skipped.
+     */
+    private final int skippedLines;
+
+    /**
+     * constructor.
+     */
+    private EdgeList(String[] ids, int[] a, int[] b, int skippedLines) {
+        this.ids = ids;
+        this.a = a;
+        this.b = b;
+        this.skippedLines = skippedLines;
+    }
+
+    /**
+     * maps an edge list file into memory and parses it.
+     * @param file the edge list file
+     * @param header whether the first line is a header to be skipped.
+     * @return the parsed edge list.
+     * @throws IOException if the file cannot be read.
+     */
+    public static EdgeList read(File file, boolean header) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Edge list "+file+" exceeds 2GB.");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return parse(buffer, header);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * parses an edge list from the given buffer, from its position to its limit.
+     * The buffer's position is left unchanged.
+     * @param buffer the UTF-8 encoded edge list
+     * @param header whether the first line is a header to be skipped.
+     * @return the parsed edge list.
+     */
+    public static EdgeList parse(ByteBuffer buffer, boolean header) {
+
+        TokenTable table = new TokenTable(buffer);
+        int[] a = new int[1024], b = new int[1024];
+        int numEdges = 0;
+        int skipped = 0;
+
+        int limit = buffer.limit();
+        int p = buffer.position();
+        if (header) {
+            //the header is the first line, even if it looks like a comment
+            while (p < limit && buffer.get(p) != '\n') {
+                p++;
+            }
+            p++;
+        }
+        while (p < limit) {
+
+            //field bounds of the first two fields
+            int start1 = -1, end1 = -1, start2 = -1, end2 = -1;
+            int fields = 0;
+
+            if (buffer.get(p) == '#') {
+                //comment
+                while (p < limit && buffer.get(p) != '\n') {
+                    p++;
+                }
+            } else {
+                while (p < limit && buffer.get(p) != '\n') {
+                    byte c = buffer.get(p);
+                    if (isSeparator(c)) {
+                        p++;
+                        continue;
+                    }
+                    int start = p;
+                    while (p < limit && buffer.get(p) != '\n' && !isSeparator(buffer.get(p))) {
+                        p++;
+                    }
+                    if (fields == 0) {
+                        start1 = start;
+                        end1 = p;
+                    } else if (fields == 1) {
+                        start2 = start;
+                        end2 = p;
+                    }
+                    fields++;
+                }
+            }
+            //skip the line break
+            p++;
+
+            if (fields == 0) {
+                continue;
+            }
+            if (fields < 2) {
+                skipped++;
+                continue;
+            }
+
+            if (numEdges == a.length) {
+                a = Arrays.copyOf(a, numEdges * 2);
+                b = Arrays.copyOf(b, numEdges * 2);
+            }
+            a[numEdges] = table.intern(start1, end1);
+            b[numEdges++] = table.intern(start2, end2);
+        }
+
+        return new EdgeList(table.ids(), Arrays.copyOf(a, numEdges),
+                Arrays.copyOf(b, numEdges), skipped);
+    }
+
+    /**
+     * returns whether the given byte separates fields.
+     */
+    private static boolean isSeparator(byte c) {
+        return c == '\t' || c == ',' || c == ';' || c == ' ' || c == '\r';
+    }
+
+    /**
+     * gets the number of distinct nodes.
+     * @return the number of distinct nodes.
+     */
+    public int getNumNodes() {
+        return ids.length;
+    }
+
+    /**
+     * gets the number of edge lines, including repeated edges.
+     * @return the number of edge lines.
+     */
+    public int getNumEdges() {
+        return a.length;
+    }
+
+    /**
+     * gets the number of malformed lines that were skipped while parsing.
+     * @return the number of skipped lines.
+     */
+    public int getSkippedLines() {
+        return skippedLines;
+    }
+
+    /**
+     * creates all nodes and edges of this edge list in the given graph, using
+     * the graph's bulk methods.
+     * @param graph the (usually empty) graph to populate.
+     * @return the number of repeated edges that were skipped.
+     */
+    public int populate(Graph graph) {
+        int[] ordinals = graph.addNodes(ids);
+        int[] ordA = new int[a.length], ordB = new int[b.length];
+        for (int i = 0; i < a.length; i++) {
+            ordA[i] = ordinals[a[i]];
+            ordB[i] = ordinals[b[i]];
+        }
+        return graph.addEdges(ordA, ordB);
+    }
+
+    /**
+     * An open addressing hash table that interns fields by their bytes in the
+     * buffer, assigning dense positions.
+     */
+    private static final class TokenTable {
+
+        private final ByteBuffer buffer;
+
+        /**
+         * position + 1 of the token in each slot; 0 marks a free slot.
+         */
+        private int[] slots = new int[1024];
+
+        /**
+         * the start, end and hash of each token, by position.
+         */
+        private int[] starts = new int[512], ends = new int[512], hashes = new int[512];
+
+        /**
+         * the ids of the tokens, by position.
+         */
+        private String[] ids = new String[512];
+
+        private int size = 0;
+
+        private byte[] scratch = new byte[64];
+
+        TokenTable(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * returns the position of the field between start and end, adding it
+         * to the table if it is new. Enclosing double quotes are removed.
+         */
+        int intern(int start, int end) {
+            if (end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"') {
+                start++;
+                end--;
+            }
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+            int mask = slots.length - 1;
+            int slot = slotOf(hash);
+            while (slots[slot] != 0) {
+                int position = slots[slot] - 1;
+                if (hashes[position] == hash && sameBytes(starts[position], ends[position], start, end)) {
+                    return position;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return add(slot, start, end, hash);
+        }
+
+        /**
+         * stores a new token in the given free slot.
+         */
+        private int add(int slot, int start, int end, int hash) {
+            int position = size++;
+            if (position == starts.length) {
+                starts = Arrays.copyOf(starts, position * 2);
+                ends = Arrays.copyOf(ends, position * 2);
+                hashes = Arrays.copyOf(hashes, position * 2);
+                ids = Arrays.copyOf(ids, position * 2);
+            }
+            starts[position] = start;
+            ends[position] = end;
+            hashes[position] = hash;
+            int length = end - start;
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, 2 * scratch.length)];
+            }
+            for (int i = 0; i < length; i++) {
+                scratch[i] = buffer.get(start + i);
+            }
+            ids[position] = new String(scratch, 0, length, UTF8);
+            slots[slot] = position + 1;
+            if (2 * size > slots.length) {
+                rehash();
+            }
+            return position;
+        }
+
+        /**
+         * doubles the number of slots.
+         */
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int position = 0; position < size; position++) {
+                int slot = slotOf(hashes[position]);
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = position + 1;
+            }
+        }
+
+        /**
+         * returns the home slot of a hash, taken from the high bits of its
+         * multiplicative mix.
+         */
+        private int slotOf(int hash) {
+            return (hash * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(slots.length));
+        }
+
+        /**
+         * compares two byte ranges of the buffer.
+         */
+        private boolean sameBytes(int start1, int end1, int start2, int end2) {
+            if (end1 - start1 != end2 - start2) {
+                return false;
+            }
+            for (int i = 0; i < end1 - start1; i++) {
+                if (buffer.get(start1 + i) != buffer.get(start2 + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * returns the ids of all tokens, by position.
+         */
+        String[] ids() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+
+}
@@ -0,0 +1,277 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.graph.NeighbourVisitor;
+import uk.ac.ncl.cs.harness.graph.Node;
+import uk.ac.ncl.cs.harness.graph.NodeDictionary;
+
+/**
+ * <p>Reads and writes graphs in a compact binary snapshot format, so that
+ * template graphs can be generated once and reused across workflow runs.</p>
+ *
+ * <p>A snapshot consists of
+ * <ol>
+ * <li>a header: the magic number <code>HGS1</code> followed by the number of
+ * nodes and the number of edges as 32-bit big-endian integers,</li>
+ * <li>the node ids, each as a varint byte length followed by its UTF-8 bytes,</li>
+ * <li>the adjacency: for each node <code>i</code> (in the order of the id table)
+ * the number of its neighbours <code>j &ge; i</code> as a varint, followed by the
+ * ascending neighbour positions, delta-encoded as varints relative to
+ * <code>i</code> and to each other. Every edge is thus stored exactly once.</li>
+ * <li>a CRC32 checksum of all preceding bytes as a 32-bit big-endian integer.</li>
+ * </ol>
+ * Varints use 7 bits per byte, least significant group first. Edge
+ * probabilities are not part of a snapshot.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+public final class GraphSnapshot {
+
+    /**
+     * magic number: "HGS1".
+     */
+    private static final int MAGIC = 0x48475331;
+
+    /**
+     * size of the header in bytes.
+     */
+    private static final int HEADER_SIZE = 12;
+
+    /**
+     * no instances.
+     */
+    private GraphSnapshot() {
+    }
+
+    /**
+     * writes a snapshot of the given graph to a file.
+     * @param graph the graph to save
+     * @param file the target file
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(Graph graph, File file) throws IOException {
+
+        final NodeDictionary dictionary = graph.getNodeDictionary();
+
+        //number the nodes by their position in the id table
+        int numNodes = graph.getNumNodes();
+        final int[] ordinals = new int[numNodes];
+        final int[] positions = new int[dictionary.size()];
+        int p = 0;
+        for (Node node : graph.getNodes()) {
+            int ordinal = dictionary.ordinalOf(node);
+            ordinals[p] = ordinal;
+            positions[ordinal] = p++;
+        }
+
+        CRC32 crc = new CRC32();
+        OutputStream fileOut = new FileOutputStream(file);
+        try {
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(fileOut, 1 << 16), crc));
+
+            out.writeInt(MAGIC);
+            out.writeInt(numNodes);
+            out.writeInt(graph.getNumEdges());
+
+            for (int i = 0; i < numNodes; i++) {
+                byte[] id = dictionary.getId(ordinals[i]).getBytes("UTF-8");
+                writeVarint(out, id.length);
+                out.write(id);
+            }
+
+            //collects the neighbour positions of the current node
+            final int[][] buffer = {new int[16]};
+            final int[] size = new int[1];
+            for (int i = 0; i < numNodes; i++) {
+                final int self = i;
+                size[0] = 0;
+                graph.forEachNeighbour(ordinals[i], new NeighbourVisitor() {
+                    @Override
+                    public void visit(int neighbour, int edge) {
+                        int pos = positions[neighbour];
+                        if (pos >= self) {
+                            if (size[0] == buffer[0].length) {
+                                buffer[0] = Arrays.copyOf(buffer[0], size[0] * 2);
+                            }
+                            buffer[0][size[0]++] = pos;
+                        }
+                    }
+                });
+                int[] neighbours = buffer[0];
+                Arrays.sort(neighbours, 0, size[0]);
+                writeVarint(out, size[0]);
+                int previous = i;
+                for (int k = 0; k < size[0]; k++) {
+                    writeVarint(out, neighbours[k] - previous);
+                    previous = neighbours[k];
+                }
+            }
+
+            out.flush();
+            //the checksum itself is written past the checked stream
+            DataOutputStream trailer = new DataOutputStream(fileOut);
+            trailer.writeInt((int) crc.getValue());
+            trailer.flush();
+        } finally {
+            fileOut.close();
+        }
+    }
+
+    /**
+     * maps a snapshot file into memory and loads it into the given graph.
+     * @param file the snapshot file
+     * @param graph the (usually empty) graph to populate
+     * @throws IOException if the file cannot be read or is not a valid snapshot.
+     */
+    public static void read(File file, Graph graph) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            read(buffer, graph);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * loads a snapshot from the given buffer into the given graph. The buffer
+     * is decoded in place, from its position to its limit. Nodes and edges are
+     * created through the bulk methods of the graph.
+     * @param buffer the snapshot data
+     * @param graph the (usually empty) graph to populate
+     * @throws IOException if the data is not a valid snapshot.
+     */
+    public static void read(ByteBuffer buffer, Graph graph) throws IOException {
+
+        ByteBuffer data = buffer.slice();
+        if (data.remaining() < HEADER_SIZE + 4) {
+            throw new IOException("Snapshot is truncated.");
+        }
+        verifyChecksum(data);
+        data.limit(data.limit() - 4);
+
+        if (data.getInt() != MAGIC) {
+            throw new IOException("Not a graph snapshot.");
+        }
+        int numNodes = data.getInt();
+        int numEdges = data.getInt();
+        if (numNodes < 0 || numEdges < 0) {
+            throw new IOException("Corrupt snapshot header.");
+        }
+
+        try {
+            String[] ids = new String[numNodes];
+            byte[] bytes = new byte[64];
+            for (int i = 0; i < numNodes; i++) {
+                int length = readVarint(data);
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, 2 * bytes.length)];
+                }
+                data.get(bytes, 0, length);
+                ids[i] = new String(bytes, 0, length, "UTF-8");
+            }
+            int[] ordinals = graph.addNodes(ids);
+
+            int[] a = new int[numEdges], b = new int[numEdges];
+            int e = 0;
+            for (int i = 0; i < numNodes; i++) {
+                int count = readVarint(data);
+                int neighbour = i;
+                for (int k = 0; k < count; k++) {
+                    neighbour += readVarint(data);
+                    a[e] = ordinals[i];
+                    b[e++] = ordinals[neighbour];
+                }
+            }
+            if (e != numEdges || data.hasRemaining()) {
+                throw new IOException("Snapshot declares "+numEdges+" edges but contains "+e+".");
+            }
+            graph.addEdges(a, b);
+
+        } catch (IndexOutOfBoundsException ex) {
+            throw new IOException("Corrupt snapshot: "+ex.getMessage());
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("Snapshot is truncated.");
+        }
+    }
+
+    /**
+     * compares the trailing checksum with the CRC32 of the preceding bytes,
+     * leaving the buffer's position unchanged.
+     */
+    private static void verifyChecksum(ByteBuffer data) throws IOException {
+        int end = data.limit() - 4;
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[1 << 16];
+        ByteBuffer view = data.duplicate();
+        view.limit(end);
+        while (view.hasRemaining()) {
+            int n = Math.min(chunk.length, view.remaining());
+            view.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+        if ((int) crc.getValue() != data.getInt(end)) {
+            throw new IOException("Snapshot checksum mismatch.");
+        }
+    }
+
+    /**
+     * writes an unsigned varint.
+     */
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * reads an unsigned varint.
+     */
+    private static int readVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in snapshot.");
+    }
+
+}
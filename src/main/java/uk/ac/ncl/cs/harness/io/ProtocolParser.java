@@ -129,9 +129,10 @@ public class ProtocolParser {
             vars = parseVariables(protocolXML.getChild("variables",ns));
             protocol.setVariables(vars);
 
-            String graphImplementation = protocolXML.getChild(
-                    "graphImplementation",ns).getAttributeValue("type");
-            protocol.setGraphImplementation(graphImplementation);
+            Element graphImplementationXML = protocolXML.getChild("graphImplementation",ns);
+            protocol.setGraphImplementation(graphImplementationXML.getAttributeValue("type"));
+            protocol.setExperimentOverlays(Boolean.parseBoolean(
+                    graphImplementationXML.getAttributeValue("experimentOverlays")));
 
             Element populationXML = protocolXML.getChild("graphPopulation",ns);
             Properties populationProps = parseProperties(populationXML
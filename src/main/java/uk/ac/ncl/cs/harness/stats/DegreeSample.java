@@ -53,7 +53,7 @@ public class DegreeSample {
 
         StringBuilder b = new StringBuilder();
         for (Node node : g.getNodes()) {
-            int deg = node.getNeighbours().size();
+            int deg = node.degree();
             b.append(deg).append("\n");
         }
 
@@ -25,6 +25,8 @@ import java.util.Set;
 import uk.ac.ncl.cs.harness.graph.Edge;
 import uk.ac.ncl.cs.harness.graph.Graph;
 import uk.ac.ncl.cs.harness.graph.Node;
+import uk.ac.ncl.cs.harness.graph.RoaringGraph;
+import uk.ac.ncl.cs.harness.util.PairBitmap;
 import uk.ac.ncl.cs.harness.util.SetOfTwo;
 
 /**
@@ -55,7 +57,21 @@ public class ErrorGauge {
 
 
     public static double[] calculate(Graph graph, Graph trueGraph) {
-        return calculate(graph,trueGraph.getEdges());
+        int tp = graph.intersectionCount(trueGraph);
+        return rates(graph.getNumNodes(), trueGraph.inducedEdgeCount(graph), graph.getNumEdges(), tp);
+    }
+
+    /**
+     * fast path for a roaring graph against true edges given as pair indices
+     * (see <code>PairBitmap.index</code>) over the graph's node dictionary.
+     * The graph must contain all nodes touched by the true edges.
+     * @param graph
+     * @param truePairs
+     * @return
+     */
+    public static double[] calculate(RoaringGraph graph, PairBitmap truePairs) {
+        int tp = graph.intersectionCount(truePairs);
+        return rates(graph.getNumNodes(), (int) truePairs.cardinality(), graph.getNumEdges(), tp);
     }
 
     /**
@@ -77,15 +93,32 @@ public class ErrorGauge {
 
 
         int n = graph.getNumNodes();
-        int all = (n*n - n) / 2;
         int real = realEdges.size();
-        int nreal = all - real;
 
-        Set<Edge> set = new HashSet<Edge>(graph.getEdges());
-        int posEdges = set.size();
+        int posEdges = graph.getNumEdges();
+
+        int tp = 0;
+        for (Edge e : graph.getEdges()) {
+            if (realEdges.contains(e)) {
+                tp++;
+            }
+        }
 
-        set.retainAll(realEdges);
-        int tp = set.size();
+        return rates(n, real, posEdges, tp);
+    }
+
+    /**
+     * derives the error rates and confusion counts.
+     * @param n the number of nodes in the graph
+     * @param real the number of true edges among the graph's nodes
+     * @param posEdges the number of edges in the graph
+     * @param tp the number of true edges in the graph
+     * @return the rates and counts as indexed by the constants of this class.
+     */
+    private static double[] rates(int n, int real, int posEdges, int tp) {
+
+        int all = (n*n - n) / 2;
+        int nreal = all - real;
         int fp = posEdges - tp;
         int fn = real - tp;
         int tn = nreal - fp;
@@ -20,9 +20,7 @@ package uk.ac.ncl.cs.harness.stats;
 import cern.colt.list.DoubleArrayList;
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import uk.ac.ncl.cs.harness.graph.Edge;
 import uk.ac.ncl.cs.harness.graph.Graph;
 import uk.ac.ncl.cs.harness.graph.Probability;
@@ -39,16 +37,14 @@ public class FastROC {
         int all = (v * v - v) / 2;
         int baseNeg = all - integratedGraph.getNumEdges();
 
-        Set<Edge> set = new HashSet<Edge>(integratedGraph.getEdges());// O(|E|)
-        set.retainAll(trueGraph.getEdges());//set = tp  //O(|E|)
-        int baseFN = trueGraph.getNumEdges() - set.size();
+        int baseFN = trueGraph.differenceCount(integratedGraph);//O(|E|)
         int baseTN = baseNeg - baseFN;
 
         DoubleArrayList reals = new DoubleArrayList();
         DoubleArrayList nreals = new DoubleArrayList();
 
         for (Edge e : integratedGraph.getEdges()) {//O(|E|)
-            double p = e.getProbability(Probability.MAIN_KEY).getValue();
+            double p = e.getProbabilityValue(Probability.MAIN_KEY, 0.0);
             if (trueGraph.contains(e)) {
                 reals.add(p);
             } else {
@@ -0,0 +1,65 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.stats;
+
+import cern.jet.random.Uniform;
+
+/**
+ * Draws the distances between successes in a sequence of independent trials
+ * with success probability <code>p</code>. Jumping from success to success
+ * visits a random subset of a large index space, each index with probability
+ * <code>p</code>, at a cost proportional to the size of the subset rather than
+ * the space (Batagelj and Brandes, 2005).
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+public final class GeometricSkip {
+
+    private final Uniform uniform;
+
+    /**
+     * log(1-p)
+     */
+    private final double logQ;
+
+    /**
+     * constructor.
+     * @param uniform the random source
+     * @param p the success probability
+     * @throws IllegalArgumentException if p is not in (0,1].
+     */
+    public GeometricSkip(Uniform uniform, double p) throws IllegalArgumentException {
+        if (!(p > 0.0 && p <= 1.0)) {
+            throw new IllegalArgumentException("Precondition violation: 0 < p <= 1");
+        }
+        this.uniform = uniform;
+        this.logQ = Math.log(1.0 - p);
+    }
+
+    /**
+     * draws the distance to the next success, i.e. one more than the number
+     * of failures skipped. Huge distances are capped at <code>Long.MAX_VALUE / 2</code>,
+     * so that adding one to an index below that bound cannot overflow.
+     * @return the distance, at least 1.
+     */
+    public long next() {
+        double skipped = Math.floor(Math.log(1.0 - uniform.nextDouble()) / logQ);
+        return 1 + (skipped >= Long.MAX_VALUE / 2 ? Long.MAX_VALUE / 2 : (long) skipped);
+    }
+
+}
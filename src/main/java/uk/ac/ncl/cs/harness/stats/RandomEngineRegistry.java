@@ -33,7 +33,7 @@ public class RandomEngineRegistry {
 
     private static Map<Thread,RandomEngine> engines = new HashMap<Thread, RandomEngine>(128);
 
-    public static RandomEngine getEngine() {
+    public static synchronized RandomEngine getEngine() {
         Thread t = Thread.currentThread();
         RandomEngine engine = engines.get(t);
         if (engine == null) {
@@ -43,7 +43,7 @@ public class RandomEngineRegistry {
         return engine;
     }
 
-    public static void deregister() {
+    public static synchronized void deregister() {
         Thread t = Thread.currentThread();
         engines.remove(t);
     }
@@ -18,8 +18,6 @@
 package uk.ac.ncl.cs.harness.stats;
 
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
 import uk.ac.ncl.cs.harness.graph.Edge;
 import uk.ac.ncl.cs.harness.graph.Graph;
 import uk.ac.ncl.cs.harness.graph.Probability;
@@ -68,13 +66,12 @@ public class ResultDistribution {
 
         }
 
-        Set<Edge> missing  = new HashSet<Edge>(trueGraph.getEdges());
-        missing.removeAll(resultGraph.getEdges());
-        real[0]+= missing.size();
+        int missing = trueGraph.differenceCount(resultGraph);
+        real[0]+= missing;
 
         int n = trueGraph.getNumNodes();
         int all = (n * n - n) / 2;
-        int tn = all - (resultGraph.getNumEdges() + missing.size());
+        int tn = all - (resultGraph.getNumEdges() + missing);
         nreal[0]+=tn;
     }
 
@@ -104,8 +101,7 @@ public class ResultDistribution {
     }
 
     private double probabilityOf(Edge e) {
-        Probability p = e.getProbability(Probability.MAIN_KEY);
-        return p == null ? 0.0 : p.getValue();
+        return e.getProbabilityValue(Probability.MAIN_KEY, 0.0);
     }
 
 
@@ -17,8 +17,6 @@
 
 package uk.ac.ncl.cs.harness.stats;
 
-import java.util.HashSet;
-import java.util.Set;
 import uk.ac.ncl.cs.harness.graph.Edge;
 import uk.ac.ncl.cs.harness.graph.Graph;
 import uk.ac.ncl.cs.harness.graph.Probability;
@@ -37,20 +35,21 @@ public class ResultLossAverager {
         double realLoss = 0.0;
         double nrealLoss = 0.0;
 
+        int found = 0;
+
         for (Edge e : integratedGraph.getEdges()) {
-            Probability pObj = e.getProbability(Probability.MAIN_KEY);
-            double p = pObj == null ? 0.0 : pObj.getValue();
+            double p = e.getProbabilityValue(Probability.MAIN_KEY, 0.0);
             if (trueGraph.contains(e)) {
                 double diff = 1.0 - p;
                 realLoss += diff * diff;
+                found++;
             } else {
                 nrealLoss += p * p;
             }
         }
 
-        Set<Edge> fns = new HashSet<Edge>(trueGraph.getEdges());
-        fns.removeAll(integratedGraph.getEdges());
-        realLoss += fns.size();
+        //true edges missing from the result count with a loss of 1 each
+        realLoss += trueGraph.getNumEdges() - found;
 
         int n = trueGraph.getNumNodes();
         int all = ((n * n) - n) / 2;
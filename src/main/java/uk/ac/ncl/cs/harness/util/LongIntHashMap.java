@@ -0,0 +1,242 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.util;
+
+import java.util.Arrays;
+
+/**
+ * <p>A hash map from primitive <code>long</code> keys to primitive
+ * <code>int</code> values. Entries are stored in two parallel arrays using open
+ * addressing with linear probing, so neither lookups nor insertions allocate
+ * objects.</p>
+ *
+ * <p>The key <code>Long.MIN_VALUE</code> is reserved to mark free slots and
+ * cannot be stored.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+public final class LongIntHashMap {
+
+    /**
+     * returned by <code>get</code> and <code>put</code> if a key is absent.
+     */
+    public static final int NO_VALUE = -1;
+
+    /**
+     * marks a free slot.
+     */
+    private static final long FREE = Long.MIN_VALUE;
+
+    /**
+     * the maximal fill ratio before the table is doubled.
+     */
+    private static final double LOAD_FACTOR = 0.5;
+
+    /**
+     * the keys. free slots contain <code>FREE</code>.
+     */
+    private long[] keys;
+
+    /**
+     * the values matching the keys.
+     */
+    private int[] values;
+
+    /**
+     * the number of stored entries.
+     */
+    private int size;
+
+    /**
+     * the number of entries at which the table is doubled.
+     */
+    private int threshold;
+
+    /**
+     * the number of bits to shift a hash to obtain a slot index.
+     */
+    private int shift;
+
+    /**
+     * creates a map with a small default capacity.
+     */
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    /**
+     * creates a map that can hold the given number of entries without resizing.
+     * @param expectedSize the expected number of entries.
+     */
+    public LongIntHashMap(int expectedSize) {
+        int capacity = 4;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * gets the value stored for the given key.
+     * @param key the key
+     * @return the value, or <code>NO_VALUE</code> if the key is absent.
+     */
+    public int get(long key) {
+        int slot = slotOf(key);
+        return slot < 0 ? NO_VALUE : values[slot];
+    }
+
+    /**
+     * returns whether the map contains the given key.
+     * @param key the key
+     * @return whether the map contains the given key.
+     */
+    public boolean containsKey(long key) {
+        return slotOf(key) >= 0;
+    }
+
+    /**
+     * stores a value under the given key.
+     * @param key the key
+     * @param value the value
+     * @return the previous value, or <code>NO_VALUE</code> if the key was absent.
+     */
+    public int put(long key, int value) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Reserved key: "+key);
+        }
+        int mask = keys.length - 1;
+        int slot = hash(key);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > threshold) {
+            rehash(keys.length << 1);
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * removes the given key.
+     * @param key the key
+     * @return the removed value, or <code>NO_VALUE</code> if the key was absent.
+     */
+    public int remove(long key) {
+        int slot = slotOf(key);
+        if (slot < 0) {
+            return NO_VALUE;
+        }
+        int removed = values[slot];
+        int mask = keys.length - 1;
+
+        //shift back subsequent entries of the probe sequence into the gap
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != FREE) {
+            int home = hash(keys[next]);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = FREE;
+        size--;
+        return removed;
+    }
+
+    /**
+     * gets the number of entries.
+     * @return the number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * removes all entries.
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    /**
+     * finds the slot holding the given key.
+     * @return the slot index, or -1 if the key is absent.
+     */
+    private int slotOf(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key);
+        long k;
+        while ((k = keys[slot]) != FREE) {
+            if (k == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * fibonacci hashing of the key onto the table.
+     */
+    private int hash(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    /**
+     * allocates empty arrays of the given capacity (a power of two).
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        threshold = (int) (capacity * LOAD_FACTOR);
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /**
+     * moves all entries into new arrays of the given capacity.
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = hash(oldKeys[i]);
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * <p>A growable array of <code>int</code>s that lives outside the Java heap, in
+ * memory-mapped temporary files. The array is split into chunks of 2<sup>20</sup>
+ * values (4MB), each in a file of its own that is mapped through
+ * <code>FileChannel.map</code>, so the array is not bound by the 2GB limit of a
+ * single mapping and can grow without copying.</p>
+ *
+ * <p>A mapping stays valid after its channel is closed, so no file is kept
+ * open: each chunk file is closed right after mapping and deleted where the
+ * platform allows it, and otherwise on exit. The operating system reclaims the
+ * space once the mappings are garbage collected; <code>close()</code> drops
+ * them, so this can happen before the array itself is collected. Values are read and written with
+ * absolute buffer operations only, so any number of threads may read the array
+ * concurrently once it is no longer being written.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+public final class MappedIntArray implements Closeable {
+
+    /**
+     * log2 of the number of values per chunk.
+     */
+    private static final int CHUNK_SHIFT = 20;
+
+    /**
+     * number of values per chunk.
+     */
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    /**
+     * bytes per chunk
+     */
+    private static final long CHUNK_BYTES = 4L * CHUNK_SIZE;
+
+    /**
+     * the directory for the chunk files, or null for the default.
+     */
+    private final File directory;
+
+    /**
+     * the mapped chunks.
+     */
+    private IntBuffer[] chunks = new IntBuffer[0];
+
+    /**
+     * creates an empty array backed by temporary files.
+     * @param directory the directory for the backing files, or null for the
+     * system's default temporary directory.
+     * @throws IOException if the directory is not writable.
+     */
+    public MappedIntArray(File directory) throws IOException {
+        if (directory != null && !directory.canWrite()) {
+            throw new IOException("Cannot write to directory "+directory);
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * gets the number of values the array can hold without growing.
+     * @return the capacity.
+     */
+    public long capacity() {
+        return (long) chunks.length << CHUNK_SHIFT;
+    }
+
+    /**
+     * grows the array to hold at least the given number of values. New
+     * values are zero.
+     * @param capacity the required capacity
+     * @throws IOException if a chunk file cannot be created.
+     */
+    public void ensureCapacity(long capacity) throws IOException {
+        int numChunks = (int) ((capacity + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        if (numChunks <= chunks.length) {
+            return;
+        }
+        IntBuffer[] grown = Arrays.copyOf(chunks, numChunks);
+        for (int c = chunks.length; c < numChunks; c++) {
+            grown[c] = mapChunk();
+        }
+        chunks = grown;
+    }
+
+    /**
+     * maps a new chunk file, which is closed again right away.
+     */
+    private IntBuffer mapChunk() throws IOException {
+        File file = File.createTempFile("harness", ".ints", directory);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, CHUNK_BYTES)
+                    .order(ByteOrder.nativeOrder()).asIntBuffer();
+        } finally {
+            raf.close();
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * releases the mapped chunks. The array is empty afterwards and can grow
+     * again.
+     */
+    @Override
+    public void close() {
+        chunks = new IntBuffer[0];
+    }
+
+    /**
+     * gets a value
+     * @param i the position
+     * @return the value at the position.
+     */
+    public int get(long i) {
+        return chunks[(int) (i >>> CHUNK_SHIFT)].get((int) i & (CHUNK_SIZE - 1));
+    }
+
+    /**
+     * sets a value
+     * @param i the position
+     * @param value the new value.
+     */
+    public void set(long i, int value) {
+        chunks[(int) (i >>> CHUNK_SHIFT)].put((int) i & (CHUNK_SIZE - 1), value);
+    }
+
+    /**
+     * adds to a value and returns the value from before.
+     * @param i the position
+     * @param delta the amount to add.
+     * @return the previous value.
+     */
+    public int getAndAdd(long i, int delta) {
+        IntBuffer chunk = chunks[(int) (i >>> CHUNK_SHIFT)];
+        int pos = (int) i & (CHUNK_SIZE - 1);
+        int value = chunk.get(pos);
+        chunk.put(pos, value + delta);
+        return value;
+    }
+
+    /**
+     * searches a sorted range of the array for a value.
+     * @param from the start of the range (inclusive)
+     * @param to the end of the range (exclusive)
+     * @param value the value to look for
+     * @return the position of the value, or -1 if it is absent.
+     */
+    public long binarySearch(long from, long to, int value) {
+        long lo = from, hi = to - 1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            int v = get(mid);
+            if (v < value) {
+                lo = mid + 1;
+            } else if (v > value) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * sets all values in a range to zero.
+     * @param from the start of the range (inclusive)
+     * @param to the end of the range (exclusive)
+     */
+    public void clear(long from, long to) {
+        for (long i = from; i < to; i++) {
+            set(i, 0);
+        }
+    }
+
+}
@@ -0,0 +1,417 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.util;
+
+import java.util.Arrays;
+
+/**
+ * <p>A compressed bitmap over the space of unordered node pairs. The pair of
+ * ordinals <code>i &le; j</code> maps to the index <code>j(j+1)/2 + i</code>
+ * (see <code>index</code>), which covers the diagonal as well.</p>
+ *
+ * <p>Like a Roaring bitmap, the index space is split into chunks of 2<sup>16</sup>
+ * values. Each non-empty chunk is held in a container which is either a sorted
+ * array of its values (for up to 4096 values) or a plain 8KB bitmap. Sparse
+ * graphs thus cost about two bytes per pair, and the intersection of two bitmaps
+ * only visits chunks present in both.</p>
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+public final class PairBitmap {
+
+    /**
+     * maximal number of values held by an array container.
+     */
+    private static final int ARRAY_LIMIT = 4096;
+
+    /**
+     * high bits (index &gt;&gt;&gt; 16) of each container, sorted ascending.
+     */
+    private long[] keys = new long[4];
+
+    /**
+     * containers matching the entries in <code>keys</code>.
+     */
+    private Container[] containers = new Container[4];
+
+    /**
+     * number of containers.
+     */
+    private int numContainers = 0;
+
+    /**
+     * number of values in the bitmap.
+     */
+    private long cardinality = 0;
+
+    /**
+     * returns the index of the unordered pair of the given ordinals.
+     * @param a a node ordinal
+     * @param b another node ordinal
+     * @return the pair index.
+     */
+    public static long index(int a, int b) {
+        int hi = Math.max(a, b), lo = Math.min(a, b);
+        return (long) hi * (hi + 1) / 2 + lo;
+    }
+
+    /**
+     * adds a value to the bitmap
+     * @param value the value
+     * @return whether the value was not yet present.
+     */
+    public boolean add(long value) {
+        long key = value >>> 16;
+        char low = (char) value;
+        int pos = find(key);
+        if (pos < 0) {
+            pos = -pos - 1;
+            insertContainer(pos, key, new ArrayContainer());
+        }
+        Container c = containers[pos];
+        int before = c.cardinality();
+        containers[pos] = c.add(low);
+        if (containers[pos].cardinality() > before) {
+            cardinality++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * removes a value from the bitmap
+     * @param value the value
+     * @return whether the value was present.
+     */
+    public boolean remove(long value) {
+        int pos = find(value >>> 16);
+        if (pos < 0) {
+            return false;
+        }
+        Container c = containers[pos];
+        int before = c.cardinality();
+        c = containers[pos] = c.remove((char) value);
+        if (c.cardinality() == before) {
+            return false;
+        }
+        cardinality--;
+        if (c.cardinality() == 0) {
+            System.arraycopy(keys, pos + 1, keys, pos, numContainers - pos - 1);
+            System.arraycopy(containers, pos + 1, containers, pos, numContainers - pos - 1);
+            containers[--numContainers] = null;
+        }
+        return true;
+    }
+
+    /**
+     * checks whether the bitmap contains a value
+     * @param value the value
+     * @return whether the value is present.
+     */
+    public boolean contains(long value) {
+        int pos = find(value >>> 16);
+        return pos >= 0 && containers[pos].contains((char) value);
+    }
+
+    /**
+     * returns the smallest value in the bitmap that is not smaller than the given one.
+     * @param from the lower bound
+     * @return the next value, or -1 if there is none.
+     */
+    public long nextValue(long from) {
+        int pos = find(from >>> 16);
+        if (pos >= 0) {
+            int low = containers[pos].nextValue((char) from);
+            if (low >= 0) {
+                return (keys[pos] << 16) | low;
+            }
+            pos++;
+        } else {
+            pos = -pos - 1;
+        }
+        //containers are never empty, so the next one starts with a value
+        return pos < numContainers ? (keys[pos] << 16) | containers[pos].nextValue(0) : -1;
+    }
+
+    /**
+     * returns the number of values in the bitmap.
+     * @return the number of values in the bitmap.
+     */
+    public long cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * counts the values present in both this and the other bitmap.
+     * @param other another bitmap
+     * @return the cardinality of the intersection.
+     */
+    public long andCardinality(PairBitmap other) {
+        long count = 0;
+        int i = 0, j = 0;
+        while (i < numContainers && j < other.numContainers) {
+            long k1 = keys[i], k2 = other.keys[j];
+            if (k1 < k2) {
+                i++;
+            } else if (k1 > k2) {
+                j++;
+            } else {
+                count += containers[i++].andCardinality(other.containers[j++]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * counts the values present in this bitmap but not in the other.
+     * @param other another bitmap
+     * @return the cardinality of the difference.
+     */
+    public long andNotCardinality(PairBitmap other) {
+        return cardinality - andCardinality(other);
+    }
+
+    /**
+     * binary search for the container with the given key.
+     * @return the container position, or <code>-(insertion point) - 1</code>.
+     */
+    private int find(long key) {
+        return Arrays.binarySearch(keys, 0, numContainers, key);
+    }
+
+    /**
+     * inserts a new container at the given position.
+     */
+    private void insertContainer(int pos, long key, Container c) {
+        if (numContainers == keys.length) {
+            keys = Arrays.copyOf(keys, numContainers * 2);
+            containers = Arrays.copyOf(containers, numContainers * 2);
+        }
+        System.arraycopy(keys, pos, keys, pos + 1, numContainers - pos);
+        System.arraycopy(containers, pos, containers, pos + 1, numContainers - pos);
+        keys[pos] = key;
+        containers[pos] = c;
+        numContainers++;
+    }
+
+    /**
+     * holds the low 16 bits of all values sharing the same high bits.
+     */
+    private abstract static class Container {
+
+        /**
+         * adds a value.
+         * @return the container to use from now on.
+         */
+        abstract Container add(char low);
+
+        /**
+         * removes a value.
+         * @return the container to use from now on.
+         */
+        abstract Container remove(char low);
+
+        abstract boolean contains(char low);
+
+        abstract int cardinality();
+
+        /**
+         * returns the smallest value not smaller than <code>from</code>, or -1.
+         */
+        abstract int nextValue(int from);
+
+        abstract int andCardinality(Container other);
+    }
+
+    /**
+     * sparse container: a sorted array of values.
+     */
+    private static final class ArrayContainer extends Container {
+
+        private char[] values = new char[4];
+
+        private int size = 0;
+
+        @Override
+        Container add(char low) {
+            int pos = Arrays.binarySearch(values, 0, size, low);
+            if (pos >= 0) {
+                return this;
+            }
+            if (size == ARRAY_LIMIT) {
+                return toBitmap().add(low);
+            }
+            pos = -pos - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(size * 2, ARRAY_LIMIT));
+            }
+            System.arraycopy(values, pos, values, pos + 1, size - pos);
+            values[pos] = low;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            int pos = Arrays.binarySearch(values, 0, size, low);
+            if (pos >= 0) {
+                System.arraycopy(values, pos + 1, values, pos, size - pos - 1);
+                size--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, size, low) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        int nextValue(int from) {
+            int pos = Arrays.binarySearch(values, 0, size, (char) from);
+            pos = pos >= 0 ? pos : -pos - 1;
+            return pos < size ? values[pos] : -1;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.andCardinality(this);
+            }
+            ArrayContainer o = (ArrayContainer) other;
+            int count = 0;
+            int i = 0, j = 0;
+            while (i < size && j < o.size) {
+                char v1 = values[i], v2 = o.values[j];
+                if (v1 < v2) {
+                    i++;
+                } else if (v1 > v2) {
+                    j++;
+                } else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * converts this container into a bitmap container.
+         */
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < size; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    /**
+     * dense container: one bit per possible value.
+     */
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words = new long[1024];
+
+        private int size = 0;
+
+        @Override
+        Container add(char low) {
+            long mask = 1L << low;
+            if ((words[low >>> 6] & mask) == 0) {
+                words[low >>> 6] |= mask;
+                size++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            long mask = 1L << low;
+            if ((words[low >>> 6] & mask) != 0) {
+                words[low >>> 6] &= ~mask;
+                size--;
+                if (size <= ARRAY_LIMIT / 2) {
+                    return toArray();
+                }
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        int nextValue(int from) {
+            int w = from >>> 6;
+            long word = words[w] & (-1L << from);
+            while (word == 0) {
+                if (++w == words.length) {
+                    return -1;
+                }
+                word = words[w];
+            }
+            return (w << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int count = 0;
+            if (other instanceof BitmapContainer) {
+                long[] o = ((BitmapContainer) other).words;
+                for (int i = 0; i < words.length; i++) {
+                    count += Long.bitCount(words[i] & o[i]);
+                }
+            } else {
+                ArrayContainer o = (ArrayContainer) other;
+                for (int i = 0; i < o.size; i++) {
+                    if (contains(o.values[i])) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * converts this container into an array container.
+         */
+        private ArrayContainer toArray() {
+            ArrayContainer array = new ArrayContainer();
+            for (int v = nextValue(0); v >= 0; v = v < 0xFFFF ? nextValue(v + 1) : -1) {
+                array.add((char) v);
+            }
+            return array;
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.util;
+
+import java.util.Arrays;
+
+/**
+ * Static helpers that encode an unordered pair of non-negative node ordinals
+ * as a single primitive <code>long</code>. Like <code>SetOfTwo</code>, the
+ * larger element always comes first, so both orders yield the same key.
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+public final class Pairs {
+
+    /**
+     * no instances.
+     */
+    private Pairs() {
+    }
+
+    /**
+     * packs two node ordinals into a canonical key.
+     * @param i a node ordinal
+     * @param j another node ordinal
+     * @return the key; the larger ordinal occupies the upper 32 bits.
+     */
+    public static long key(int i, int j) {
+        return i >= j ?
+            ((long) i << 32) | j :
+            ((long) j << 32) | i;
+    }
+
+    /**
+     * gets the larger ordinal of a packed pair.
+     * @param key a key created by <code>key(int,int)</code>
+     * @return the larger ordinal.
+     */
+    public static int high(long key) {
+        return (int) (key >>> 32);
+    }
+
+    /**
+     * gets the smaller ordinal of a packed pair.
+     * @param key a key created by <code>key(int,int)</code>
+     * @return the smaller ordinal.
+     */
+    public static int low(long key) {
+        return (int) key;
+    }
+
+    /**
+     * packs the given pairs of node ordinals into keys, sorted ascending and
+     * without duplicates.
+     * @param a the first ordinal of each pair
+     * @param b the second ordinal of each pair
+     * @return the distinct keys in ascending order.
+     * @throws IllegalArgumentException if the arrays differ in length.
+     */
+    public static long[] sortedUniqueKeys(int[] a, int[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Ordinal arrays differ in length: "
+                    +a.length+" vs. "+b.length);
+        }
+        long[] keys = new long[a.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(a[i], b[i]);
+        }
+        Arrays.sort(keys);
+        int unique = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (unique == 0 || keys[i] != keys[unique-1]) {
+                keys[unique++] = keys[i];
+            }
+        }
+        return unique == keys.length ? keys : Arrays.copyOf(keys, unique);
+    }
+
+}
@@ -41,6 +41,12 @@ public class ConcurrentWorkflow {
 
     private int numCpuSlots;
 
+    /**
+     * the number of threads pre-generating template graphs, or 0 if every
+     * workflow thread generates its own.
+     */
+    private int numProducers;
+
     private String[] variableIds;
 
     private StringBuilder results = new StringBuilder();
@@ -50,7 +56,23 @@ public class ConcurrentWorkflow {
      * @param numCpuSlots Number of CPUs to use at the same time.
      */
     public ConcurrentWorkflow(int numCpuSlots) {
+        this(numCpuSlots, 0);
+    }
+
+    /**
+     *
+     * @param numCpuSlots Number of CPUs to use at the same time.
+     * @param numProducers Number of threads pre-generating template graphs
+     * in the background, so that population overlaps with the experiments
+     * and integration of running workflow threads. With 0, every workflow
+     * thread generates its own template.
+     */
+    public ConcurrentWorkflow(int numCpuSlots, int numProducers) {
+        if (numProducers < 0) {
+            throw new IllegalArgumentException("Precondition violation: numProducers >= 0");
+        }
         this.numCpuSlots = numCpuSlots;
+        this.numProducers = numProducers;
     }
 
     
@@ -155,39 +177,56 @@ public class ConcurrentWorkflow {
 
         List<Throwable> errors = Collections.synchronizedList(new LinkedList<Throwable>());
 
-        for (int i = 0; i < protocol.getCycleReplicas(); i++) {
+        //templates are produced ahead of the workflow threads, at most one per slot
+        TemplatePool templates = numProducers > 0 ?
+            new TemplatePool(protocol, numProducers, protocol.getCycleReplicas(), numCpuSlots) :
+            null;
 
-            if (errors.size() > 0) {
-                throw new RuntimeException("Error in workflow thread!", errors.get(0));
-            }
-
-            try {
-                slots.acquire();
-            } catch (InterruptedException ex) {
-                throw new RuntimeException(
-                        "Master thread interrupted. Report this as a bug.",ex);
+        try {
+            if (templates != null) {
+                templates.start();
             }
 
-            WorkflowThread t = new WorkflowThread(protocol, slots, errors, callback, "WorkflowThread#"+IdService.getUniqueId());
-            t.start();
+            for (int i = 0; i < protocol.getCycleReplicas(); i++) {
 
-        }
-
-        //wait until all threads are done.
-        while (slots.availablePermits() < numCpuSlots) {
-            try {
                 if (errors.size() > 0) {
                     throw new RuntimeException("Error in workflow thread!", errors.get(0));
                 }
-                Thread.sleep(200);//FIXME find some better way of waiting here
-            } catch (InterruptedException ex) {
-                throw new RuntimeException(
-                        "Master thread interrupted. Report this as a bug.",ex);
+
+                try {
+                    slots.acquire();
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(
+                            "Master thread interrupted. Report this as a bug.",ex);
+                }
+
+                WorkflowThread t = new WorkflowThread(protocol, slots, errors, callback,
+                        "WorkflowThread#"+IdService.getUniqueId(), templates);
+                t.start();
+
             }
-        }
 
-        if (errors.size() > 0) {
-            throw new RuntimeException("Error in workflow thread!", errors.get(0));
+            //wait until all threads are done.
+            while (slots.availablePermits() < numCpuSlots) {
+                try {
+                    if (errors.size() > 0) {
+                        throw new RuntimeException("Error in workflow thread!", errors.get(0));
+                    }
+                    Thread.sleep(200);//FIXME find some better way of waiting here
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(
+                            "Master thread interrupted. Report this as a bug.",ex);
+                }
+            }
+
+            if (errors.size() > 0) {
+                throw new RuntimeException("Error in workflow thread!", errors.get(0));
+            }
+        } finally {
+            //stops producers that would otherwise wait for workers forever
+            if (templates != null) {
+                templates.close();
+            }
         }
 
         //output results
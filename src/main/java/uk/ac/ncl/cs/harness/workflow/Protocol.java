@@ -48,6 +48,11 @@ public class Protocol {
      */
     private String graphImplementation;
 
+    /**
+     * whether experiment outputs are stored as overlays on the frozen template graph.
+     */
+    private boolean experimentOverlays;
+
     /**
      * properties describing which integration method to use and how to
      * configure it.
@@ -93,6 +98,24 @@ public class Protocol {
         this.graphImplementation = graphImplementation;
     }
 
+    /**
+     * gets whether experiment outputs are stored as overlays on the frozen
+     * template graph.
+     * @return whether to use experiment overlays.
+     */
+    public boolean isExperimentOverlays() {
+        return experimentOverlays;
+    }
+
+    /**
+     * sets whether experiment outputs are stored as overlays on the frozen
+     * template graph.
+     * @param experimentOverlays whether to use experiment overlays.
+     */
+    public void setExperimentOverlays(boolean experimentOverlays) {
+        this.experimentOverlays = experimentOverlays;
+    }
+
     /**
      * gets properties describing which graph populator to use and how to
      * configure it.
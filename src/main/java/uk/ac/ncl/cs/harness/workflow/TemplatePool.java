@@ -0,0 +1,210 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.workflow;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import uk.ac.ncl.cs.harness.exceptions.ConfigurationException;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.graph.NodeDictionary;
+import uk.ac.ncl.cs.harness.stats.RandomEngineRegistry;
+
+/**
+ * Pre-generates the template graphs for the replicas of one integration cycle
+ * on a pool of producer threads, so that the population of later templates
+ * overlaps with the experiments and integration of earlier replicas. Each
+ * template is frozen and comes with its own node dictionary. Finished
+ * templates wait in a bounded queue, which blocks the producers once the
+ * replica workers fall behind. A pool must be closed when its cycle ends,
+ * which stops the producers even if not all templates have been taken.
+ *
+ * @author Jochen Weile, M.Sc.
+ */
+class TemplatePool {
+
+    /**
+     * finished templates, or the errors that prevented them.
+     */
+    private final BlockingQueue<Template> queue;
+
+    /**
+     * how long producers and workers wait on the queue before checking
+     * whether the pool has been closed, in milliseconds.
+     */
+    private static final long POLL_INTERVAL = 200;
+
+    private final Protocol protocol;
+
+    private final int numTemplates;
+
+    private final ExecutorService producers;
+
+    private volatile boolean closed = false;
+
+    /**
+     * constructor.
+     * @param protocol the protocol describing the templates.
+     * @param numProducers the number of producer threads.
+     * @param numTemplates the number of templates to produce.
+     * @param capacity the number of finished templates that may wait for a worker.
+     */
+    TemplatePool(Protocol protocol, int numProducers, int numTemplates, int capacity) {
+
+        this.protocol = protocol;
+        this.numTemplates = numTemplates;
+        queue = new ArrayBlockingQueue<Template>(Math.max(1, capacity));
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        producers = Executors.newFixedThreadPool(numProducers, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread t = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            r.run();
+                        } finally {
+                            RandomEngineRegistry.deregister();
+                        }
+                    }
+                }, "TemplateProducer#" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+    }
+
+    /**
+     * starts producing the templates.
+     */
+    void start() {
+        for (int i = 0; i < numTemplates; i++) {
+            final String name = "Template#" + i;
+            producers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (closed) {
+                        return;
+                    }
+                    Template template;
+                    try {
+                        Graph graph = produce(name);
+                        try {
+                            template = new Template(graph.freeze(), null);
+                        } finally {
+                            WorkflowThread.dispose(graph);
+                        }
+                    } catch (Throwable t) {
+                        template = new Template(null, t);
+                    }
+                    try {
+                        while (!queue.offer(template, POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+                            if (closed) {
+                                return;
+                            }
+                        }
+                    } catch (InterruptedException ex) {
+                        //the pool has been closed
+                    }
+                }
+            });
+        }
+        //the producers terminate once all templates are handed over
+        producers.shutdown();
+    }
+
+    /**
+     * generates a template graph according to the protocol.
+     * @param name the graph name
+     * @return the populated graph
+     * @throws ConfigurationException if the protocol is misconfigured.
+     */
+    Graph produce(String name) throws ConfigurationException {
+        return WorkflowThread.generateTemplateGraph(protocol, new NodeDictionary(), name);
+    }
+
+    /**
+     * takes the next finished template, waiting for one if necessary.
+     * @return a frozen template graph.
+     * @throws ConfigurationException if the protocol is misconfigured.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws IllegalStateException if the pool has been closed.
+     */
+    Graph take() throws ConfigurationException, InterruptedException {
+        Template template = null;
+        while (template == null) {
+            if (closed) {
+                throw new IllegalStateException("Template pool has been closed.");
+            }
+            template = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+        if (template.error instanceof ConfigurationException) {
+            throw (ConfigurationException) template.error;
+        } else if (template.error instanceof RuntimeException) {
+            throw (RuntimeException) template.error;
+        } else if (template.error instanceof Error) {
+            throw (Error) template.error;
+        } else if (template.error != null) {
+            throw new RuntimeException("Error in template producer!", template.error);
+        }
+        return template.graph;
+    }
+
+    /**
+     * stops all producers and drops the templates not taken yet. Workers
+     * waiting for a template fail.
+     */
+    void close() {
+        closed = true;
+        producers.shutdownNow();
+        queue.clear();
+    }
+
+    /**
+     * waits until all producers have terminated.
+     * @param timeout the maximal time to wait
+     * @param unit the unit of the timeout
+     * @return whether the producers have terminated.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return producers.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * A finished template, or the error that prevented it.
+     */
+    private static final class Template {
+
+        private final Graph graph;
+
+        private final Throwable error;
+
+        Template(Graph graph, Throwable error) {
+            this.graph = graph;
+            this.error = error;
+        }
+    }
+
+}
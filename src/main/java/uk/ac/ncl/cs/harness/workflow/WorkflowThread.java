@@ -17,17 +17,25 @@
 
 package uk.ac.ncl.cs.harness.workflow;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import uk.ac.ncl.cs.harness.exceptions.ConfigurationException;
 import uk.ac.ncl.cs.harness.experiments.Experiment;
 import uk.ac.ncl.cs.harness.extsupport.ExtensionRegistry;
+import uk.ac.ncl.cs.harness.graph.FrozenGraph;
 import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.graph.NodeDictionary;
+import uk.ac.ncl.cs.harness.graph.OverlayGraph;
 import uk.ac.ncl.cs.harness.graph.populators.GraphPopulator;
 import uk.ac.ncl.cs.harness.integration.IntegrationMethod;
 import uk.ac.ncl.cs.harness.io.OutputController;
@@ -68,6 +76,24 @@ public class WorkflowThread extends Thread {
      */
     private List<Throwable> thrown;
 
+    /**
+     * The node dictionary shared by all graphs of this workflow, so that
+     * equivalent nodes in different graphs carry the same ordinal. A template
+     * taken from a pool brings its own dictionary.
+     */
+    private NodeDictionary nodeDictionary = new NodeDictionary();
+
+    /**
+     * The graphs created by this thread, which are disposed of when it ends.
+     */
+    private final List<Graph> graphs = new LinkedList<Graph>();
+
+    /**
+     * The pool supplying pre-generated templates, or null if the template is
+     * generated by this thread.
+     */
+    private final TemplatePool templates;
+
 
     /**
      * The constructor.
@@ -75,6 +101,15 @@ public class WorkflowThread extends Thread {
     public WorkflowThread(Protocol protocol, Semaphore semaphore, 
 		List<Throwable> thrown, ResultCallback callback, String name) {
 
+        this(protocol, semaphore, thrown, callback, name, null);
+    }
+
+    /**
+     * Constructor for a thread that takes its template from the given pool.
+     */
+    WorkflowThread(Protocol protocol, Semaphore semaphore, List<Throwable> thrown,
+            ResultCallback callback, String name, TemplatePool templates) {
+
         super(name);
 
         setDaemon(true);
@@ -83,6 +118,7 @@ public class WorkflowThread extends Thread {
         this.semaphore = semaphore;
         this.thrown = thrown;
         this.callback = callback;
+        this.templates = templates;
 
     }
 
@@ -93,8 +129,14 @@ public class WorkflowThread extends Thread {
     @Override
     public void run() {
         try {
-            //generate true graph
-            Graph trueGraph = generateTemplateGraph();
+            //generate true graph, or take a pre-generated one
+            Graph trueGraph;
+            if (templates != null) {
+                trueGraph = templates.take();
+                nodeDictionary = trueGraph.getNodeDictionary();
+            } else {
+                trueGraph = generateTemplateGraph();
+            }
             //make node degree histogram
             DegreeSample.getInstance().sampleDegrees(trueGraph);
 
@@ -130,6 +172,9 @@ public class WorkflowThread extends Thread {
         } catch (Throwable t) {
             thrown.add(t);
         } finally {
+            for (Graph graph : graphs) {
+                dispose(graph);
+            }
             semaphore.release();
             RandomEngineRegistry.deregister();
         }
@@ -142,14 +187,42 @@ public class WorkflowThread extends Thread {
      */
     private Graph generateTemplateGraph() throws ConfigurationException {
 
+        Graph graph = generateTemplateGraph(protocol, nodeDictionary, getName()+"_template");
+
+        if (protocol.isExperimentOverlays()) {
+            Graph frozen = graph.freeze();
+            dispose(graph);
+            return frozen;
+        } else {
+            graphs.add(graph);
+            return graph;
+        }
+    }
+
+    /**
+     * creates and populates a graph according to the specifications in the protocol
+     * @param protocol the workflow protocol
+     * @param nodeDictionary the dictionary for the graph's nodes
+     * @param name the graph name
+     * @return a populated graph
+     * @throws ConfigurationException if the protocol is misconfigured.
+     */
+    static Graph generateTemplateGraph(Protocol protocol, NodeDictionary nodeDictionary,
+            String name) throws ConfigurationException {
+
         Properties popType = protocol.getGraphPopulation();
 
         GraphPopulator graphPopulator = ExtensionRegistry.getInstance().getPopulator(popType);
 
         if (graphPopulator != null) {
-            Graph graph = instantiateGraph(getName()+"_template");
+            Graph graph = instantiateGraph(protocol, nodeDictionary, name);
 
-            graphPopulator.populate(graph);
+            try {
+                graphPopulator.populate(graph);
+            } catch (RuntimeException ex) {
+                dispose(graph);
+                throw ex;
+            }
 
             return graph;
 
@@ -164,6 +237,37 @@ public class WorkflowThread extends Thread {
      * @throws ConfigurationException if the protocol is misconfigured.
      */
     public Graph instantiateGraph(String name) throws ConfigurationException {
+        Graph graph = instantiateGraph(protocol, nodeDictionary, name);
+        graphs.add(graph);
+        return graph;
+    }
+
+    /**
+     * releases the resources held by a graph that is no longer needed, such as
+     * the mapped storage of a <code>MappedGraph</code>.
+     * @param graph the graph
+     */
+    static void dispose(Graph graph) {
+        if (graph instanceof Closeable) {
+            try {
+                ((Closeable) graph).close();
+            } catch (IOException ex) {
+                Logger.getLogger(WorkflowThread.class.getName()).log(Level.WARNING,
+                        "Unable to dispose of graph \""+graph.getName()+"\"", ex);
+            }
+        }
+    }
+
+    /**
+     * Instantiates a graph according to the protocol
+     * @param protocol the workflow protocol
+     * @param nodeDictionary the dictionary for the graph's nodes
+     * @param name the graph name
+     * @return an empty graph
+     * @throws ConfigurationException if the protocol is misconfigured.
+     */
+    private static Graph instantiateGraph(Protocol protocol, NodeDictionary nodeDictionary,
+            String name) throws ConfigurationException {
 
         String type = protocol.getGraphImplementation();
 
@@ -171,6 +275,7 @@ public class WorkflowThread extends Thread {
         graph.setName(name);
 
         if (graph != null) {
+            graph.setNodeDictionary(nodeDictionary);
             return graph;
         } else {
             throw new ConfigurationException(type+" is no valid graph implementation type");
@@ -178,6 +283,25 @@ public class WorkflowThread extends Thread {
 
     }
 
+    /**
+     * Instantiates a graph to hold the output of an experiment. If the protocol
+     * asks for experiment overlays, the graph is an overlay on the frozen template,
+     * otherwise a graph of the protocol's implementation type.
+     * @param name the graph name
+     * @param trueGraph the template graph
+     * @return an empty graph
+     * @throws ConfigurationException if the protocol is misconfigured.
+     */
+    private Graph instantiateExperimentGraph(String name, Graph trueGraph) throws ConfigurationException {
+        if (protocol.isExperimentOverlays()) {
+            Graph graph = new OverlayGraph((FrozenGraph) trueGraph);
+            graph.setName(name);
+            return graph;
+        } else {
+            return instantiateGraph(name);
+        }
+    }
+
     /**
      * performs experiments on the template graph according to the protocol in order
      * to generate evidential graphs or gold-standard graphs.
@@ -205,7 +329,7 @@ public class WorkflowThread extends Thread {
             if (experiment != null) {
                 for (int i = 0; i < replicas; i++) {
                     String name = getName() + (goldStandards ? "_goldStandard#" : "_experiment#") + num++;
-                    Graph evidentialGraph = instantiateGraph(name);
+                    Graph evidentialGraph = instantiateExperimentGraph(name, trueGraph);
                     experiment.perform(trueGraph, evidentialGraph);
                     evidentialGraphs.add(evidentialGraph);
                 }
@@ -19,6 +19,8 @@ package uk.ac.ncl.cs.harness.experiments;
 
 import junit.framework.TestCase;
 import uk.ac.ncl.cs.harness.LoggingInit;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.graph.CSRGraph;
 import uk.ac.ncl.cs.harness.graph.Graph;
 import uk.ac.ncl.cs.harness.graph.MapGraph;
 import uk.ac.ncl.cs.harness.graph.populators.ScaleFreePopulator;
@@ -74,4 +76,64 @@ public class SimpleExperimentTest extends TestCase {
         System.out.println("Experimental edges: "+experimentalGraph.getNumEdges());
     }
 
+    /**
+     * Test of the true and false positive counts against their expectations.
+     */
+    public void testErrorRates() {
+
+        Graph template = new CSRGraph();
+        ScaleFreePopulator populator = new ScaleFreePopulator();
+        populator.setSeed(3);
+        populator.setNumberOfNodes(5000);
+        populator.setEdgesPerNode(2);
+        populator.populate(template);
+
+        double sensitivity = 0.8, specificity = 0.9999;
+        SimpleExperiment experiment = new SimpleExperiment();
+        experiment.setSensitivity(sensitivity);
+        experiment.setSpecificity(specificity);
+        Graph experimentalGraph = new CSRGraph();
+        experiment.perform(template, experimentalGraph);
+
+        assertEquals(template.getNumNodes(), experimentalGraph.getNumNodes());
+
+        int n = template.getNumNodes(), m = template.getNumEdges();
+        int tp = experimentalGraph.intersectionCount(template);
+        int fp = experimentalGraph.getNumEdges() - tp;
+
+        //within five standard deviations
+        double tpMean = sensitivity * m;
+        assertTrue("TP " + tp, Math.abs(tp - tpMean) < 5 * Math.sqrt(tpMean));
+        double fpMean = (1.0 - specificity) * ((double) n * (n + 1) / 2 - m);
+        assertTrue("FP " + fp, Math.abs(fp - fpMean) < 5 * Math.sqrt(fpMean));
+
+        //perfect specificity yields no false positives
+        experiment.setSpecificity(1.0);
+        experimentalGraph = new CSRGraph();
+        experiment.perform(template, experimentalGraph);
+        assertEquals(experimentalGraph.getNumEdges(), experimentalGraph.intersectionCount(template));
+    }
+
+    /**
+     * An output beyond the range of edge buffers is refused up front.
+     */
+    public void testTooManyFalsePositives() {
+
+        Graph template = new CSRGraph();
+        ScaleFreePopulator populator = new ScaleFreePopulator();
+        populator.setSeed(2);
+        populator.setNumberOfNodes(70000);
+        populator.populate(template);
+
+        SimpleExperiment experiment = new SimpleExperiment();
+        experiment.setSensitivity(1.0);
+        experiment.setSpecificity(0.0);
+        try {
+            experiment.perform(template, new CSRGraph());
+            fail("Expected number of edges exceeds the int range.");
+        } catch (GraphException ex) {
+            //expected
+        }
+    }
+
 }
@@ -0,0 +1,181 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph;
+
+import java.util.HashMap;
+import java.util.Map;
+import junit.framework.TestCase;
+import uk.ac.ncl.cs.harness.LoggingInit;
+import uk.ac.ncl.cs.harness.graph.populators.ScaleFreePopulator;
+import uk.ac.ncl.cs.harness.util.SetOfTwo;
+
+/**
+ *
+ * @author jweile
+ */
+public class CSRGraphTest extends TestCase {
+
+    public CSRGraphTest(String testName) {
+        super(testName);
+    }
+
+    private Graph graph;
+
+    @Override
+    protected void setUp() throws Exception {
+
+        LoggingInit.init();
+
+        super.setUp();
+
+        graph = new CSRGraph();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    /**
+     * Test of createNode and createEdge methods, of class CSRGraph.
+     */
+    public void testNodesAndEdges() {
+        Node a = graph.createNode("A");
+        Node b = graph.createNode("B");
+
+        assertEquals(2,graph.getNumNodes());
+
+        SetOfTwo<Node> ab = new SetOfTwo<Node>(a,b);
+        Edge e = graph.createEdge(ab);
+
+        assertTrue(graph.contains(a));
+        assertTrue(graph.contains(b));
+        assertTrue(graph.contains(e));
+
+        assertEquals(1, graph.getNumEdges());
+        assertEquals(1, a.degree());
+
+        Neighbour neighbourOfA = graph.getNeighboursOfNode(a).iterator().next();
+        assertEquals(b, neighbourOfA.getNode());
+        assertEquals(e, neighbourOfA.getConnectingEdge());
+
+        assertSame(e, graph.createEdge(ab));
+        assertEquals(1, graph.getNumEdges());
+    }
+
+    public void testAlienHandling() {
+        Graph g2 = new MapGraph();
+        g2.setName("g2");
+
+        Node g2a = g2.createNode("A");
+        Node g2c = g2.createNode("C");
+
+        SetOfTwo<Node> ac = new SetOfTwo<Node>(g2a,g2c);
+
+        Edge e = graph.createEdge(ac);
+        assertNull(e);
+
+        graph.createNode("A");
+        graph.createNode("C");
+        e = graph.createEdge(ac);
+        assertNotNull(e);
+        assertTrue(graph.containsEdge(ac));
+        assertSame(graph, e.getConnectedNodes().getA().getOwningGraph());
+    }
+
+    /**
+     * Checks the CSR adjacency against a map graph over several compactions.
+     */
+    public void testAgainstMapGraph() {
+
+        Graph reference = new MapGraph();
+        ScaleFreePopulator populator = new ScaleFreePopulator();
+        populator.setSeed(3);
+        populator.setNumberOfNodes(3000);
+        populator.populate(reference);
+
+        Map<Node,Node> locals = new HashMap<Node,Node>();
+        for (Node node : reference.getNodes()) {
+            locals.put(node, graph.createNode(node.getId()));
+        }
+        for (Edge edge : reference.getEdges()) {
+            graph.createEdge(edge.getConnectedNodes());
+        }
+
+        assertEquals(reference.getNumNodes(), graph.getNumNodes());
+        assertEquals(reference.getNumEdges(), graph.getNumEdges());
+
+        for (Edge edge : reference.getEdges()) {
+            assertTrue(graph.contains(edge));
+        }
+        for (Edge edge : graph.getEdges()) {
+            assertTrue(reference.contains(edge));
+        }
+        for (Node node : reference.getNodes()) {
+            Node local = locals.get(node);
+            assertEquals(node.degree(), local.degree());
+            assertEquals(node.getNeighbours(), local.getNeighbours());
+        }
+    }
+
+    /**
+     * Test of degree and forEachNeighbour before the first compaction and for
+     * nodes added after one.
+     */
+    public void testNeighboursOutsideCompaction() {
+
+        Node a = graph.createNode("A");
+        Node b = graph.createNode("B");
+        Node c = graph.createNode("C");
+        graph.createEdge(new SetOfTwo<Node>(a, b));
+        graph.createEdge(new SetOfTwo<Node>(b, c));
+
+        NodeDictionary dictionary = graph.getNodeDictionary();
+        assertEquals(2, graph.degree(dictionary.ordinalOf(b)));
+        assertEquals(2, countNeighbours(dictionary.ordinalOf(b)));
+        assertEquals(1, countNeighbours(dictionary.ordinalOf(c)));
+
+        //a path long enough to trigger a compaction
+        Node last = c;
+        for (int i = 0; i < 1100; i++) {
+            Node next = graph.createNode("P" + i);
+            graph.createEdge(new SetOfTwo<Node>(last, next));
+            last = next;
+        }
+        Node late = graph.createNode("late");
+        graph.createEdge(new SetOfTwo<Node>(late, a));
+
+        assertEquals(1, graph.degree(dictionary.ordinalOf(late)));
+        assertEquals(1, countNeighbours(dictionary.ordinalOf(late)));
+        assertEquals(2, countNeighbours(dictionary.ordinalOf(a)));
+        assertEquals(2, countNeighbours(dictionary.ordinalOf(c)));
+        assertEquals(0, countNeighbours(dictionary.ordinalOf(graph.createNode("lonely"))));
+    }
+
+    private int countNeighbours(int node) {
+        final int[] count = new int[1];
+        graph.forEachNeighbour(node, new NeighbourVisitor() {
+            @Override
+            public void visit(int neighbour, int edge) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+import uk.ac.ncl.cs.harness.LoggingInit;
+import uk.ac.ncl.cs.harness.graph.populators.ScaleFreePopulator;
+import uk.ac.ncl.cs.harness.util.SetOfTwo;
+
+/**
+ *
+ * @author jweile
+ */
+public class ConcurrentGraphTest extends TestCase {
+
+    public ConcurrentGraphTest(String testName) {
+        super(testName);
+    }
+
+    private Graph graph;
+
+    @Override
+    protected void setUp() throws Exception {
+
+        LoggingInit.init();
+
+        super.setUp();
+
+        graph = new ConcurrentGraph();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    /**
+     * Test of createNode and createEdge methods, of class ConcurrentGraph.
+     */
+    public void testNodesAndEdges() {
+        Node a = graph.createNode("A");
+        Node b = graph.createNode("B");
+
+        assertEquals(2,graph.getNumNodes());
+
+        SetOfTwo<Node> ab = new SetOfTwo<Node>(a,b);
+        Edge e = graph.createEdge(ab);
+
+        assertTrue(graph.contains(a));
+        assertTrue(graph.contains(b));
+        assertTrue(graph.contains(e));
+
+        assertEquals(1, graph.getNumEdges());
+        assertEquals(1, a.degree());
+
+        Neighbour neighbourOfA = graph.getNeighboursOfNode(a).iterator().next();
+        assertEquals(b, neighbourOfA.getNode());
+        assertEquals(e, neighbourOfA.getConnectingEdge());
+
+        assertEquals(e, graph.createEdge(ab));
+        assertEquals(1, graph.getNumEdges());
+    }
+
+    /**
+     * Several threads create overlapping sets of nodes and edges at once;
+     * the result must equal a sequentially built map graph.
+     */
+    public void testParallelPopulation() throws InterruptedException {
+
+        final Graph reference = new MapGraph();
+        ScaleFreePopulator populator = new ScaleFreePopulator();
+        populator.setSeed(5);
+        populator.setNumberOfNodes(3000);
+        populator.populate(reference);
+
+        final List<String> referenceIds = new ArrayList<String>();
+        for (Node node : reference.getNodes()) {
+            referenceIds.add(node.getId());
+        }
+        final List<Edge> referenceEdges = new ArrayList<Edge>(reference.getEdges());
+        final List<Throwable> thrown = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long seed = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        //every thread inserts all nodes and edges in its own order
+                        List<String> ids = new ArrayList<String>(referenceIds);
+                        Collections.shuffle(ids, new Random(seed));
+                        graph.addNodes(ids.toArray(new String[ids.size()]));
+                        List<Edge> edges = new ArrayList<Edge>(referenceEdges);
+                        Collections.shuffle(edges, new Random(seed));
+                        for (Edge edge : edges) {
+                            SetOfTwo<Node> pair = edge.getConnectedNodes();
+                            assertNotNull(graph.createEdge(pair));
+                        }
+                    } catch (Throwable t) {
+                        thrown.add(t);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(thrown.toString(), thrown.isEmpty());
+
+        assertEquals(reference.getNumNodes(), graph.getNumNodes());
+        assertEquals(reference.getNumEdges(), graph.getNumEdges());
+        assertEquals(new HashSet<Node>(reference.getNodes()), new HashSet<Node>(graph.getNodes()));
+        assertEquals(new HashSet<Edge>(reference.getEdges()), new HashSet<Edge>(graph.getEdges()));
+
+        for (Node node : graph.getNodes()) {
+            assertEquals(node.getNeighbours().size(), node.degree());
+            for (Neighbour neighbour : node.getNeighbours()) {
+                assertTrue(reference.contains(neighbour.getConnectingEdge()));
+            }
+        }
+    }
+
+    /**
+     * Several threads bulk-load disjoint slices of the same edge list.
+     */
+    public void testParallelBulkLoad() throws InterruptedException {
+
+        Graph reference = new MapGraph();
+        ScaleFreePopulator populator = new ScaleFreePopulator();
+        populator.setSeed(7);
+        populator.setNumberOfNodes(3000);
+        populator.populate(reference);
+
+        String[] ids = new String[reference.getNumNodes()];
+        int i = 0;
+        for (Node node : reference.getNodes()) {
+            ids[i++] = node.getId();
+        }
+        graph.addNodes(ids);
+        NodeDictionary dictionary = graph.getNodeDictionary();
+        final int[] a = new int[reference.getNumEdges()], b = new int[reference.getNumEdges()];
+        i = 0;
+        for (Edge edge : reference.getEdges()) {
+            a[i] = dictionary.ordinalOf(edge.getConnectedNodes().getA());
+            b[i++] = dictionary.ordinalOf(edge.getConnectedNodes().getB());
+        }
+
+        final List<Throwable> thrown = Collections.synchronizedList(new ArrayList<Throwable>());
+        final int[] skipped = new int[4];
+        Thread[] threads = new Thread[skipped.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int slice = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        //slices overlap by half, so half of each slice is contested
+                        int from = slice * a.length / (skipped.length + 1);
+                        int to = (slice + 2) * a.length / (skipped.length + 1);
+                        int[] sliceA = new int[to - from], sliceB = new int[to - from];
+                        System.arraycopy(a, from, sliceA, 0, to - from);
+                        System.arraycopy(b, from, sliceB, 0, to - from);
+                        skipped[slice] = graph.addEdges(sliceA, sliceB);
+                    } catch (Throwable t) {
+                        thrown.add(t);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(thrown.toString(), thrown.isEmpty());
+
+        int totalSkipped = 0;
+        for (int s : skipped) {
+            totalSkipped += s;
+        }
+        int inserted = 0;
+        for (int t = 0; t < skipped.length; t++) {
+            inserted += (t + 2) * a.length / (skipped.length + 1) - t * a.length / (skipped.length + 1);
+        }
+        assertEquals(reference.getNumEdges(), graph.getNumEdges());
+        assertEquals(inserted - reference.getNumEdges(), totalSkipped);
+        assertEquals(new HashSet<Edge>(reference.getEdges()), new HashSet<Edge>(graph.getEdges()));
+
+        int degreeSum = 0;
+        for (Node node : graph.getNodes()) {
+            degreeSum += node.degree();
+        }
+        assertEquals(2 * reference.getNumEdges(), degreeSum);
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package uk.ac.ncl.cs.harness.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import junit.framework.TestCase;
+import uk.ac.ncl.cs.harness.LoggingInit;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.graph.populators.ScaleFreePopulator;
+import uk.ac.ncl.cs.harness.util.SetOfTwo;
+
+/**
+ *
+ * @author jweile
+ */
+public class FrozenGraphTest extends TestCase {
+
+    public FrozenGraphTest(String testName) {
+        super(testName);
+    }
+
+    private Graph graph;
+
+    @Override
+    protected void setUp() throws Exception {
+
+        LoggingInit.init();
+
+        super.setUp();
+
+        graph = new MapGraph();
+        graph.setName("template");
+        ScaleFreePopulator populator = new ScaleFreePopulator();
+        populator.setSeed(3);
+        populator.setNumberOfNodes(2000);
+        populator.populate(graph);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    /**
+     * Checks that the snapshot matches its source.
+     */
+    public void testSnapshot() {
+
+        Edge first = graph.getEdges().iterator().next();
+        first.addProbability("testprob", 0.75);
+
+        FrozenGraph frozen = graph.freeze();
+        assertSame(frozen, frozen.freeze());
+        assertSame(graph.getNodeDictionary(), frozen.getNodeDictionary());
+
+        assertEquals(graph.getNumNodes(), frozen.getNumNodes());
+        assertEquals(graph.getNumEdges(), frozen.getNumEdges());
+        assertEquals(new HashSet<Edge>(graph.getEdges()), new HashSet<Edge>(frozen.getEdges()));
+        for (Node node : graph.getNodes()) {
+            assertTrue(frozen.contains(node));
+            assertEquals(node.getNeighbours(), frozen.getNeighboursOfNode(node));
+        }
+        for (Edge edge : graph.getEdges()) {
+            assertTrue(frozen.contains(edge));
+        }
+
+        Edge frozenFirst = frozen.getEdges().iterator().next();
+        assertEquals(first, frozenFirst);
+        assertEquals(0.75, frozenFirst.getProbability("testprob").getValue());
+
+        //later changes to the source are not reflected
+        Node extra = graph.createNode("extra");
+        graph.createEdge(new SetOfTwo<Node>(extra, first.getConnectedNodes().getA()));
+        assertFalse(frozen.contains(extra));
+        assertEquals(graph.getNumEdges() - 1, frozen.getNumEdges());
+    }
+
+    /**
+     * Checks that all modifications are rejected.
+     */
+    public void testImmutable() {
+
+        FrozenGraph frozen = graph.freeze();
+        Node a = frozen.getNodes().iterator().next();
+
+        try {
+            frozen.createNode("new");
+            fail("Frozen graph accepted a new node");
+        } catch (GraphException ex) {
+            //expected
+        }
+        try {
+            frozen.createEdge(new SetOfTwo<Node>(a, a));
+            fail("Frozen graph accepted a new edge");
+        } catch (GraphException ex) {
+            //expected
+        }
+        try {
+            frozen.getEdges().iterator().next().addProbability(Probability.MAIN_KEY, 0.5);
+            fail("Frozen graph accepted a probability");
+        } catch (GraphException ex) {
+            //expected
+        }
+    }
+
+    /**
+     * Reads a frozen graph from several threads at once.
+     */
+    public void testConcurrentReads() throws InterruptedException {
+
+        final FrozenGraph frozen = graph.freeze();
+        final List<Throwable> thrown = Collections.synchronizedList(new ArrayList<Throwable>());
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        int degreeSum = 0;
+                        for (Node node : frozen.getNodes()) {
+                            for (Neighbour neighbour : node.getNeighbours()) {
+                                assertTrue(frozen.contains(neighbour.getConnectingEdge()));
+                                degreeSum++;
+                            }
+                        }
+                        assertEquals(2 * frozen.getNumEdges(), degreeSum);
+                    } catch (Throwable t) {
+                        thrown.add(t);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(thrown.toString(), thrown.isEmpty());
+    }
+
+}
@@ -17,8 +17,14 @@
 
 package uk.ac.ncl.cs.harness.graph;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import junit.framework.TestCase;
 import uk.ac.ncl.cs.harness.LoggingInit;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
 import uk.ac.ncl.cs.harness.util.SetOfTwo;
 
 /**
@@ -113,4 +119,247 @@ public class MapGraphTest extends TestCase {
         assertEquals(probval, e.getProbability(probname).getValue());
     }
 
+    public void testEdgeAttributes() {
+
+        Node a = graph.createNode("A");
+        Node b = graph.createNode("B");
+        Node c = graph.createNode("C");
+
+        Edge ab = graph.createEdge(new SetOfTwo<Node>(a,b));
+        Edge bc = graph.createEdge(new SetOfTwo<Node>(b,c));
+
+        bc.addProbability("testprob", 0.25);
+
+        EdgeAttributes attributes = graph.getEdgeAttributes();
+        assertEquals(1, attributes.getKeys().size());
+        assertEquals(0.25, attributes.get("testprob", bc.getIndex()));
+        assertTrue(Double.isNaN(attributes.get("testprob", ab.getIndex())));
+
+        assertNull(ab.getProbability("testprob"));
+        assertEquals(0, ab.getProbabilities().size());
+        assertEquals(1.0, ab.getProbabilityValue("testprob", 1.0));
+    }
+
+    public void testSharedDictionary() {
+
+        NodeDictionary dictionary = new NodeDictionary();
+        graph.setNodeDictionary(dictionary);
+        Graph g2 = new CSRGraph();
+        g2.setNodeDictionary(dictionary);
+
+        Node a = graph.createNode("A");
+        Node b = graph.createNode("B");
+        Node g2c = g2.createNode("C");
+        Node g2b = g2.createNode("B");
+
+        assertEquals(3, dictionary.size());
+        assertEquals(dictionary.lookup("B"), g2b.getIndex());
+        assertEquals(b.getIndex(), g2b.getIndex());
+        assertTrue(graph.contains(g2b));
+        assertFalse(graph.contains(g2c));
+
+        Edge e = graph.createEdge(new SetOfTwo<Node>(a,b));
+        assertNull(g2.createEdge(e.getConnectedNodes()));
+        g2.createNode("A");
+        g2.createEdge(e.getConnectedNodes());
+        assertTrue(g2.contains(e));
+        assertEquals(1, g2b.degree());
+
+        try {
+            graph.setNodeDictionary(new NodeDictionary());
+            fail("Dictionary of a non-empty graph must not be replaced");
+        } catch (GraphException ex) {
+            //expected
+        }
+    }
+
+    public void testBulkConstruction() {
+
+        Graph[] graphs = {
+            new MapGraph(), new CSRGraph(), new BitMatrixGraph(), new RoaringGraph(), new MappedGraph(),
+            new ConcurrentGraph()
+        };
+        for (Graph g : graphs) {
+
+            int[] ordinals = g.addNodes(new String[] {"A", "B", "C", "B"});
+            assertEquals(3, g.getNumNodes());
+            assertEquals(ordinals[1], ordinals[3]);
+            Node[] nodes = g.getNodes().toArray(new Node[3]);
+
+            //A-B twice (once reversed), B-C and a self-loop on C
+            int[] a = {ordinals[0], ordinals[1], ordinals[1], ordinals[2]};
+            int[] b = {ordinals[1], ordinals[0], ordinals[2], ordinals[2]};
+            assertEquals(1, g.addEdges(a, b));
+            assertEquals(3, g.getNumEdges());
+            assertTrue(g.containsEdge(new SetOfTwo<Node>(nodes[0], nodes[1])));
+            assertTrue(g.containsEdge(new SetOfTwo<Node>(nodes[2], nodes[2])));
+            assertFalse(g.containsEdge(new SetOfTwo<Node>(nodes[0], nodes[2])));
+            assertEquals(1, nodes[0].degree());
+
+            //edges already present count as duplicates, too
+            Node d = g.createNode("D");
+            assertEquals(1, g.addEdges(new int[] {ordinals[0], ordinals[2]},
+                    new int[] {ordinals[1], d.getIndex()}));
+            assertEquals(4, g.getNumEdges());
+            assertEquals(1, d.degree());
+
+            try {
+                g.addEdges(new int[] {ordinals[0]}, new int[] {d.getIndex() + 100});
+                fail(g.getClass().getSimpleName()+" connected an unknown node");
+            } catch (GraphException ex) {
+                //expected
+            }
+        }
+    }
+
+    public void testNeighbourVisitor() {
+
+        Graph[] graphs = {
+            new MapGraph(), new CSRGraph(), new BitMatrixGraph(), new RoaringGraph(), new MappedGraph(),
+            new ConcurrentGraph()
+        };
+        for (final Graph g : graphs) {
+
+            int[] o = g.addNodes(new String[] {"A", "B", "C", "D"});
+            g.addEdges(new int[] {o[0], o[0], o[1], o[2]}, new int[] {o[1], o[2], o[2], o[2]});
+            Graph[] views = {g, g.freeze()};
+
+            for (final Graph view : views) {
+                final Edge[] edges = view.getEdges().toArray(new Edge[0]);
+                final Map<Integer,Node> nodes = new HashMap<Integer,Node>();
+                for (Node node : view.getNodes()) {
+                    nodes.put(node.getIndex(), node);
+                }
+                for (Node node : view.getNodes()) {
+                    final Set<Neighbour> visited = new HashSet<Neighbour>();
+                    view.forEachNeighbour(node.getIndex(), new NeighbourVisitor() {
+                        @Override
+                        public void visit(int neighbour, int edge) {
+                            visited.add(new Neighbour(nodes.get(neighbour), edges[edge]));
+                        }
+                    });
+                    assertEquals(view.getNeighboursOfNode(node), visited);
+                    assertEquals(view.getNeighboursOfNode(node).size(), view.degree(node.getIndex()));
+                }
+            }
+            assertEquals(0, g.degree(o[3]));
+            assertEquals(0, g.degree(o[3] + 100));
+        }
+    }
+
+    /**
+     * Numeric nodes must behave exactly like nodes with the equivalent id strings.
+     */
+    public void testNumericIds() {
+
+        Graph numeric = new MapGraph();
+        Graph textual = new MapGraph();
+        int[] values = {0, 1, 2, 9, 10, 12, 99, 100, 123, 1000, 2047, 65536,
+                16777215, 16777216, 123456789, Integer.MAX_VALUE};
+        Node[] nodes = new Node[values.length];
+        Node[] strings = new Node[values.length];
+        for (int i = 0; i < values.length; i++) {
+            nodes[i] = numeric.createNode(values[i]);
+            strings[i] = textual.createNode(Integer.toString(values[i]));
+            assertEquals(values[i], nodes[i].getNumericId());
+            assertEquals(Integer.toString(values[i]), nodes[i].getId());
+            assertEquals(strings[i], nodes[i]);
+            assertEquals(strings[i].getId().hashCode(), nodes[i].hashCode());
+        }
+        Node text = textual.createNode("x1");
+        assertEquals(-1, text.getNumericId());
+        assertEquals(-1, textual.createNode("007").getNumericId());
+        assertFalse(nodes[1].equals(text));
+
+        for (Node a : nodes) {
+            for (Node b : nodes) {
+                assertEquals(Integer.signum(a.getId().compareTo(b.getId())),
+                        Integer.signum(a.compareTo(b)));
+            }
+            assertEquals(Integer.signum(a.getId().compareTo("x1")), Integer.signum(a.compareTo(text)));
+        }
+
+        //ids and numbers resolve to the same ordinals
+        NodeDictionary dictionary = numeric.getNodeDictionary();
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(i, dictionary.lookup(values[i]));
+            assertEquals(i, dictionary.lookup(Integer.toString(values[i])));
+            assertEquals(i, dictionary.ordinalOf(strings[i]));
+            assertTrue(numeric.contains(strings[i]));
+        }
+        assertSame(nodes[3], numeric.createNode("9"));
+        assertEquals(values.length, numeric.getNumNodes());
+    }
+
+    /**
+     * Test of intersectionCount, differenceCount and inducedEdgeCount against
+     * plain edge sets, for shared and separate node dictionaries.
+     */
+    public void testEdgeSetAlgebra() {
+
+        int n = 60;
+        Graph[] first = {
+            new MapGraph(), new CSRGraph(), new BitMatrixGraph(), new RoaringGraph(), new MappedGraph(),
+            new ConcurrentGraph()
+        };
+        Graph[] second = {
+            new MapGraph(), new CSRGraph(), new BitMatrixGraph(), new RoaringGraph(), new MappedGraph(),
+            new ConcurrentGraph()
+        };
+        NodeDictionary dictionary = new NodeDictionary();
+        for (int k = 0; k < first.length; k++) {
+            first[k].setNodeDictionary(dictionary);
+            second[k].setNodeDictionary(k % 2 == 0 ? dictionary : new NodeDictionary());
+        }
+        for (Graph g : first) {
+            for (int i = 0; i < n; i++) {
+                g.createNode(i);
+            }
+        }
+        for (Graph g : second) {
+            //only a part of the nodes
+            for (int i = n / 3; i < n; i++) {
+                g.createNode(i);
+            }
+        }
+        Random r1 = new Random(1), r2 = new Random(2);
+        for (int e = 0; e < 300; e++) {
+            int a = r1.nextInt(n), b = r1.nextInt(n);
+            for (Graph g : first) {
+                g.addEdges(new int[] {g.getNodeDictionary().lookup(a)}, new int[] {g.getNodeDictionary().lookup(b)});
+            }
+            a = n / 3 + r2.nextInt(n - n / 3);
+            b = n / 3 + r2.nextInt(n - n / 3);
+            for (Graph g : second) {
+                g.addEdges(new int[] {g.getNodeDictionary().lookup(a)}, new int[] {g.getNodeDictionary().lookup(b)});
+            }
+        }
+
+        Set<Edge> edges1 = new HashSet<Edge>(first[0].getEdges());
+        Set<Edge> edges2 = new HashSet<Edge>(second[0].getEdges());
+        Set<Edge> shared = new HashSet<Edge>(edges1);
+        shared.retainAll(edges2);
+        int induced = 0;
+        for (Edge e : edges1) {
+            if (second[0].contains(e.getConnectedNodes().getA()) && second[0].contains(e.getConnectedNodes().getB())) {
+                induced++;
+            }
+        }
+        assertTrue(shared.size() > 0);
+
+        for (Graph g1 : first) {
+            for (Graph g2 : second) {
+                assertEquals(shared.size(), g1.intersectionCount(g2));
+                assertEquals(shared.size(), g2.intersectionCount(g1));
+                assertEquals(edges1.size() - shared.size(), g1.differenceCount(g2));
+                assertEquals(edges2.size() - shared.size(), g2.differenceCount(g1));
+                assertEquals(induced, g1.inducedEdgeCount(g2));
+                assertEquals(edges2.size(), g2.inducedEdgeCount(g1));
+            }
+            assertEquals(edges1.size(), g1.intersectionCount(first[0]));
+            assertEquals(0, g1.differenceCount(first[0]));
+            assertEquals(edges1.size(), g1.inducedEdgeCount(g1));
+        }
+    }
+
 }
@@ -0,0 +1,227 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+import uk.ac.ncl.cs.harness.LoggingInit;
+import uk.ac.ncl.cs.harness.graph.populators.ScaleFreePopulator;
+import uk.ac.ncl.cs.harness.util.SetOfTwo;
+
+/**
+ *
+ * @author jweile
+ */
+public class MappedGraphTest extends TestCase {
+
+    public MappedGraphTest(String testName) {
+        super(testName);
+    }
+
+    private Graph graph;
+
+    @Override
+    protected void setUp() throws Exception {
+
+        LoggingInit.init();
+
+        super.setUp();
+
+        graph = new MappedGraph();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        ((MappedGraph) graph).close();
+    }
+
+    /**
+     * Test of createNode and createEdge methods, of class MappedGraph.
+     */
+    public void testNodesAndEdges() {
+        Node a = graph.createNode("A");
+        Node b = graph.createNode("B");
+
+        assertEquals(2,graph.getNumNodes());
+
+        SetOfTwo<Node> ab = new SetOfTwo<Node>(a,b);
+        Edge e = graph.createEdge(ab);
+
+        assertTrue(graph.contains(a));
+        assertTrue(graph.contains(b));
+        assertTrue(graph.contains(e));
+
+        assertEquals(1, graph.getNumEdges());
+        assertEquals(1, a.degree());
+
+        Neighbour neighbourOfA = graph.getNeighboursOfNode(a).iterator().next();
+        assertEquals(b, neighbourOfA.getNode());
+        assertEquals(e, neighbourOfA.getConnectingEdge());
+
+        assertEquals(e, graph.createEdge(ab));
+        assertEquals(1, graph.getNumEdges());
+    }
+
+    public void testAlienHandling() {
+        Graph g2 = new MapGraph();
+        g2.setName("g2");
+
+        Node g2a = g2.createNode("A");
+        Node g2c = g2.createNode("C");
+
+        SetOfTwo<Node> ac = new SetOfTwo<Node>(g2a,g2c);
+
+        Edge e = graph.createEdge(ac);
+        assertNull(e);
+
+        graph.createNode("A");
+        graph.createNode("C");
+        e = graph.createEdge(ac);
+        assertNotNull(e);
+        assertTrue(graph.containsEdge(ac));
+        assertSame(graph, e.getConnectedNodes().getA().getOwningGraph());
+    }
+
+    /**
+     * Checks the mapped adjacency against a map graph over several compactions.
+     */
+    public void testAgainstMapGraph() {
+
+        Graph reference = new MapGraph();
+        ScaleFreePopulator populator = new ScaleFreePopulator();
+        populator.setSeed(3);
+        populator.setNumberOfNodes(3000);
+        populator.populate(reference);
+
+        Map<Node,Node> locals = new HashMap<Node,Node>();
+        for (Node node : reference.getNodes()) {
+            locals.put(node, graph.createNode(node.getId()));
+        }
+        for (Edge edge : reference.getEdges()) {
+            graph.createEdge(edge.getConnectedNodes());
+        }
+
+        assertEquals(reference.getNumNodes(), graph.getNumNodes());
+        assertEquals(reference.getNumEdges(), graph.getNumEdges());
+
+        for (Edge edge : reference.getEdges()) {
+            assertTrue(graph.contains(edge));
+        }
+        for (Edge edge : graph.getEdges()) {
+            assertTrue(reference.contains(edge));
+        }
+        for (Node node : reference.getNodes()) {
+            Node local = locals.get(node);
+            assertEquals(node.degree(), local.degree());
+            assertEquals(node.getNeighbours(), local.getNeighbours());
+        }
+    }
+
+    /**
+     * Bulk-loads a graph and reads it from several threads at once.
+     */
+    public void testBulkLoadAndConcurrentReads() throws InterruptedException {
+
+        Graph reference = new MapGraph();
+        ScaleFreePopulator populator = new ScaleFreePopulator();
+        populator.setSeed(3);
+        populator.setNumberOfNodes(3000);
+        populator.populate(reference);
+
+        String[] ids = new String[reference.getNumNodes()];
+        int i = 0;
+        for (Node node : reference.getNodes()) {
+            ids[i++] = node.getId();
+        }
+        graph.addNodes(ids);
+        NodeDictionary dictionary = graph.getNodeDictionary();
+        int[] a = new int[reference.getNumEdges()], b = new int[reference.getNumEdges()];
+        i = 0;
+        for (Edge edge : reference.getEdges()) {
+            a[i] = dictionary.ordinalOf(edge.getConnectedNodes().getA());
+            b[i++] = dictionary.ordinalOf(edge.getConnectedNodes().getB());
+        }
+        assertEquals(0, graph.addEdges(a, b));
+        assertEquals(new HashSet<Edge>(reference.getEdges()), new HashSet<Edge>(graph.getEdges()));
+
+        final Graph shared = graph;
+        final List<Throwable> thrown = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        int degreeSum = 0;
+                        for (Node node : shared.getNodes()) {
+                            for (Neighbour neighbour : node.getNeighbours()) {
+                                assertTrue(shared.contains(neighbour.getConnectingEdge()));
+                                degreeSum++;
+                            }
+                        }
+                        assertEquals(2 * shared.getNumEdges(), degreeSum);
+                    } catch (Throwable t) {
+                        thrown.add(t);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(thrown.toString(), thrown.isEmpty());
+    }
+
+    /**
+     * Mapped graphs keep no files open, however many of them exist.
+     */
+    public void testNoOpenFiles() {
+
+        File fds = new File("/proc/self/fd");
+        if (!fds.isDirectory()) {
+            //not measurable on this platform
+            return;
+        }
+        int before = fds.list().length;
+
+        List<MappedGraph> graphs = new ArrayList<MappedGraph>();
+        for (int i = 0; i < 30; i++) {
+            MappedGraph g = new MappedGraph();
+            ScaleFreePopulator populator = new ScaleFreePopulator();
+            populator.setSeed(3);
+            populator.setNumberOfNodes(3000);
+            populator.populate(g);
+            assertEquals(3000, g.getNumNodes());
+            graphs.add(g);
+        }
+        assertTrue("Open files: " + fds.list().length, fds.list().length <= before + 5);
+
+        for (MappedGraph g : graphs) {
+            g.close();
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package uk.ac.ncl.cs.harness.graph;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import junit.framework.TestCase;
+import uk.ac.ncl.cs.harness.LoggingInit;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.graph.populators.ScaleFreePopulator;
+import uk.ac.ncl.cs.harness.util.SetOfTwo;
+
+/**
+ *
+ * @author jweile
+ */
+public class OverlayGraphTest extends TestCase {
+
+    public OverlayGraphTest(String testName) {
+        super(testName);
+    }
+
+    private FrozenGraph template;
+
+    @Override
+    protected void setUp() throws Exception {
+
+        LoggingInit.init();
+
+        super.setUp();
+
+        Graph graph = new MapGraph();
+        graph.setName("template");
+        ScaleFreePopulator populator = new ScaleFreePopulator();
+        populator.setSeed(5);
+        populator.setNumberOfNodes(1000);
+        populator.populate(graph);
+        template = graph.freeze();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    /**
+     * Builds the same experiment output as an overlay and as a map graph
+     * and compares the two.
+     */
+    public void testMirrorsMapGraph() {
+
+        OverlayGraph overlay = new OverlayGraph(template);
+        overlay.setName("overlay");
+        Graph reference = new MapGraph();
+        reference.setName("reference");
+
+        //keep every node but the first few, plus one node unknown to the template
+        List<Node> templateNodes = new ArrayList<Node>(template.getNodes());
+        for (Node node : templateNodes.subList(10, templateNodes.size())) {
+            overlay.createNode(node.getId());
+            reference.createNode(node.getId());
+        }
+        Node alienOverlay = overlay.createNode("alien");
+        Node alienReference = reference.createNode("alien");
+
+        //drop every third true edge
+        int i = 0;
+        for (Edge edge : template.getEdges()) {
+            if (i++ % 3 != 0) {
+                overlay.createEdge(edge.getConnectedNodes());
+                reference.createEdge(edge.getConnectedNodes());
+            }
+        }
+
+        //add false positives, including a self-loop and an edge to the alien node
+        for (int j = 20; j < templateNodes.size(); j += 13) {
+            SetOfTwo<Node> pair = new SetOfTwo<Node>(templateNodes.get(j), templateNodes.get(j - 7));
+            if (!template.containsEdge(pair)) {
+                overlay.createEdge(pair);
+                reference.createEdge(pair);
+            }
+        }
+        overlay.createEdge(new SetOfTwo<Node>(alienOverlay, templateNodes.get(30)));
+        reference.createEdge(new SetOfTwo<Node>(alienReference, templateNodes.get(30)));
+        overlay.createEdge(new SetOfTwo<Node>(templateNodes.get(40), templateNodes.get(40)));
+        reference.createEdge(new SetOfTwo<Node>(templateNodes.get(40), templateNodes.get(40)));
+
+        assertEquals(reference.getNumNodes(), overlay.getNumNodes());
+        assertEquals(reference.getNumEdges(), overlay.getNumEdges());
+        assertEquals(new HashSet<Node>(reference.getNodes()), new HashSet<Node>(overlay.getNodes()));
+        assertEquals(new HashSet<Edge>(reference.getEdges()), new HashSet<Edge>(overlay.getEdges()));
+
+        for (Node node : reference.getNodes()) {
+            assertTrue(overlay.contains(node));
+            assertEquals(node.getNeighbours().size(), overlay.getNeighboursOfNode(node).size());
+            assertEquals(node.getNeighbours(), new HashSet<Neighbour>(overlay.getNeighboursOfNode(node)));
+        }
+        for (Edge edge : template.getEdges()) {
+            assertEquals(reference.contains(edge), overlay.contains(edge));
+        }
+        for (Node node : templateNodes.subList(0, 10)) {
+            assertFalse(overlay.contains(node));
+            assertTrue(overlay.getNeighboursOfNode(node).isEmpty());
+        }
+
+        //edges are dense and carry their own probabilities
+        int ordinal = 0;
+        for (Edge edge : overlay.getEdges()) {
+            assertEquals(ordinal++, edge.getIndex());
+            edge.addProbability("testprob", 0.5);
+        }
+        assertEquals(0.5, overlay.getEdges().iterator().next().getProbability("testprob").getValue());
+        assertNull(template.getEdges().iterator().next().getProbability("testprob"));
+
+        //duplicates return the existing edge
+        Edge some = overlay.getEdges().iterator().next();
+        assertEquals(some, overlay.createEdge(some.getConnectedNodes()));
+        assertEquals(reference.getNumEdges(), overlay.getNumEdges());
+
+        //snapshots of the overlay match the reference
+        FrozenGraph frozen = overlay.freeze();
+        assertEquals(new HashSet<Edge>(reference.getEdges()), new HashSet<Edge>(frozen.getEdges()));
+    }
+
+    /**
+     * Checks that the overlay keeps its template's dictionary.
+     */
+    public void testDictionary() {
+
+        OverlayGraph overlay = new OverlayGraph(template);
+        assertSame(template.getNodeDictionary(), overlay.getNodeDictionary());
+        overlay.setNodeDictionary(template.getNodeDictionary());
+        try {
+            overlay.setNodeDictionary(new NodeDictionary());
+            fail("Overlay accepted a foreign dictionary");
+        } catch (GraphException ex) {
+            //expected
+        }
+    }
+
+}
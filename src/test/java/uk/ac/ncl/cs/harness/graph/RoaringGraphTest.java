@@ -0,0 +1,144 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package uk.ac.ncl.cs.harness.graph;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.TestCase;
+import uk.ac.ncl.cs.harness.LoggingInit;
+import uk.ac.ncl.cs.harness.stats.ErrorGauge;
+import uk.ac.ncl.cs.harness.util.SetOfTwo;
+
+/**
+ *
+ * @author jweile
+ */
+public class RoaringGraphTest extends TestCase {
+
+    public RoaringGraphTest(String testName) {
+        super(testName);
+    }
+
+    private NodeDictionary dictionary;
+
+    private RoaringGraph graph;
+
+    @Override
+    protected void setUp() throws Exception {
+
+        LoggingInit.init();
+
+        super.setUp();
+
+        dictionary = new NodeDictionary();
+        graph = new RoaringGraph();
+        graph.setNodeDictionary(dictionary);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    /**
+     * Test of createNode and createEdge methods, of class RoaringGraph.
+     */
+    public void testNodesAndEdges() {
+        Node a = graph.createNode("A");
+        Node b = graph.createNode("B");
+        Node c = graph.createNode("C");
+
+        Edge ab = graph.createEdge(new SetOfTwo<Node>(a,b));
+        Edge cc = graph.createEdge(new SetOfTwo<Node>(c,c));
+
+        assertEquals(2, graph.getNumEdges());
+        assertTrue(graph.contains(ab));
+        assertTrue(graph.contains(cc));
+        assertFalse(graph.containsEdge(new SetOfTwo<Node>(a,c)));
+
+        ab.addProbability("testprob", 0.5);
+        Edge abAgain = graph.getEdges().iterator().next();
+        assertEquals(ab, abAgain);
+        assertEquals(0.5, abAgain.getProbability("testprob").getValue());
+
+        assertEquals(1, a.degree());
+        assertEquals(1, c.degree());
+        assertEquals(b, a.getNeighbours().iterator().next().getNode());
+        assertEquals(c, c.getNeighbours().iterator().next().getNode());
+
+        assertEquals(ab, graph.createEdge(new SetOfTwo<Node>(b,a)));
+        assertEquals(2, graph.getNumEdges());
+    }
+
+    /**
+     * Checks adjacency and bitmap counts against map graphs.
+     */
+    public void testAgainstMapGraph() {
+
+        Random random = new Random(7);
+        int n = 400;
+
+        RoaringGraph other = new RoaringGraph();
+        other.setNodeDictionary(dictionary);
+        Graph reference = new MapGraph();
+        Graph otherReference = new MapGraph();
+
+        Node[] nodes = new Node[n];
+        for (int i = 0; i < n; i++) {
+            graph.createNode(i+"");
+            nodes[i] = reference.createNode(i+"");
+            other.createNode(i+"");
+            otherReference.createNode(i+"");
+        }
+
+        for (int k = 0; k < 5000; k++) {
+            SetOfTwo<Node> pair = new SetOfTwo<Node>(nodes[random.nextInt(n)], nodes[random.nextInt(n)]);
+            if (!reference.containsEdge(pair)) {
+                reference.createEdge(pair);
+                graph.createEdge(pair);
+            }
+            if (random.nextBoolean() && !other.containsEdge(pair)) {
+                other.createEdge(pair);
+                otherReference.createEdge(pair);
+            }
+        }
+
+        assertEquals(reference.getNumEdges(), graph.getNumEdges());
+        assertEquals(new HashSet<Edge>(reference.getEdges()), new HashSet<Edge>(graph.getEdges()));
+        for (Node node : reference.getNodes()) {
+            Set<Neighbour> expected = node.getNeighbours();
+            Set<Neighbour> actual = graph.getNeighboursOfNode(node);
+            assertEquals(expected.size(), actual.size());
+            assertEquals(expected, new HashSet<Neighbour>(actual));
+        }
+
+        Set<Edge> intersection = new HashSet<Edge>(reference.getEdges());
+        intersection.retainAll(otherReference.getEdges());
+        assertEquals(intersection.size(), graph.intersectionCount(other));
+        assertEquals(graph.getNumEdges() - intersection.size(), graph.differenceCount(other));
+
+        double[] expectedRates = ErrorGauge.calculate(otherReference, reference);
+        double[] actualRates = ErrorGauge.calculate(other, graph);
+        for (int i = 0; i < expectedRates.length; i++) {
+            assertEquals(expectedRates[i], actualRates[i], 1e-12);
+        }
+    }
+
+}
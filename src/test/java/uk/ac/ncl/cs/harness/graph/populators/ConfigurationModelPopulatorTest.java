@@ -0,0 +1,119 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph.populators;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import junit.framework.TestCase;
+import uk.ac.ncl.cs.harness.graph.CSRGraph;
+import uk.ac.ncl.cs.harness.graph.Edge;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.graph.MapGraph;
+import uk.ac.ncl.cs.harness.graph.Node;
+
+/**
+ *
+ * @author jweile
+ */
+public class ConfigurationModelPopulatorTest extends TestCase {
+
+    public ConfigurationModelPopulatorTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    /**
+     * Reproduces the degree sequence of a scale-free network.
+     */
+    public void testDegreeSequence() {
+
+        Graph original = new CSRGraph();
+        ScaleFreePopulator generator = new ScaleFreePopulator();
+        generator.setSeed(3);
+        generator.setNumberOfNodes(50000);
+        generator.setEdgesPerNode(2);
+        generator.populate(original);
+
+        int[] degrees = new int[original.getNumNodes()];
+        int i = 0;
+        long stubs = 0;
+        for (Node node : original.getNodes()) {
+            degrees[i++] = node.degree();
+            stubs += node.degree();
+        }
+
+        ConfigurationModelPopulator pop = new ConfigurationModelPopulator();
+        pop.setDegreeSequence(degrees);
+        Graph graph = new CSRGraph();
+        pop.populate(graph);
+
+        assertEquals(degrees.length, graph.getNumNodes());
+        //few self-loops and multi-edges are lost
+        assertTrue(graph.getNumEdges() <= stubs / 2);
+        assertTrue("Number of edges " + graph.getNumEdges(), graph.getNumEdges() > 0.98 * stubs / 2);
+
+        for (Node node : graph.getNodes()) {
+            assertTrue(node.degree() <= degrees[Integer.parseInt(node.getId()) - 1]);
+        }
+        for (Edge e : graph.getEdges()) {
+            assertFalse(e.getConnectedNodes().getA().equals(e.getConnectedNodes().getB()));
+        }
+    }
+
+    /**
+     * Test of reading sequences and histograms from files.
+     */
+    public void testFile() throws IOException {
+
+        File file = File.createTempFile("degrees", ".tsv");
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                out.write("# degree\tcount\n1\t4\n\n2\n2\n".getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+
+            ConfigurationModelPopulator pop = new ConfigurationModelPopulator();
+            pop.setFile(file.getPath());
+            Graph graph = new MapGraph();
+            pop.populate(graph);
+
+            assertEquals(6, graph.getNumNodes());
+            assertTrue(graph.getNumEdges() <= 4);
+            for (Node node : graph.getNodes()) {
+                int id = Integer.parseInt(node.getId());
+                assertTrue(node.degree() <= (id <= 4 ? 1 : 2));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph.populators;
+
+import junit.framework.TestCase;
+import uk.ac.ncl.cs.harness.graph.CSRGraph;
+import uk.ac.ncl.cs.harness.graph.Edge;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.graph.MapGraph;
+import uk.ac.ncl.cs.harness.graph.Node;
+
+/**
+ *
+ * @author jweile
+ */
+public class DuplicationDivergencePopulatorTest extends TestCase {
+
+    public DuplicationDivergencePopulatorTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    /**
+     * Test of populate method on a large network.
+     */
+    public void testPopulate() {
+
+        int numNodes = 200000;
+
+        DuplicationDivergencePopulator pop = new DuplicationDivergencePopulator();
+        pop.setSeed(4);
+        pop.setNumberOfNodes(numNodes);
+        pop.setRetention(0.4);
+
+        Graph graph = new CSRGraph();
+        pop.populate(graph);
+
+        assertEquals("Number of nodes", numNodes, graph.getNumNodes());
+        //every node beyond the seeds brings at least one edge
+        assertTrue(graph.getNumEdges() >= 6 + numNodes - 4);
+
+        int degreeSum = 0, maxDegree = 0;
+        for (Node node : graph.getNodes()) {
+            assertTrue(node.degree() > 0);
+            degreeSum += node.degree();
+            maxDegree = Math.max(maxDegree, node.degree());
+        }
+        assertEquals(2 * graph.getNumEdges(), degreeSum);
+        assertTrue("Max degree " + maxDegree, maxDegree > 50);
+        for (Edge e : graph.getEdges()) {
+            assertFalse(e.getConnectedNodes().getA().equals(e.getConnectedNodes().getB()));
+        }
+    }
+
+    /**
+     * With full retention, every duplicate copies all edges of its original.
+     */
+    public void testFullRetention() {
+
+        DuplicationDivergencePopulator pop = new DuplicationDivergencePopulator();
+        pop.setSeed(3);
+        pop.setNumberOfNodes(3);
+        pop.setRetention(1.0);
+
+        Graph graph = new MapGraph();
+        pop.populate(graph);
+        assertEquals(3, graph.getNumEdges());
+
+        pop.setNumberOfNodes(4);
+        graph = new MapGraph();
+        pop.populate(graph);
+        //the fourth node copies the two edges of a triangle node
+        assertEquals(5, graph.getNumEdges());
+    }
+
+    /**
+     * A larger network resumes the growth of a smaller one, so it contains
+     * all of its edges.
+     */
+    public void testResumeGrowth() {
+
+        DuplicationDivergencePopulator.clearCheckpoints();
+        DuplicationDivergencePopulator populator = new DuplicationDivergencePopulator();
+        assertFalse(populator.isResumeGrowth());
+        populator.setResumeGrowth(true);
+        populator.setSeed(5);
+        populator.setRetention(0.3);
+
+        populator.setNumberOfNodes(10000);
+        Graph small = new CSRGraph();
+        populator.populate(small);
+
+        populator.setNumberOfNodes(20000);
+        Graph large = new CSRGraph();
+        populator.populate(large);
+        assertEquals(20000, large.getNumNodes());
+        assertEquals(small.getNumEdges(), small.intersectionCount(large));
+
+        //the same size is grown afresh
+        Graph again = new CSRGraph();
+        populator.populate(again);
+        assertTrue(again.intersectionCount(large) < large.getNumEdges());
+
+        populator.setResumeGrowth(false);
+        populator.setNumberOfNodes(40000);
+        Graph fresh = new CSRGraph();
+        populator.populate(fresh);
+        assertTrue(small.intersectionCount(fresh) < small.getNumEdges());
+
+        DuplicationDivergencePopulator.clearCheckpoints();
+    }
+
+}
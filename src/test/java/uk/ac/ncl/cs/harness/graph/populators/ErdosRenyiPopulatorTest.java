@@ -0,0 +1,117 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph.populators;
+
+import junit.framework.TestCase;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.graph.CSRGraph;
+import uk.ac.ncl.cs.harness.graph.Edge;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.graph.MapGraph;
+import uk.ac.ncl.cs.harness.graph.Node;
+
+/**
+ *
+ * @author jweile
+ */
+public class ErdosRenyiPopulatorTest extends TestCase {
+
+    public ErdosRenyiPopulatorTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    /**
+     * Test of populate method with a mean degree, on a large graph.
+     */
+    public void testPopulate() {
+
+        int numNodes = 20000;
+        double meanDegree = 10.0;
+
+        Graph graph = new CSRGraph();
+        ErdosRenyiPopulator pop = new ErdosRenyiPopulator();
+        pop.setNumberOfNodes(numNodes);
+        pop.setMeanDegree(meanDegree);
+        pop.populate(graph);
+
+        assertEquals("Number of nodes", numNodes, graph.getNumNodes());
+
+        double expected = meanDegree * numNodes / 2;
+        double sd = Math.sqrt(expected);
+        assertTrue("Number of edges " + graph.getNumEdges(),
+                Math.abs(graph.getNumEdges() - expected) < 5 * sd);
+
+        for (Edge e : graph.getEdges()) {
+            assertFalse(e.getConnectedNodes().getA().equals(e.getConnectedNodes().getB()));
+        }
+    }
+
+    /**
+     * Test of the boundary probabilities.
+     */
+    public void testBoundaries() {
+
+        int numNodes = 50;
+        ErdosRenyiPopulator pop = new ErdosRenyiPopulator();
+        pop.setNumberOfNodes(numNodes);
+
+        pop.setP(1.0);
+        Graph complete = new MapGraph();
+        pop.populate(complete);
+        assertEquals(numNodes * (numNodes - 1) / 2, complete.getNumEdges());
+        for (Node node : complete.getNodes()) {
+            assertEquals(numNodes - 1, node.degree());
+        }
+
+        pop.setP(0.0);
+        Graph empty = new MapGraph();
+        pop.populate(empty);
+        assertEquals(numNodes, empty.getNumNodes());
+        assertEquals(0, empty.getNumEdges());
+
+        pop.setMeanDegree(7.0);
+        assertEquals(7.0 / 49.0, pop.getP(), 1e-12);
+    }
+
+    /**
+     * Test that a graph with too many expected edges is refused up front.
+     */
+    public void testTooManyEdges() {
+        ErdosRenyiPopulator pop = new ErdosRenyiPopulator();
+        pop.setNumberOfNodes(100000);
+        pop.setP(0.5);
+        Graph graph = new MapGraph();
+        try {
+            pop.populate(graph);
+            fail("Expected a GraphException");
+        } catch (GraphException expected) {
+        }
+        assertEquals(0, graph.getNumNodes());
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph.populators;
+
+import java.util.HashSet;
+import junit.framework.TestCase;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.graph.CSRGraph;
+import uk.ac.ncl.cs.harness.graph.Edge;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.graph.MapGraph;
+import uk.ac.ncl.cs.harness.graph.Node;
+
+/**
+ *
+ * @author jweile
+ */
+public class RMatPopulatorTest extends TestCase {
+
+    public RMatPopulatorTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    /**
+     * Test of populate method, of class RMatPopulator.
+     */
+    public void testPopulate() {
+
+        int numNodes = 10000;
+        int numEdges = 200000;
+
+        RMatPopulator pop = new RMatPopulator();
+        pop.setNumberOfNodes(numNodes);
+        pop.setNumberOfEdges(numEdges);
+        pop.setStreams(4);
+
+        Graph graph = new CSRGraph();
+        pop.populate(graph);
+
+        assertEquals("Number of nodes", numNodes, graph.getNumNodes());
+        assertTrue(graph.getNumEdges() <= numEdges);
+        assertTrue("Number of edges " + graph.getNumEdges(), graph.getNumEdges() > numEdges / 2);
+
+        int maxDegree = 0;
+        for (Node node : graph.getNodes()) {
+            maxDegree = Math.max(maxDegree, node.degree());
+        }
+        for (Edge e : graph.getEdges()) {
+            assertFalse(e.getConnectedNodes().getA().equals(e.getConnectedNodes().getB()));
+        }
+        //skewed degrees
+        assertTrue("Max degree " + maxDegree, maxDegree > 20 * 2 * graph.getNumEdges() / numNodes);
+    }
+
+    /**
+     * A single stream must give a simple graph as well.
+     */
+    public void testSingleStream() {
+
+        RMatPopulator pop = new RMatPopulator();
+        pop.setNumberOfNodes(1000);
+        pop.setNumberOfEdges(5000);
+        pop.setStreams(1);
+
+        Graph graph = new MapGraph();
+        pop.populate(graph);
+
+        assertEquals(1000, graph.getNumNodes());
+        assertEquals(graph.getNumEdges(), new HashSet<Edge>(graph.getEdges()).size());
+        assertTrue(graph.getNumEdges() > 2500);
+    }
+
+    /**
+     * Test of the validation of the quadrant probabilities.
+     */
+    public void testInvalidProbabilities() {
+        RMatPopulator pop = new RMatPopulator();
+        pop.setNumberOfNodes(10);
+        pop.setNumberOfEdges(10);
+        pop.setD(0.5);
+        try {
+            pop.populate(new MapGraph());
+            fail("Expected a GraphException");
+        } catch (GraphException expected) {
+        }
+    }
+
+    /**
+     * Probabilities that keep every draw outside a matrix that is not a power
+     * of two in size must fail rather than loop forever.
+     */
+    public void testDrawsOutsideMatrix() {
+        for (int streams : new int[] {1, 2}) {
+            RMatPopulator pop = new RMatPopulator();
+            pop.setNumberOfNodes(3);
+            pop.setNumberOfEdges(10);
+            pop.setStreams(streams);
+            pop.setA(0.0);
+            pop.setB(0.0);
+            pop.setC(0.0);
+            pop.setD(1.0);
+            try {
+                pop.populate(new MapGraph());
+                fail("Expected a GraphException");
+            } catch (GraphException expected) {
+            }
+        }
+    }
+
+    /**
+     * A population runs a single stream unless asked otherwise.
+     */
+    public void testDefaultStreams() {
+        assertEquals(1, new RMatPopulator().getStreams());
+    }
+
+}
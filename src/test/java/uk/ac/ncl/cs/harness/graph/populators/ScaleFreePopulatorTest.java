@@ -18,8 +18,10 @@
 package uk.ac.ncl.cs.harness.graph.populators;
 
 import junit.framework.TestCase;
+import uk.ac.ncl.cs.harness.graph.CSRGraph;
 import uk.ac.ncl.cs.harness.graph.Graph;
 import uk.ac.ncl.cs.harness.graph.MapGraph;
+import uk.ac.ncl.cs.harness.graph.Node;
 
 /**
  *
@@ -70,5 +72,71 @@ public class ScaleFreePopulatorTest extends TestCase {
 
     }
 
+    /**
+     * Test of the edgesPerNode parameter on a large network.
+     */
+    public void testEdgesPerNode() {
+
+        int seed = 2;
+        int numNodes = 100000;
+        int m = 3;
+
+        Graph graph = new CSRGraph();
+        ScaleFreePopulator populator = new ScaleFreePopulator();
+        populator.setSeed(seed);
+        populator.setNumberOfNodes(numNodes);
+        populator.setEdgesPerNode(m);
+        populator.populate(graph);
+
+        assertEquals("Number of nodes", numNodes, graph.getNumNodes());
+        //the seed clique, then node 3 can only connect to two nodes
+        int expected = 1 + 2 + (numNodes - seed - 1) * m;
+        assertEquals("Number of edges", expected, graph.getNumEdges());
+
+        int maxDegree = 0;
+        for (Node node : graph.getNodes()) {
+            assertTrue(node.degree() >= Math.min(m, 2));
+            maxDegree = Math.max(maxDegree, node.degree());
+        }
+        //preferential attachment yields hubs
+        assertTrue("Max degree "+maxDegree, maxDegree > 20 * m);
+    }
+
+    /**
+     * A larger network resumes the growth of a smaller one, so it contains
+     * all of its edges.
+     */
+    public void testResumeGrowth() {
+
+        ScaleFreePopulator.clearCheckpoints();
+        ScaleFreePopulator populator = new ScaleFreePopulator();
+        assertFalse(populator.isResumeGrowth());
+        populator.setResumeGrowth(true);
+        populator.setSeed(5);
+        populator.setEdgesPerNode(3);
+
+        populator.setNumberOfNodes(10000);
+        Graph small = new CSRGraph();
+        populator.populate(small);
+
+        populator.setNumberOfNodes(20000);
+        Graph large = new CSRGraph();
+        populator.populate(large);
+        assertEquals(20000, large.getNumNodes());
+        assertEquals(small.getNumEdges(), small.intersectionCount(large));
+
+        //the same size is grown afresh
+        Graph again = new CSRGraph();
+        populator.populate(again);
+        assertTrue(again.intersectionCount(large) < large.getNumEdges());
+
+        populator.setResumeGrowth(false);
+        populator.setNumberOfNodes(40000);
+        Graph fresh = new CSRGraph();
+        populator.populate(fresh);
+        assertTrue(small.intersectionCount(fresh) < small.getNumEdges());
+
+        ScaleFreePopulator.clearCheckpoints();
+    }
 
 }
@@ -0,0 +1,126 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.graph.populators;
+
+import junit.framework.TestCase;
+import uk.ac.ncl.cs.harness.exceptions.GraphException;
+import uk.ac.ncl.cs.harness.graph.CSRGraph;
+import uk.ac.ncl.cs.harness.graph.Edge;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.graph.MapGraph;
+
+/**
+ *
+ * @author jweile
+ */
+public class StochasticBlockPopulatorTest extends TestCase {
+
+    public StochasticBlockPopulatorTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    /**
+     * Test of populate method: edge counts within and between blocks.
+     */
+    public void testPopulate() {
+
+        StochasticBlockPopulator pop = new StochasticBlockPopulator();
+        pop.setBlockSizes("2000, 3000,1000");
+        pop.setProbabilities("0.01,0.0005,0; 0.0005,0.005,0.001; 0,0.001,0.02");
+
+        Graph graph = new CSRGraph();
+        pop.populate(graph);
+
+        assertEquals(6000, graph.getNumNodes());
+
+        //block of node id v (1-based)
+        int[][] counts = new int[3][3];
+        for (Edge e : graph.getEdges()) {
+            int i = block(Integer.parseInt(e.getConnectedNodes().getA().getId()));
+            int j = block(Integer.parseInt(e.getConnectedNodes().getB().getId()));
+            counts[Math.max(i, j)][Math.min(i, j)]++;
+        }
+
+        assertClose(0.01 * 2000 * 1999 / 2, counts[0][0]);
+        assertClose(0.005 * 3000 * 2999 / 2, counts[1][1]);
+        assertClose(0.02 * 1000 * 999 / 2, counts[2][2]);
+        assertClose(0.0005 * 2000 * 3000, counts[1][0]);
+        assertClose(0.001 * 3000 * 1000, counts[2][1]);
+        assertEquals(0, counts[2][0]);
+    }
+
+    /**
+     * Test of the validation of the properties.
+     */
+    public void testInvalidProperties() {
+        StochasticBlockPopulator pop = new StochasticBlockPopulator();
+        try {
+            pop.setProbabilities("0.1,0.2;0.3,0.1");
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            pop.setBlockSizes("10,x");
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+        pop.setBlockSizes("10,20");
+        pop.setProbabilities("1");
+        try {
+            pop.populate(new MapGraph());
+            fail("Expected a GraphException");
+        } catch (GraphException expected) {
+        }
+    }
+
+    /**
+     * Test that a model with too many expected edges is refused up front.
+     */
+    public void testTooManyEdges() {
+        StochasticBlockPopulator pop = new StochasticBlockPopulator();
+        pop.setBlockSizes("50000,50000");
+        pop.setProbabilities("0.5,0.5;0.5,0.5");
+        Graph graph = new MapGraph();
+        try {
+            pop.populate(graph);
+            fail("Expected a GraphException");
+        } catch (GraphException expected) {
+        }
+        assertEquals(0, graph.getNumNodes());
+    }
+
+    private static int block(int id) {
+        return id <= 2000 ? 0 : (id <= 5000 ? 1 : 2);
+    }
+
+    private static void assertClose(double expected, int actual) {
+        assertTrue("Expected about " + expected + " edges, got " + actual,
+                Math.abs(actual - expected) < 5 * Math.sqrt(expected));
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import junit.framework.TestCase;
+import uk.ac.ncl.cs.harness.LoggingInit;
+import uk.ac.ncl.cs.harness.graph.CSRGraph;
+import uk.ac.ncl.cs.harness.graph.Edge;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.graph.MapGraph;
+import uk.ac.ncl.cs.harness.graph.Node;
+import uk.ac.ncl.cs.harness.graph.populators.EdgeListPopulator;
+import uk.ac.ncl.cs.harness.graph.populators.ScaleFreePopulator;
+import uk.ac.ncl.cs.harness.util.SetOfTwo;
+
+/**
+ *
+ * @author jweile
+ */
+public class EdgeListTest extends TestCase {
+
+    public EdgeListTest(String testName) {
+        super(testName);
+    }
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+
+        LoggingInit.init();
+
+        super.setUp();
+
+        file = File.createTempFile("edges", ".tsv");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Test of the accepted line formats.
+     */
+    public void testFormats() throws IOException {
+
+        String text = "source\ttarget\tscore\n"
+                + "# a comment\n"
+                + "A\tB\t0.9\r\n"
+                + "\n"
+                + "\"B\",\"C\"\n"
+                + "C;A\n"
+                + "B A\n"
+                + "D  D\n"
+                + "lonely\n"
+                + "\u00e9t\u00e9\tA";
+        EdgeList edges = EdgeList.parse(ByteBuffer.wrap(text.getBytes("UTF-8")), true);
+
+        assertEquals(5, edges.getNumNodes());
+        assertEquals(6, edges.getNumEdges());
+        assertEquals(1, edges.getSkippedLines());
+
+        Graph graph = new MapGraph();
+        assertEquals(1, edges.populate(graph));
+        assertEquals(5, graph.getNumNodes());
+        assertEquals(5, graph.getNumEdges());
+        assertTrue(graph.containsEdge(pair("A", "B")));
+        assertTrue(graph.containsEdge(pair("C", "B")));
+        assertTrue(graph.containsEdge(pair("A", "C")));
+        assertTrue(graph.containsEdge(pair("D", "D")));
+        assertTrue(graph.containsEdge(pair("A", "\u00e9t\u00e9")));
+
+        //without the header option, the header is an edge
+        edges = EdgeList.parse(ByteBuffer.wrap(text.getBytes("UTF-8")), false);
+        assertEquals(7, edges.getNumEdges());
+    }
+
+    /**
+     * A header line that starts like a comment is still the header.
+     */
+    public void testCommentHeader() throws IOException {
+
+        String text = "#source\ttarget\n"
+                + "A\tB\n"
+                + "B\tC\n";
+        EdgeList edges = EdgeList.parse(ByteBuffer.wrap(text.getBytes("UTF-8")), true);
+        assertEquals(2, edges.getNumEdges());
+        assertEquals(3, edges.getNumNodes());
+
+        Graph graph = new MapGraph();
+        edges.populate(graph);
+        assertTrue(graph.containsEdge(pair("A", "B")));
+        assertTrue(graph.containsEdge(pair("B", "C")));
+
+        //a comment is not an edge either way
+        edges = EdgeList.parse(ByteBuffer.wrap(text.getBytes("UTF-8")), false);
+        assertEquals(2, edges.getNumEdges());
+    }
+
+    /**
+     * Writes a generated network as an edge list and imports it again.
+     */
+    public void testPopulator() throws IOException {
+
+        Graph original = new MapGraph();
+        ScaleFreePopulator generator = new ScaleFreePopulator();
+        generator.setSeed(3);
+        generator.setNumberOfNodes(3000);
+        generator.populate(original);
+
+        OutputStream out = new FileOutputStream(file);
+        try {
+            StringBuilder b = new StringBuilder("a\tb\n");
+            for (Edge e : original.getEdges()) {
+                SetOfTwo<Node> ab = e.getConnectedNodes();
+                b.append(ab.getA().getId()).append('\t').append(ab.getB().getId()).append('\n');
+            }
+            out.write(b.toString().getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        EdgeListPopulator populator = new EdgeListPopulator();
+        populator.setFile(file.getPath());
+        populator.setHeader(true);
+
+        Graph first = new CSRGraph();
+        populator.populate(first);
+        Graph second = new MapGraph();
+        populator.populate(second);
+
+        for (Graph imported : new Graph[] {first, second}) {
+            assertEquals(original.getNumNodes(), imported.getNumNodes());
+            assertEquals(original.getNumEdges(), imported.getNumEdges());
+            assertEquals(new HashSet<Edge>(original.getEdges()), new HashSet<Edge>(imported.getEdges()));
+        }
+    }
+
+    /**
+     * creates a pair of alien nodes with the given ids.
+     */
+    private static SetOfTwo<Node> pair(String a, String b) {
+        Graph ids = new MapGraph();
+        Node nodeA = ids.createNode(a);
+        Node nodeB = a.equals(b) ? nodeA : ids.createNode(b);
+        return new SetOfTwo<Node>(nodeA, nodeB);
+    }
+
+}
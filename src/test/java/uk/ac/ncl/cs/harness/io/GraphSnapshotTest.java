@@ -0,0 +1,124 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package uk.ac.ncl.cs.harness.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import junit.framework.TestCase;
+import uk.ac.ncl.cs.harness.LoggingInit;
+import uk.ac.ncl.cs.harness.graph.CSRGraph;
+import uk.ac.ncl.cs.harness.graph.Edge;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.graph.MapGraph;
+import uk.ac.ncl.cs.harness.graph.Node;
+import uk.ac.ncl.cs.harness.graph.populators.ScaleFreePopulator;
+import uk.ac.ncl.cs.harness.graph.populators.SnapshotPopulator;
+import uk.ac.ncl.cs.harness.util.SetOfTwo;
+
+/**
+ *
+ * @author jweile
+ */
+public class GraphSnapshotTest extends TestCase {
+
+    public GraphSnapshotTest(String testName) {
+        super(testName);
+    }
+
+    private Graph graph;
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+
+        LoggingInit.init();
+
+        super.setUp();
+
+        graph = new MapGraph();
+        ScaleFreePopulator populator = new ScaleFreePopulator();
+        populator.setSeed(3);
+        populator.setNumberOfNodes(2000);
+        populator.populate(graph);
+
+        //a self-loop, an isolated node and a non-ASCII id
+        Node first = graph.getNodes().iterator().next();
+        graph.createEdge(new SetOfTwo<Node>(first, first));
+        graph.createNode("isolated");
+        graph.createNode("\u00e9t\u00e9");
+
+        file = File.createTempFile("snapshot", ".hgs");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Writes a snapshot and loads it back through the populator.
+     */
+    public void testRoundTrip() throws IOException {
+
+        GraphSnapshot.write(graph, file);
+
+        SnapshotPopulator populator = new SnapshotPopulator();
+        populator.setFile(file.getPath());
+        Graph loaded = new CSRGraph();
+        populator.populate(loaded);
+
+        assertEquals(graph.getNumNodes(), loaded.getNumNodes());
+        assertEquals(graph.getNumEdges(), loaded.getNumEdges());
+        assertEquals(new HashSet<Node>(graph.getNodes()), new HashSet<Node>(loaded.getNodes()));
+        assertEquals(new HashSet<Edge>(graph.getEdges()), new HashSet<Edge>(loaded.getEdges()));
+
+        //the format stores each edge once, in a few bytes
+        assertTrue(file.length() < 16L * graph.getNumNodes() + 4L * graph.getNumEdges());
+    }
+
+    /**
+     * Checks that corrupted snapshots are rejected.
+     */
+    public void testChecksum() throws IOException {
+
+        GraphSnapshot.write(graph, file);
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(raf.length() / 2);
+            int b = raf.read();
+            raf.seek(raf.length() / 2);
+            raf.write(b ^ 0x10);
+        } finally {
+            raf.close();
+        }
+
+        try {
+            GraphSnapshot.read(file, new MapGraph());
+            fail("Corrupted snapshot was accepted");
+        } catch (IOException ex) {
+            //expected
+        }
+    }
+
+}
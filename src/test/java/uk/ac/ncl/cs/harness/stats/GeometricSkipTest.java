@@ -0,0 +1,82 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.stats;
+
+import cern.jet.random.Uniform;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author jweile
+ */
+public class GeometricSkipTest extends TestCase {
+
+    public GeometricSkipTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    /**
+     * The mean distance between successes is 1/p.
+     */
+    public void testMean() {
+        double p = 0.01;
+        GeometricSkip skip = new GeometricSkip(new Uniform(RandomEngineRegistry.getEngine()), p);
+        int samples = 100000;
+        double sum = 0.0;
+        for (int i = 0; i < samples; i++) {
+            long next = skip.next();
+            assertTrue(next >= 1);
+            sum += next;
+        }
+        //standard deviation of the mean is sqrt(1-p)/p/sqrt(samples), about 0.31
+        assertEquals(1.0 / p, sum / samples, 2.0);
+    }
+
+    /**
+     * With certain success every index is visited.
+     */
+    public void testCertainSuccess() {
+        GeometricSkip skip = new GeometricSkip(new Uniform(RandomEngineRegistry.getEngine()), 1.0);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(1, skip.next());
+        }
+    }
+
+    /**
+     * Test of the precondition on p.
+     */
+    public void testPrecondition() {
+        try {
+            new GeometricSkip(new Uniform(RandomEngineRegistry.getEngine()), 0.0);
+            fail("p = 0 accepted.");
+        } catch (IllegalArgumentException ex) {
+            //expected
+        }
+    }
+
+}
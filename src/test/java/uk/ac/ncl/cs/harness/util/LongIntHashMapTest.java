@@ -0,0 +1,82 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ */
+public class LongIntHashMapTest extends TestCase {
+
+    public LongIntHashMapTest(String testName) {
+        super(testName);
+    }
+
+    public void testPutGet() {
+        LongIntHashMap map = new LongIntHashMap();
+
+        assertEquals(LongIntHashMap.NO_VALUE, map.put(Pairs.key(3, 7), 1));
+        assertEquals(1, map.get(Pairs.key(7, 3)));
+        assertEquals(1, map.put(Pairs.key(7, 3), 2));
+        assertEquals(2, map.get(Pairs.key(3, 7)));
+        assertEquals(1, map.size());
+
+        assertFalse(map.containsKey(Pairs.key(3, 8)));
+        assertEquals(LongIntHashMap.NO_VALUE, map.get(Pairs.key(3, 8)));
+
+        assertEquals(7, Pairs.high(Pairs.key(3, 7)));
+        assertEquals(3, Pairs.low(Pairs.key(3, 7)));
+    }
+
+    /**
+     * compares random insertions and removals against a <code>HashMap</code>.
+     */
+    public void testAgainstHashMap() {
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long,Integer> reference = new HashMap<Long,Integer>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100000; i++) {
+            long key = Pairs.key(random.nextInt(300), random.nextInt(300));
+            if (random.nextInt(3) == 0) {
+                Integer expected = reference.remove(key);
+                assertEquals(expected == null ? LongIntHashMap.NO_VALUE : expected.intValue(),
+                        map.remove(key));
+            } else {
+                reference.put(key, i);
+                map.put(key, i);
+            }
+        }
+
+        assertEquals(reference.size(), map.size());
+        for (int a = 0; a < 300; a++) {
+            for (int b = 0; b <= a; b++) {
+                long key = Pairs.key(a, b);
+                Integer expected = reference.get(key);
+                assertEquals(expected == null ? LongIntHashMap.NO_VALUE : expected.intValue(),
+                        map.get(key));
+            }
+        }
+    }
+
+}
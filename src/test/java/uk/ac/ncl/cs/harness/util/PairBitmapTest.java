@@ -0,0 +1,87 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package uk.ac.ncl.cs.harness.util;
+
+import java.util.Random;
+import java.util.TreeSet;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author jweile
+ */
+public class PairBitmapTest extends TestCase {
+
+    public PairBitmapTest(String testName) {
+        super(testName);
+    }
+
+    public void testIndex() {
+        assertEquals(0L, PairBitmap.index(0, 0));
+        assertEquals(1L, PairBitmap.index(1, 0));
+        assertEquals(2L, PairBitmap.index(1, 1));
+        assertEquals(PairBitmap.index(7, 3), PairBitmap.index(3, 7));
+        assertEquals(PairBitmap.index(7, 7) + 1, PairBitmap.index(8, 0));
+    }
+
+    /**
+     * Checks the bitmap against a tree set, with both sparse and dense chunks.
+     */
+    public void testAgainstTreeSet() {
+
+        Random random = new Random(11);
+        PairBitmap b1 = new PairBitmap(), b2 = new PairBitmap();
+        TreeSet<Long> s1 = new TreeSet<Long>(), s2 = new TreeSet<Long>();
+
+        for (int i = 0; i < 60000; i++) {
+            //chunk 3 becomes dense, the rest stays sparse
+            long v = random.nextBoolean() ? (3L << 16) + random.nextInt(1 << 16) : random.nextInt(1 << 22);
+            assertEquals(s1.add(v), b1.add(v));
+            if (random.nextInt(3) == 0) {
+                assertEquals(s2.add(v), b2.add(v));
+            }
+            if (random.nextInt(4) == 0) {
+                long r = random.nextBoolean() ? (3L << 16) + random.nextInt(1 << 16) : random.nextInt(1 << 22);
+                assertEquals(s1.remove(r), b1.remove(r));
+            }
+        }
+        //thin out the dense chunk again
+        for (long v = 3L << 16; v < 4L << 16; v++) {
+            if (v % 5 != 0) {
+                assertEquals(s1.remove(v), b1.remove(v));
+            }
+        }
+
+        assertEquals(s1.size(), b1.cardinality());
+        assertEquals(s2.size(), b2.cardinality());
+        for (int i = 0; i < 20000; i++) {
+            long v = random.nextInt(1 << 22);
+            assertEquals(s1.contains(v), b1.contains(v));
+            Long next = s1.ceiling(v);
+            assertEquals(next == null ? -1L : next.longValue(), b1.nextValue(v));
+        }
+
+        TreeSet<Long> intersection = new TreeSet<Long>(s1);
+        intersection.retainAll(s2);
+        assertEquals(intersection.size(), b1.andCardinality(b2));
+        assertEquals(intersection.size(), b2.andCardinality(b1));
+        assertEquals(s1.size() - intersection.size(), b1.andNotCardinality(b2));
+    }
+
+}
@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.Set;
 import junit.framework.TestCase;
 import uk.ac.ncl.cs.harness.LoggingInit;
+import uk.ac.ncl.cs.harness.exceptions.ConfigurationException;
 import uk.ac.ncl.cs.harness.io.OutputController;
 import uk.ac.ncl.cs.harness.workflow.variables.IncrementalVariable;
 import uk.ac.ncl.cs.harness.workflow.variables.Variable;
@@ -59,6 +60,31 @@ public class ConcurrentWorkflowTest extends TestCase {
 
     }
 
+    public void testTemplateProducers() throws Exception {
+
+        Protocol protocol = makeProtocol();
+        protocol.setGraphImplementation("csrgraph");
+
+        ConcurrentWorkflow workflow = new ConcurrentWorkflow(4, 2);
+        workflow.run(protocol);
+
+    }
+
+    public void testTemplateProducerFailure() throws Exception {
+
+        Protocol protocol = makeProtocol();
+        protocol.getGraphPopulation().setProperty(Properties.ID_PROPERTY, "nosuchpopulator");
+
+        ConcurrentWorkflow workflow = new ConcurrentWorkflow(4, 2);
+        try {
+            workflow.run(protocol);
+            fail("Populator error was not reported.");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getCause() instanceof ConfigurationException);
+        }
+
+    }
+
     public void testDynamicWorkflow() throws Exception {
 
         String varName = "var";
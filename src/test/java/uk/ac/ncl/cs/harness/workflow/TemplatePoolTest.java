@@ -0,0 +1,134 @@
+/*
+ *  Copyright (C) 2011 Jochen Weile, M.Sc. <j.weile@ncl.ac.uk>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package uk.ac.ncl.cs.harness.workflow;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+import uk.ac.ncl.cs.harness.exceptions.ConfigurationException;
+import uk.ac.ncl.cs.harness.graph.FrozenGraph;
+import uk.ac.ncl.cs.harness.graph.Graph;
+import uk.ac.ncl.cs.harness.graph.MapGraph;
+import uk.ac.ncl.cs.harness.graph.populators.ScaleFreePopulator;
+
+/**
+ *
+ * @author jweile
+ */
+public class TemplatePoolTest extends TestCase {
+
+    public TemplatePoolTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    /**
+     * Every template is produced once and handed to exactly one taker.
+     */
+    public void testAllTemplatesTaken() throws Exception {
+
+        final AtomicInteger produced = new AtomicInteger();
+        TemplatePool pool = new TemplatePool(new Protocol(), 3, 20, 2) {
+            @Override
+            Graph produce(String name) {
+                produced.incrementAndGet();
+                Graph graph = new MapGraph();
+                graph.setName(name);
+                ScaleFreePopulator populator = new ScaleFreePopulator();
+                populator.setSeed(2);
+                populator.setNumberOfNodes(50);
+                populator.populate(graph);
+                return graph;
+            }
+        };
+        pool.start();
+
+        Set<String> names = new HashSet<String>();
+        for (int i = 0; i < 20; i++) {
+            Graph template = pool.take();
+            assertTrue(template instanceof FrozenGraph);
+            assertEquals(50, template.getNumNodes());
+            assertTrue(names.add(template.getName()));
+        }
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(20, produced.get());
+        pool.close();
+    }
+
+    /**
+     * A failing population surfaces at the taker.
+     */
+    public void testFailure() throws Exception {
+
+        TemplatePool pool = new TemplatePool(new Protocol(), 1, 1, 1) {
+            @Override
+            Graph produce(String name) throws ConfigurationException {
+                throw new ConfigurationException("broken");
+            }
+        };
+        pool.start();
+        try {
+            pool.take();
+            fail("Error was not reported.");
+        } catch (ConfigurationException ex) {
+            assertEquals("broken", ex.getMessage());
+        } finally {
+            pool.close();
+        }
+    }
+
+    /**
+     * Closing stops producers blocked on a full queue, and the remaining
+     * templates are never produced.
+     */
+    public void testClose() throws Exception {
+
+        final AtomicInteger produced = new AtomicInteger();
+        TemplatePool pool = new TemplatePool(new Protocol(), 2, 100, 1) {
+            @Override
+            Graph produce(String name) {
+                produced.incrementAndGet();
+                return new MapGraph();
+            }
+        };
+        pool.start();
+        pool.take();
+        pool.close();
+
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(produced.get() < 100);
+        try {
+            pool.take();
+            fail("Closed pool handed out a template.");
+        } catch (IllegalStateException ex) {
+            //expected
+        }
+    }
+
+}